@@ -0,0 +1,73 @@
+import http from 'k6/http';
+import { check, sleep } from 'k6';
+import { Trend } from 'k6/metrics';
+
+// Run once against each stack, with the same database and data:
+//   k6 run -e BASE_URL=http://localhost:8080 loadtest/reactive-vs-blocking.js   (blocking, Tomcat + JDBC)
+//   k6 run -e BASE_URL=http://localhost:8081 loadtest/reactive-vs-blocking.js   (reactive, WebFlux + R2DBC)
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const USERS = '/api/v1/users';
+const USER_COUNT = Number(__ENV.USER_COUNT || 1000);
+
+// sampled from actuator once a second while the load runs
+const serverThreads = new Trend('server_threads');
+const dbConnectionsInUse = new Trend('db_connections_in_use');
+const dbConnectionsPending = new Trend('db_connections_pending');
+
+export const options = {
+    scenarios: {
+        lookups: {
+            executor: 'constant-vus',
+            vus: Number(__ENV.VUS || 2000),
+            duration: __ENV.DURATION || '1m',
+            exec: 'lookup',
+        },
+        probe: {
+            executor: 'constant-vus',
+            vus: 1,
+            duration: __ENV.DURATION || '1m',
+            exec: 'probe',
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+    thresholds: {
+        'http_req_failed{scenario:lookups}': ['rate<0.01'],
+        // always passes; makes k6 print the latency of the lookups without the actuator probes
+        'http_req_duration{scenario:lookups}': ['p(99)>=0'],
+    },
+};
+
+export function setup() {
+    for (let i = 0; i < USER_COUNT; i++) {
+        http.post(`${BASE_URL}${USERS}`, JSON.stringify({ name: `Fanout${i}`, email: `fanout${i}@mail.ru`, age: 20 + (i % 40) }),
+            { headers: { 'Content-Type': 'application/json' } });
+    }
+}
+
+export function lookup() {
+    const i = Math.floor(Math.random() * USER_COUNT);
+    const res = http.get(`${BASE_URL}${USERS}/fanout${i}@mail.ru`, { headers: { 'X-Client-Id': `gateway-${__VU}` } });
+    check(res, { 'status is 200': (r) => r.status === 200 });
+}
+
+export function probe() {
+    serverThreads.add(metric('jvm.threads.live'));
+    // Hikari on the blocking stack, r2dbc-pool on the reactive one; the other one answers 404
+    const inUse = metric('hikaricp.connections.active') ?? metric('r2dbc.pool.acquired');
+    const pending = metric('hikaricp.connections.pending') ?? metric('r2dbc.pool.pending');
+    if (inUse !== null) {
+        dbConnectionsInUse.add(inUse);
+    }
+    if (pending !== null) {
+        dbConnectionsPending.add(pending);
+    }
+    sleep(1);
+}
+
+function metric(name) {
+    const res = http.get(`${BASE_URL}/actuator/metrics/${name}`, { tags: { name: 'actuator' } });
+    if (res.status !== 200) {
+        return null;
+    }
+    return res.json('measurements.0.value');
+}
@@ -0,0 +1,54 @@
+#!/usr/bin/env bash
+# Time from `java` launch to the first successful GET /api/v1/users, for the regular jar and for the
+# AOT + CDS + startup-profile build. Needs Postgres from docker/docker-compose.yml and `mvn -Pstartup package`.
+#
+#   loadtest/startup-benchmark.sh [runs]
+set -euo pipefail
+
+RUNS=${1:-5}
+PORT=${PORT:-8080}
+URL="http://localhost:${PORT}/api/v1/users?limit=1"
+TARGET=$(cd "$(dirname "$0")/../target" && pwd)
+JAR=$(basename "$(ls "$TARGET"/*.jar | grep -v original | head -n 1)")
+
+if [[ ! -f "$TARGET/startup/application.jsa" ]]; then
+    echo "target/startup/application.jsa not found, run: mvn -Pstartup package" >&2
+    exit 1
+fi
+
+# prints milliseconds until the first 200 and stops the application
+measure() {
+    local start pid
+    start=$(date +%s%N)
+    "$@" --server.port="$PORT" > "$TARGET/startup-benchmark.log" 2>&1 &
+    pid=$!
+    until curl -sf -o /dev/null "$URL"; do
+        if ! kill -0 "$pid" 2> /dev/null; then
+            echo "application exited, see target/startup-benchmark.log" >&2
+            exit 1
+        fi
+        sleep 0.02
+    done
+    echo $(( ($(date +%s%N) - start) / 1000000 ))
+    kill "$pid"
+    wait "$pid" || true
+}
+
+median() {
+    sort -n | awk '{ v[NR] = $1 } END { print (NR % 2) ? v[(NR + 1) / 2] : int((v[NR / 2] + v[NR / 2 + 1]) / 2) }'
+}
+
+run() {
+    local name=$1
+    shift
+    local times=()
+    for ((i = 0; i < RUNS; i++)); do
+        times+=("$(measure "$@")")
+    done
+    printf '%-10s median %6s ms   runs: %s\n' "$name" "$(printf '%s\n' "${times[@]}" | median)" "${times[*]}"
+}
+
+# the regular build also creates the schema and indexes the startup profile expects to exist
+run baseline java -jar "$TARGET/$JAR"
+run startup java -XX:SharedArchiveFile="$TARGET/startup/application.jsa" -Dspring.aot.enabled=true \
+    -Dspring.profiles.active=startup -jar "$TARGET/startup/$JAR"
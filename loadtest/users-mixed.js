@@ -0,0 +1,53 @@
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const USERS = '/api/v1/users';
+// Measures the server threads, not the rate limits: start the application with users.rate-limit.enabled=false
+// (see the README), otherwise the page and create requests of this single address get 429s. Every VU still sends
+// its own X-Client-Id, which only counts when the address is listed in users.rate-limit.trusted-proxies.
+const client = () => ({ 'X-Client-Id': `loadtest-${__VU}` });
+
+export const options = {
+    scenarios: {
+        mixed: {
+            executor: 'ramping-arrival-rate',
+            startRate: 100,
+            timeUnit: '1s',
+            preAllocatedVUs: 500,
+            maxVUs: 2000,
+            stages: [
+                { target: Number(__ENV.PEAK_RPS || 2000), duration: '30s' },
+                { target: Number(__ENV.PEAK_RPS || 2000), duration: '1m' },
+                { target: 100, duration: '10s' },
+            ],
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+    },
+};
+
+export function setup() {
+    for (let i = 0; i < 1000; i++) {
+        http.post(`${BASE_URL}${USERS}`, JSON.stringify({ name: `Load${i}`, email: `load${i}@mail.ru`, age: 20 + (i % 40) }),
+            { headers: { 'Content-Type': 'application/json', ...client() } });
+    }
+}
+
+export default function () {
+    const roll = Math.random();
+    if (roll < 0.6) {
+        const res = http.get(`${BASE_URL}${USERS}/load${Math.floor(Math.random() * 1000)}@mail.ru`, { headers: client(), tags: { op: 'getByEmail' } });
+        check(res, { 'lookup ok': (r) => r.status === 200 });
+    } else if (roll < 0.8) {
+        const res = http.get(`${BASE_URL}${USERS}?limit=50`, { headers: client(), tags: { op: 'getPage' } });
+        check(res, { 'page ok': (r) => r.status === 200 });
+    } else {
+        const id = `${__VU}-${__ITER}-${Date.now()}`;
+        const res = http.post(`${BASE_URL}${USERS}`, JSON.stringify({ name: `New${id}`, email: `new${id}@mail.ru`, age: 30 }),
+            { headers: { 'Content-Type': 'application/json', ...client() }, tags: { op: 'create' } });
+        check(res, { 'create ok': (r) => r.status === 201 });
+    }
+}
@@ -0,0 +1,13 @@
+package org.example.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+
+@SpringBootApplication
+@ConfigurationPropertiesScan
+public class ReactiveUserApplication {
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveUserApplication.class, args);
+    }
+}
@@ -0,0 +1,13 @@
+package org.example.reactive.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.stream")
+public class UserStreamProperties {
+    /** Rows fetched from the database per request of the streamed listing; the next batch waits for demand. */
+    private int fetchSize = 500;
+}
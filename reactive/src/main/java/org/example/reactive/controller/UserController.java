@@ -0,0 +1,93 @@
+package org.example.reactive.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.reactive.dto.UserDto;
+import org.example.reactive.exceptions.UserAlreadyExistsException;
+import org.example.reactive.services.UserService;
+import org.example.reactive.utils.MappingUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/** The {@code /api/v1/users} contract of the blocking service: same paths, status codes and bodies. */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/users")
+@AllArgsConstructor
+public class UserController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final UserService userService;
+    private final MappingUtils mappingUtils;
+
+    @GetMapping
+    public Mono<ResponseEntity<List<UserDto>>> getAllUser(@RequestParam(required = false) Integer after,
+                                                          @RequestParam(defaultValue = "" + UserService.DEFAULT_PAGE_LIMIT) int limit) {
+        if (limit < 1 || limit > UserService.MAX_PAGE_LIMIT) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return userService.getPage(after, limit)
+                .map(mappingUtils::mapToUserDto)
+                .collectList()
+                .map(users -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (users.size() == limit) {
+                        response.header(NEXT_CURSOR_HEADER, String.valueOf(users.get(users.size() - 1).getId()));
+                    }
+                    return response.body(users);
+                })
+                .onErrorResume(e -> failed("getAllUser", e));
+    }
+
+    /** The whole table as NDJSON; Netty writes as fast as the client reads and the database is read as far ahead. */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<UserDto> streamAllUsers() {
+        return userService.streamAll();
+    }
+
+    @GetMapping("/{email}")
+    public Mono<ResponseEntity<UserDto>> getByEmail(@PathVariable String email) {
+        return userService.getByEmail(email)
+                .map(user -> ResponseEntity.ok(mappingUtils.mapToUserDto(user)))
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorResume(e -> failed("getByEmail", e));
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<UserDto>> createUser(@RequestBody UserDto userDto) {
+        return userService.save(mappingUtils.mapToUSerEntity(userDto))
+                .map(user -> ResponseEntity.status(201).body(mappingUtils.mapToUserDto(user)))
+                .onErrorResume(e -> failed("createUser", e));
+    }
+
+    @PostMapping("/{email}")
+    public Mono<ResponseEntity<UserDto>> updateUser(@PathVariable String email, @RequestBody UserDto userDto) {
+        if (userDto.getEmail() == null || userDto.getEmail().isBlank()) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return userService.updateUserByEmail(email, mappingUtils.mapToUSerEntity(userDto))
+                .map(user -> ResponseEntity.ok(mappingUtils.mapToUserDto(user)))
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorResume(e -> failed("updateUser", e));
+    }
+
+    @DeleteMapping("/{email}")
+    public Mono<ResponseEntity<Void>> deleteUser(@PathVariable String email) {
+        return userService.deleteByEmail(email)
+                .map(deleted -> deleted ? ResponseEntity.noContent().<Void>build() : ResponseEntity.notFound().<Void>build())
+                .onErrorResume(e -> failed("deleteUser", e));
+    }
+
+    private static <T> Mono<ResponseEntity<T>> failed(String operation, Throwable e) {
+        if (e instanceof UserAlreadyExistsException) {
+            return Mono.just(ResponseEntity.status(409).build());
+        }
+        log.error("Ошибка при выполнении {}", operation, e);
+        return Mono.just(ResponseEntity.status(500).build());
+    }
+}
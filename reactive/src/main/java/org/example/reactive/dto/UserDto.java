@@ -0,0 +1,34 @@
+package org.example.reactive.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+public class UserDto {
+    private Integer id;
+    private String name;
+    private String email;
+    private Integer age;
+    private LocalDateTime createdAt;
+
+    public UserDto() {
+
+    }
+
+    public UserDto(String name, String email, Integer age) {
+        this.name = name;
+        this.email = email;
+        this.age = age;
+    }
+
+    public UserDto(Integer id, String name, String email, Integer age, LocalDateTime createdAt) {
+        this.id = id;
+        this.name = name;
+        this.email = email;
+        this.age = age;
+        this.createdAt = createdAt;
+    }
+}
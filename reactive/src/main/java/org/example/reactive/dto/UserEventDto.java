@@ -0,0 +1,29 @@
+package org.example.reactive.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.example.reactive.entities.UserEventType;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+public class UserEventDto {
+    private UserEventType type;
+    private Integer id;
+    private String email;
+    private String previousEmail;
+    private String name;
+    private Integer age;
+    private LocalDateTime createdAt;
+
+    public UserEventDto() {
+
+    }
+
+    public UserEventDto(UserEventType type, Integer id, String email) {
+        this.type = type;
+        this.id = id;
+        this.email = email;
+    }
+}
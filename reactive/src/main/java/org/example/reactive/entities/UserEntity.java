@@ -0,0 +1,46 @@
+package org.example.reactive.entities;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * The {@code users} table of the blocking service, which owns the schema. Ids come from {@code users_id_seq}
+ * in blocks of {@link #ID_ALLOCATION_SIZE}, like Hibernate's pooled optimizer does there.
+ */
+@Getter
+@Setter
+@Table("users")
+public class UserEntity {
+    public static final String ID_SEQUENCE = "users_id_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    @Id
+    private Integer id;
+
+    private String name;
+
+    private String email;
+
+    private Integer age;
+
+    @Column("created_at")
+    private LocalDateTime createdAt;
+
+    @Version
+    private Long version;
+
+    public UserEntity() {
+    }
+
+    public UserEntity(String name, String email, Integer age) {
+        this.name = name;
+        this.email = email;
+        this.age = age;
+    }
+}
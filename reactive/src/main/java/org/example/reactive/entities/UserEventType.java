@@ -0,0 +1,8 @@
+package org.example.reactive.entities;
+
+public enum UserEventType {
+    CREATED,
+    UPDATED,
+    DELETED,
+    ARCHIVED
+}
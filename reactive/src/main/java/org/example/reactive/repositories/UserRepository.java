@@ -0,0 +1,24 @@
+package org.example.reactive.repositories;
+
+import org.example.reactive.entities.UserEntity;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface UserRepository extends ReactiveCrudRepository<UserEntity, Integer> {
+    Mono<UserEntity> findByEmail(String email);
+
+    @Query("select * from users where id > :after order by id limit :limit")
+    Flux<UserEntity> findPageAfter(int after, int limit);
+
+    @Modifying
+    @Query("update users set name = :name, email = :newEmail, age = :age, version = coalesce(version, 0) + 1 "
+            + "where email = :email")
+    Mono<Integer> updateByEmail(String email, String newEmail, String name, Integer age);
+
+    @Modifying
+    @Query("delete from users where email = :email")
+    Mono<Integer> deleteByEmail(String email);
+}
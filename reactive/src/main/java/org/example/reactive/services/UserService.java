@@ -0,0 +1,164 @@
+package org.example.reactive.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.reactive.config.UserStreamProperties;
+import org.example.reactive.dto.UserDto;
+import org.example.reactive.dto.UserEventDto;
+import org.example.reactive.entities.UserEntity;
+import org.example.reactive.entities.UserEventType;
+import org.example.reactive.exceptions.UserAlreadyExistsException;
+import org.example.reactive.repositories.UserRepository;
+import org.example.reactive.utils.EmailNormalizer;
+import org.example.reactive.utils.PooledSequence;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * The user operations of the blocking service on R2DBC. Changes write the same {@code user_outbox} events in the
+ * same transaction, so the outbox relay of the blocking service publishes them as well, and increment the same
+ * {@code users_change_marker}.
+ */
+@Service
+public class UserService {
+    public static final int DEFAULT_PAGE_LIMIT = 100;
+    public static final int MAX_PAGE_LIMIT = 1000;
+    public static final String OUTBOX_ID_SEQUENCE = "user_outbox_id_seq";
+    public static final int OUTBOX_ID_ALLOCATION_SIZE = 50;
+
+    private final UserRepository userRepository;
+    private final DatabaseClient databaseClient;
+    private final ObjectMapper objectMapper;
+    private final UserStreamProperties streamProperties;
+    private final PooledSequence userIds;
+    private final PooledSequence outboxIds;
+
+    public UserService(UserRepository userRepository, DatabaseClient databaseClient, ObjectMapper objectMapper,
+                       UserStreamProperties streamProperties) {
+        this.userRepository = userRepository;
+        this.databaseClient = databaseClient;
+        this.objectMapper = objectMapper;
+        this.streamProperties = streamProperties;
+        this.userIds = new PooledSequence(databaseClient, UserEntity.ID_SEQUENCE, UserEntity.ID_ALLOCATION_SIZE);
+        this.outboxIds = new PooledSequence(databaseClient, OUTBOX_ID_SEQUENCE, OUTBOX_ID_ALLOCATION_SIZE);
+    }
+
+    @Transactional
+    public Mono<UserEntity> save(UserEntity userEntity) {
+        if (userEntity == null) {
+            return Mono.error(new IllegalArgumentException("UserEntity не может быть null"));
+        }
+        userEntity.setEmail(EmailNormalizer.normalize(userEntity.getEmail()));
+        userEntity.setCreatedAt(LocalDateTime.now());
+        // a null version marks the entity as new, so save() inserts with the allocated id
+        userEntity.setVersion(null);
+        return userIds.next()
+                .flatMap(id -> {
+                    userEntity.setId(id.intValue());
+                    return userRepository.save(userEntity);
+                })
+                .flatMap(saved -> writeEvent(UserEventType.CREATED, saved, null).thenReturn(saved))
+                .onErrorMap(DataIntegrityViolationException.class,
+                        e -> new UserAlreadyExistsException(userEntity.getEmail(), e));
+    }
+
+    @Transactional(readOnly = true)
+    public Mono<UserEntity> getByEmail(String email) {
+        if (email == null || email.isEmpty()) {
+            return Mono.error(new IllegalArgumentException("Email не может быть null"));
+        }
+        return userRepository.findByEmail(EmailNormalizer.normalize(email));
+    }
+
+    @Transactional(readOnly = true)
+    public Flux<UserEntity> getPage(Integer after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_LIMIT) {
+            return Flux.error(new IllegalArgumentException("Limit должен быть в диапазоне от 1 до " + MAX_PAGE_LIMIT));
+        }
+        return userRepository.findPageAfter(after == null ? 0 : after, limit);
+    }
+
+    /**
+     * All users in id order. Rows are fetched {@code users.stream.fetch-size} at a time as the subscriber requests
+     * them, so a slow client holds one connection and one batch of rows, not the whole table.
+     */
+    @Transactional(readOnly = true)
+    public Flux<UserDto> streamAll() {
+        return databaseClient.sql("select id, name, email, age, created_at from users order by id")
+                .filter(statement -> statement.fetchSize(streamProperties.getFetchSize()))
+                .map(row -> new UserDto(row.get("id", Integer.class), row.get("name", String.class),
+                        row.get("email", String.class), row.get("age", Integer.class),
+                        row.get("created_at", LocalDateTime.class)))
+                .all();
+    }
+
+    @Transactional
+    public Mono<UserEntity> updateUserByEmail(String email, UserEntity newData) {
+        if (email == null || email.isEmpty()) {
+            return Mono.error(new IllegalArgumentException("Email не может быть null"));
+        }
+        if (newData == null) {
+            return Mono.error(new IllegalArgumentException("NewData не может быть null"));
+        }
+        String oldEmail = EmailNormalizer.normalize(email);
+        String newEmail = EmailNormalizer.normalize(newData.getEmail());
+        if (newEmail == null || newEmail.isEmpty()) {
+            return Mono.error(new IllegalArgumentException("Новый email не может быть пустым"));
+        }
+        return userRepository.updateByEmail(oldEmail, newEmail, newData.getName(), newData.getAge())
+                .filter(updated -> updated > 0)
+                .flatMap(updated -> userRepository.findByEmail(newEmail))
+                .flatMap(user -> writeEvent(UserEventType.UPDATED, user, oldEmail).thenReturn(user))
+                .onErrorMap(DataIntegrityViolationException.class, e -> new UserAlreadyExistsException(newEmail, e));
+    }
+
+    @Transactional
+    public Mono<Boolean> deleteByEmail(String email) {
+        if (email == null || email.isEmpty()) {
+            return Mono.error(new IllegalArgumentException("Email не может быть null"));
+        }
+        String normalized = EmailNormalizer.normalize(email);
+        return userRepository.findByEmail(normalized)
+                .flatMap(user -> userRepository.deleteByEmail(normalized)
+                        .filter(deleted -> deleted > 0)
+                        .flatMap(deleted -> writeEvent(UserEventType.DELETED, user, null).thenReturn(true)))
+                .defaultIfEmpty(false);
+    }
+
+    private Mono<Void> writeEvent(UserEventType type, UserEntity user, String previousEmail) {
+        UserEventDto event = new UserEventDto(type, user.getId(), user.getEmail());
+        if (type != UserEventType.DELETED) {
+            event.setPreviousEmail(previousEmail);
+            event.setName(user.getName());
+            event.setAge(user.getAge());
+            event.setCreatedAt(user.getCreatedAt());
+        }
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            return Mono.error(new IllegalStateException("Не удалось сериализовать событие пользователя " + user.getId(), e));
+        }
+        // the blocking service's change marker: incremented last, it locks its row until commit, so its value
+        // orders the event for the relay
+        return databaseClient.sql("update users_change_marker set marker = marker + 1 where id = 1").then()
+                .then(databaseClient.sql("select marker from users_change_marker where id = 1")
+                        .map(row -> row.get("marker", Long.class)).one())
+                .zipWith(outboxIds.next())
+                .flatMap(ids -> databaseClient.sql("insert into user_outbox (id, aggregate_id, event_type, payload, "
+                                + "commit_seq, created_at) values (:id, :aggregateId, :type, :payload, :commitSeq, :createdAt)")
+                        .bind("id", ids.getT2())
+                        .bind("commitSeq", ids.getT1())
+                        .bind("aggregateId", user.getId())
+                        .bind("type", type.name())
+                        .bind("payload", payload)
+                        .bind("createdAt", LocalDateTime.now())
+                        .then());
+    }
+}
@@ -0,0 +1,48 @@
+package org.example.reactive.utils;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+/**
+ * Hands out ids from a database sequence the way Hibernate's pooled optimizer does in the blocking service:
+ * {@code nextval} returns the upper end of a block of {@code allocationSize} ids, so both services can insert
+ * into the same table without overlapping.
+ */
+public class PooledSequence {
+    private final DatabaseClient databaseClient;
+    private final String sequence;
+    private final int allocationSize;
+    private long next;
+    private long limit;
+
+    public PooledSequence(DatabaseClient databaseClient, String sequence, int allocationSize) {
+        this.databaseClient = databaseClient;
+        this.sequence = sequence;
+        this.allocationSize = allocationSize;
+    }
+
+    public Mono<Long> next() {
+        return Mono.defer(() -> {
+            Long id = take();
+            if (id != null) {
+                return Mono.just(id);
+            }
+            return databaseClient.sql("select nextval('" + sequence + "')")
+                    .map(row -> row.get(0, Long.class))
+                    .one()
+                    .map(this::takeFromBlock);
+        });
+    }
+
+    private synchronized Long take() {
+        return next < limit ? ++next : null;
+    }
+
+    /** Takes the first id of the fetched block; concurrent callers may each fetch one, the unused rest is skipped. */
+    private synchronized long takeFromBlock(long hi) {
+        // a fresh sequence returns 1 first, and Hibernate then uses ids up to the next value
+        next = Math.max(hi - allocationSize + 1, 1);
+        limit = hi;
+        return next;
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.reactive.controller;
+
+import org.example.reactive.dto.UserDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.test.StepVerifier;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+class UserControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @BeforeEach
+    void setUp() {
+        databaseClient.sql("delete from users").then().block();
+    }
+
+    @Test
+    void createGetUpdateDelete_followTheBlockingContract() {
+        webTestClient.post().uri("/api/v1/users").bodyValue(new UserDto("Name", "Name@mail.ru", 20))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody().jsonPath("$.email").isEqualTo("name@mail.ru");
+        webTestClient.post().uri("/api/v1/users").bodyValue(new UserDto("Other", "name@mail.ru", 30))
+                .exchange()
+                .expectStatus().isEqualTo(409);
+
+        webTestClient.get().uri("/api/v1/users/NAME@mail.ru")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.name").isEqualTo("Name");
+        webTestClient.post().uri("/api/v1/users/name@mail.ru").bodyValue(new UserDto("Renamed", null, 21))
+                .exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.post().uri("/api/v1/users/name@mail.ru").bodyValue(new UserDto("Renamed", "name@mail.ru", 21))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.age").isEqualTo(21);
+
+        webTestClient.delete().uri("/api/v1/users/name@mail.ru").exchange().expectStatus().isNoContent();
+        webTestClient.delete().uri("/api/v1/users/name@mail.ru").exchange().expectStatus().isNotFound();
+        webTestClient.get().uri("/api/v1/users/name@mail.ru").exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    void getAllUser_returnsPagesWithNextCursor() {
+        for (int i = 0; i < 3; i++) {
+            webTestClient.post().uri("/api/v1/users").bodyValue(new UserDto("Name" + i, "name" + i + "@mail.ru", 20))
+                    .exchange().expectStatus().isCreated();
+        }
+
+        webTestClient.get().uri("/api/v1/users?limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(UserController.NEXT_CURSOR_HEADER)
+                .expectBody().jsonPath("$.length()").isEqualTo(2);
+        webTestClient.get().uri("/api/v1/users?limit=0").exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    void streamAllUsers_writesNdjson() {
+        for (int i = 0; i < 3; i++) {
+            webTestClient.post().uri("/api/v1/users").bodyValue(new UserDto("Name" + i, "name" + i + "@mail.ru", 20))
+                    .exchange().expectStatus().isCreated();
+        }
+
+        StepVerifier.create(webTestClient.get().uri("/api/v1/users").accept(MediaType.APPLICATION_NDJSON)
+                        .exchange()
+                        .expectStatus().isOk()
+                        .returnResult(UserDto.class).getResponseBody())
+                .expectNextMatches(user -> "name0@mail.ru".equals(user.getEmail()))
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+}
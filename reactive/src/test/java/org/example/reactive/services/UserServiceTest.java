@@ -0,0 +1,119 @@
+package org.example.reactive.services;
+
+import org.example.reactive.entities.UserEntity;
+import org.example.reactive.exceptions.UserAlreadyExistsException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "users.stream.fetch-size=7")
+@ActiveProfiles("test")
+class UserServiceTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @BeforeEach
+    void setUp() {
+        databaseClient.sql("delete from users").then()
+                .then(databaseClient.sql("delete from user_outbox").then())
+                .block();
+    }
+
+    @Test
+    void testSave_AllocatesIdsAndWritesOutboxEvent() {
+        UserEntity saved = userService.save(new UserEntity("Name", " Name@Mail.ru ", 20)).block();
+
+        assertNotNull(saved.getId());
+        assertEquals("name@mail.ru", saved.getEmail());
+        StepVerifier.create(userService.getByEmail("NAME@mail.ru"))
+                .assertNext(user -> {
+                    assertEquals(saved.getId(), user.getId());
+                    assertEquals(0L, user.getVersion());
+                })
+                .verifyComplete();
+        assertEquals(List.of("CREATED"), eventTypes());
+    }
+
+    @Test
+    void testSave_WhenEmailExists_ThenFailsWithoutEvent() {
+        userService.save(new UserEntity("Name", "name@mail.ru", 20)).block();
+
+        StepVerifier.create(userService.save(new UserEntity("Other", "name@mail.ru", 30)))
+                .expectError(UserAlreadyExistsException.class)
+                .verify();
+        assertEquals(List.of("CREATED"), eventTypes());
+    }
+
+    @Test
+    void testUpdate_RejectsMissingNewEmail() {
+        userService.save(new UserEntity("Name", "name@mail.ru", 20)).block();
+
+        StepVerifier.create(userService.updateUserByEmail("name@mail.ru", new UserEntity("Renamed", null, 21)))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(userService.getByEmail("name@mail.ru"))
+                .assertNext(user -> assertEquals("Name", user.getName()))
+                .verifyComplete();
+        assertEquals(List.of("CREATED"), eventTypes());
+    }
+
+    @Test
+    void testUpdateAndDelete_WriteOutboxEvents() {
+        userService.save(new UserEntity("Name", "name@mail.ru", 20)).block();
+
+        StepVerifier.create(userService.updateUserByEmail("name@mail.ru", new UserEntity("Renamed", "new@mail.ru", 21)))
+                .assertNext(user -> {
+                    assertEquals("Renamed", user.getName());
+                    assertEquals(1L, user.getVersion());
+                })
+                .verifyComplete();
+        StepVerifier.create(userService.updateUserByEmail("name@mail.ru", new UserEntity("Missing", "x@mail.ru", 1)))
+                .verifyComplete();
+        StepVerifier.create(userService.deleteByEmail("new@mail.ru")).expectNext(true).verifyComplete();
+        StepVerifier.create(userService.deleteByEmail("new@mail.ru")).expectNext(false).verifyComplete();
+
+        assertEquals(List.of("CREATED", "UPDATED", "DELETED"), eventTypes());
+        List<Long> commitSeqs = databaseClient.sql("select commit_seq from user_outbox order by id")
+                .map(row -> row.get("commit_seq", Long.class))
+                .all().collectList().block();
+        assertTrue(commitSeqs.get(0) < commitSeqs.get(1) && commitSeqs.get(1) < commitSeqs.get(2), commitSeqs::toString);
+    }
+
+    @Test
+    void testStreamAll_EmitsOnlyWhatIsRequested() {
+        Flux.range(0, 120).concatMap(i -> userService.save(new UserEntity("Name" + i, "name" + i + "@mail.ru", 20)))
+                .blockLast();
+
+        StepVerifier.create(userService.streamAll(), 0)
+                .thenRequest(10)
+                .expectNextCount(10)
+                .expectNoEvent(java.time.Duration.ofMillis(100))
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextCount(110)
+                .verifyComplete();
+        Set<Integer> ids = new HashSet<>();
+        userService.streamAll().doOnNext(user -> assertTrue(ids.add(user.getId()))).blockLast();
+        assertEquals(120, ids.size());
+    }
+
+    private List<String> eventTypes() {
+        return databaseClient.sql("select event_type from user_outbox order by id")
+                .map(row -> row.get("event_type", String.class))
+                .all().collectList().block();
+    }
+}
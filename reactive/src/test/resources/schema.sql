@@ -0,0 +1,31 @@
+-- the tables the blocking service creates through Hibernate
+CREATE SEQUENCE IF NOT EXISTS users_id_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS user_outbox_id_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS users (
+    id INTEGER PRIMARY KEY,
+    name VARCHAR(255),
+    email VARCHAR(255),
+    age INTEGER,
+    created_at TIMESTAMP,
+    version BIGINT DEFAULT 0,
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE IF NOT EXISTS user_outbox (
+    id BIGINT PRIMARY KEY,
+    aggregate_id INTEGER NOT NULL,
+    event_type VARCHAR(16) NOT NULL,
+    payload VARCHAR(4000) NOT NULL,
+    commit_seq BIGINT,
+    created_at TIMESTAMP NOT NULL,
+    published_at TIMESTAMP
+);
+
+-- the collection ETag marker, seeded by the blocking service's schema-postgresql.sql
+CREATE TABLE IF NOT EXISTS users_change_marker (
+    id     INTEGER PRIMARY KEY,
+    marker BIGINT  NOT NULL
+);
+INSERT INTO users_change_marker (id, marker)
+SELECT 1, 0 WHERE NOT EXISTS (SELECT 1 FROM users_change_marker WHERE id = 1);
@@ -0,0 +1,49 @@
+package org.example.benchmarks;
+
+import org.example.MyApplication;
+import org.example.dto.UserDto;
+import org.example.services.UserImportService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+final class BenchmarkApplication {
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        Stream<String> defaults = Stream.of(
+                "spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "spring.datasource.driver-class-name=org.h2.Driver",
+                "spring.datasource.username=sa",
+                "spring.datasource.password=",
+                "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "spring.jpa.hibernate.ddl-auto=create-drop",
+                "users.outbox.relay-enabled=false",
+                "spring.sql.init.platform=h2",
+                "logging.level.root=WARN");
+        String[] args = Stream.concat(defaults, Arrays.stream(properties)).map(property -> "--" + property).toArray(String[]::new);
+        return new SpringApplicationBuilder(MyApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args);
+    }
+
+    static void seed(ConfigurableApplicationContext context, int rows) {
+        Iterator<UserDto> users = IntStream.range(0, rows).mapToObj(BenchmarkApplication::user).iterator();
+        context.getBean(UserImportService.class).importUsers(users);
+    }
+
+    static UserDto user(int index) {
+        return new UserDto("Name" + index, email(index), 18 + index % 50);
+    }
+
+    static String email(int index) {
+        return "user" + index + "@mail.ru";
+    }
+}
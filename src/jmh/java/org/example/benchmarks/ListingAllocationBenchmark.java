@@ -0,0 +1,78 @@
+package org.example.benchmarks;
+
+import jakarta.persistence.EntityManager;
+import org.example.dto.UserDto;
+import org.example.entities.UserEntity;
+import org.example.services.UserService;
+import org.example.utils.MappingUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation per listed user of the DTO projection against loading managed entities and mapping them;
+ * compare {@code gc.alloc.rate.norm} with {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ListingAllocationBenchmark {
+    private static final int ROWS = 10000;
+
+    @Param({"100", "1000"})
+    private int limit;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private EntityManager entityManager;
+    private TransactionTemplate transactionTemplate;
+    private MappingUtils mappingUtils;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, ROWS);
+        userService = context.getBean(UserService.class);
+        entityManager = context.getBean(EntityManager.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        mappingUtils = context.getBean(MappingUtils.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<UserDto> projection() {
+        return userService.getPage(0, limit);
+    }
+
+    @Benchmark
+    public List<UserDto> entitiesThenMapping() {
+        return transactionTemplate.execute(status -> entityManager
+                .createQuery("select u from UserEntity u where u.id > :after order by u.id", UserEntity.class)
+                .setParameter("after", 0)
+                .setMaxResults(limit)
+                .getResultStream()
+                .map(mappingUtils::mapToUserDto)
+                .toList());
+    }
+}
@@ -0,0 +1,48 @@
+package org.example.benchmarks;
+
+import org.example.dto.UserDto;
+import org.example.entities.UserEntity;
+import org.example.utils.MappingUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MappingBenchmark {
+    private final MappingUtils mappingUtils = new MappingUtils();
+    private UserEntity entity;
+    private UserDto dto;
+
+    @Setup
+    public void setUp() {
+        entity = new UserEntity("Name1", "name1@mail.ru", 18);
+        entity.setId(1);
+        entity.setCreatedAt(LocalDateTime.now());
+        dto = mappingUtils.mapToUserDto(entity);
+    }
+
+    @Benchmark
+    public UserDto mapToUserDto() {
+        return mappingUtils.mapToUserDto(entity);
+    }
+
+    @Benchmark
+    public UserEntity mapToUserEntity() {
+        return mappingUtils.mapToUSerEntity(dto);
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.benchmarks;
+
+import jakarta.persistence.EntityManager;
+import org.example.entities.UserEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading entities in a read-only transaction (no dirty-checking snapshots, no flush) against a read-write one;
+ * compare {@code gc.alloc.rate.norm} with {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReadOnlyTransactionBenchmark {
+    private static final int ROWS = 10000;
+
+    @Param({"100", "1000"})
+    private int limit;
+
+    private ConfigurableApplicationContext context;
+    private EntityManager entityManager;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, ROWS);
+        entityManager = context.getBean(EntityManager.class);
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<UserEntity> readOnly() {
+        return readOnly.execute(status -> load());
+    }
+
+    @Benchmark
+    public List<UserEntity> readWrite() {
+        return readWrite.execute(status -> load());
+    }
+
+    private List<UserEntity> load() {
+        return entityManager
+                .createQuery("select u from UserEntity u order by u.id", UserEntity.class)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
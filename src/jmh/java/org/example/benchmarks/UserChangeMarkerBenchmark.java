@@ -0,0 +1,85 @@
+package org.example.benchmarks;
+
+import org.example.services.UserChangeMarker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What the commit-order marker ({@link UserChangeMarker}) costs concurrent writers: eight threads update different
+ * users, each in its own transaction, with and without the marker increment. The increment holds the marker row until
+ * commit, so writers with it commit one at a time. {@code commitMicros} is spent inside the transaction after the
+ * increment and stands in for the commit itself (the WAL flush on Postgres), during which the row stays locked;
+ * the in-memory H2 commits at once and alone would hide the cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UserChangeMarkerBenchmark {
+    private static final int ROWS = 10000;
+
+    @Param({"0", "500"})
+    private long commitMicros;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private UserChangeMarker changeMarker;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, ROWS);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        changeMarker = context.getBean(UserChangeMarker.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long writeWithMarker() {
+        return write(true);
+    }
+
+    @Benchmark
+    public Long writeWithoutMarker() {
+        return write(false);
+    }
+
+    private Long write(boolean marker) {
+        String email = BenchmarkApplication.email(ThreadLocalRandom.current().nextInt(ROWS));
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.update("update users set age = age + 1 where email = ?", email);
+            long value = marker ? changeMarker.increment() : 0;
+            if (commitMicros > 0) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(commitMicros));
+            }
+            return value;
+        });
+    }
+}
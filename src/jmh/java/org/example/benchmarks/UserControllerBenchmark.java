@@ -0,0 +1,125 @@
+package org.example.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.controller.UserController;
+import org.example.dto.UserDto;
+import org.example.entities.UserEntity;
+import org.example.services.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * End-to-end request handling for every UserController endpoint through MockMvc, without a servlet container.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UserControllerBenchmark {
+    private static final int ROWS = 10000;
+    private static final int BULK_SIZE = 100;
+
+    private final AtomicInteger sequence = new AtomicInteger(ROWS);
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private ObjectMapper objectMapper;
+    private MockMvc mockMvc;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, ROWS);
+        userService = context.getBean(UserService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        mockMvc = MockMvcBuilders.standaloneSetup(context.getBean(UserController.class)).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MvcResult getAllUser() throws Exception {
+        return mockMvc.perform(get("/api/v1/users")
+                .param("after", String.valueOf(ThreadLocalRandom.current().nextInt(ROWS)))).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult getByEmail() throws Exception {
+        return mockMvc.perform(get("/api/v1/users/{email}", randomEmail())).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult createUser() throws Exception {
+        int index = sequence.incrementAndGet();
+        return mockMvc.perform(post("/api/v1/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsBytes(BenchmarkApplication.user(index)))).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult updateUser() throws Exception {
+        String email = randomEmail();
+        UserDto user = new UserDto("Updated", email, 18 + ThreadLocalRandom.current().nextInt(50));
+        return mockMvc.perform(post("/api/v1/users/{email}", email)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsBytes(user))).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult createThenDeleteUser() throws Exception {
+        int index = sequence.incrementAndGet();
+        userService.save(new UserEntity("Name" + index, BenchmarkApplication.email(index), 30));
+        return mockMvc.perform(delete("/api/v1/users/{email}", BenchmarkApplication.email(index))).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult importUsers() throws Exception {
+        int first = sequence.getAndAdd(BULK_SIZE);
+        String body = IntStream.range(first, first + BULK_SIZE)
+                .mapToObj(i -> toJson(BenchmarkApplication.user(i)))
+                .collect(Collectors.joining("\n"));
+        return mockMvc.perform(post("/api/v1/users/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(body)).andReturn();
+    }
+
+    private String toJson(UserDto user) {
+        try {
+            return objectMapper.writeValueAsString(user);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String randomEmail() {
+        return BenchmarkApplication.email(ThreadLocalRandom.current().nextInt(ROWS));
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.benchmarks;
+
+import org.example.dto.UserDto;
+import org.example.dto.UserImportResultDto;
+import org.example.entities.UserEntity;
+import org.example.services.UserImportService;
+import org.example.services.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Rows per second of the chunked bulk import against a loop of single creates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UserImportBenchmark {
+    private static final int BATCH = 1000;
+
+    private final AtomicInteger sequence = new AtomicInteger();
+    private ConfigurableApplicationContext context;
+    private UserImportService userImportService;
+    private UserService userService;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        userImportService = context.getBean(UserImportService.class);
+        userService = context.getBean(UserService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public UserImportResultDto bulkImport() {
+        int first = sequence.getAndAdd(BATCH);
+        Iterator<UserDto> users = IntStream.range(first, first + BATCH).mapToObj(BenchmarkApplication::user).iterator();
+        return userImportService.importUsers(users);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void singleCreates() {
+        int first = sequence.getAndAdd(BATCH);
+        for (int i = first; i < first + BATCH; i++) {
+            userService.save(new UserEntity("Name" + i, BenchmarkApplication.email(i), 18 + i % 50));
+        }
+    }
+}
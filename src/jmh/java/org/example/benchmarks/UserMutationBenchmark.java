@@ -0,0 +1,151 @@
+package org.example.benchmarks;
+
+import org.example.entities.UserEntity;
+import org.example.repositories.UserRepository;
+import org.example.services.UserEventOutbox;
+import org.example.services.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the single-statement update/delete paths with the previous load-then-write ones
+ * (a writable load by email followed by a dirty-checked update or a per-entity delete). Both sides do the rest of
+ * the service's work: one transaction, the outbox event and the cache eviction. The single-statement update
+ * re-reads the user for its event, which the load-then-write one already holds. Setup checks that the
+ * load-then-write update really writes the row: {@code findByEmail} loads read-only entities that are never flushed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UserMutationBenchmark {
+    private static final int ROWS = 10000;
+
+    private final AtomicInteger sequence = new AtomicInteger(ROWS);
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private UserRepository userRepository;
+    private UserEventOutbox userEventOutbox;
+    private TransactionTemplate transactionTemplate;
+    private Cache usersByEmail;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, ROWS);
+        userService = context.getBean(UserService.class);
+        userRepository = context.getBean(UserRepository.class);
+        userEventOutbox = context.getBean(UserEventOutbox.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        usersByEmail = context.getBean(CacheManager.class).getCache(UserService.USERS_BY_EMAIL_CACHE);
+        checkLoadThenWriteUpdates(context.getBean(JdbcTemplate.class));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<UserEntity> updateSingleStatement() {
+        int index = ThreadLocalRandom.current().nextInt(ROWS);
+        String email = BenchmarkApplication.email(index);
+        return userService.updateUserByEmail(email, new UserEntity("Name" + index, email, randomAge()));
+    }
+
+    @Benchmark
+    public Optional<UserEntity> updateLoadThenWrite() {
+        return loadThenWrite(ThreadLocalRandom.current().nextInt(ROWS));
+    }
+
+    @Benchmark
+    public boolean createThenDeleteSingleStatement() {
+        String email = createUser();
+        return userService.deleteByEmail(email);
+    }
+
+    @Benchmark
+    public boolean createThenDeleteLoadThenWrite() {
+        String email = createUser();
+        Boolean deleted = transactionTemplate.execute(status -> {
+            Optional<UserEntity> user = findWritable(email);
+            user.ifPresent(existing -> {
+                userRepository.delete(existing);
+                userRepository.flush();
+                userEventOutbox.deleted(existing.getId(), email);
+            });
+            return user.isPresent();
+        });
+        usersByEmail.evict(email);
+        return Boolean.TRUE.equals(deleted);
+    }
+
+    private Optional<UserEntity> loadThenWrite(int index) {
+        String email = BenchmarkApplication.email(index);
+        Optional<UserEntity> user = transactionTemplate.execute(status -> {
+            Optional<UserEntity> found = findWritable(email);
+            found.ifPresent(existing -> {
+                existing.setName("Name" + index);
+                existing.setAge(changedAge(existing.getAge()));
+                userRepository.saveAndFlush(existing);
+                userEventOutbox.updated(existing, email);
+            });
+            return found;
+        });
+        usersByEmail.evict(email);
+        return user;
+    }
+
+    private Optional<UserEntity> findWritable(String email) {
+        return userRepository.findWritableByEmailIn(List.of(email)).stream().findFirst();
+    }
+
+    private void checkLoadThenWriteUpdates(JdbcTemplate jdbcTemplate) {
+        String sql = "select version from users where email = ?";
+        Long before = jdbcTemplate.queryForObject(sql, Long.class, BenchmarkApplication.email(0));
+        loadThenWrite(0);
+        Long after = jdbcTemplate.queryForObject(sql, Long.class, BenchmarkApplication.email(0));
+        if (Objects.equals(before, after)) {
+            throw new IllegalStateException("Load-then-write update did not change the row: version stayed " + before);
+        }
+    }
+
+    private String createUser() {
+        int index = sequence.incrementAndGet();
+        userService.save(new UserEntity("Name" + index, BenchmarkApplication.email(index), 30));
+        return BenchmarkApplication.email(index);
+    }
+
+    private int randomAge() {
+        return 18 + ThreadLocalRandom.current().nextInt(50);
+    }
+
+    /** A different age every time, as the single-statement update always writes; an unchanged entity is not flushed. */
+    private int changedAge(Integer current) {
+        int age = randomAge();
+        return Objects.equals(age, current) ? age + 1 : age;
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.benchmarks;
+
+import org.example.dto.UserDto;
+import org.example.entities.UserEntity;
+import org.example.repositories.UserRepository;
+import org.example.services.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup latency should stay flat as {@code rows} grows; run with {@code -p rows=10000,1000000,10000000}
+ * to reproduce the 10k-10M comparison for the unique email index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UserServiceBenchmark {
+    @Param({"10000", "100000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private UserRepository userRepository;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, rows);
+        userService = context.getBean(UserService.class);
+        userRepository = context.getBean(UserRepository.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<UserEntity> getByEmailCached() {
+        return userService.getByEmail(randomEmail());
+    }
+
+    @Benchmark
+    public Optional<UserEntity> findByEmailIndexed() {
+        return userRepository.findByEmail(randomEmail());
+    }
+
+    @Benchmark
+    public List<UserDto> getPage() {
+        return userService.getPage(ThreadLocalRandom.current().nextInt(rows), UserService.DEFAULT_PAGE_LIMIT);
+    }
+
+    private String randomEmail() {
+        return BenchmarkApplication.email(ThreadLocalRandom.current().nextInt(rows));
+    }
+}
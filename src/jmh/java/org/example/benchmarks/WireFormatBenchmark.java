@@ -0,0 +1,88 @@
+package org.example.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.example.dto.UserDto;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CPU per serialized page and bytes on the wire for the formats {@code GET /api/v1/users} negotiates.
+ * {@code json-gzip} and {@code cbor-gzip} mirror what Tomcat sends with {@code server.compression} on;
+ * the payload size of one page is reported as the secondary result {@code payloadBytes}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class WireFormatBenchmark {
+    @Param({"10000"})
+    private int size;
+
+    @Param({"json", "json-gzip", "smile", "cbor", "cbor-gzip"})
+    private String format;
+
+    private ObjectMapper objectMapper;
+    private boolean gzip;
+    private List<UserDto> users;
+
+    @Setup
+    public void setUp() {
+        objectMapper = switch (format) {
+            case "json", "json-gzip" -> Jackson2ObjectMapperBuilder.json().build();
+            case "smile" -> Jackson2ObjectMapperBuilder.smile()
+                    .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+            case "cbor", "cbor-gzip" -> Jackson2ObjectMapperBuilder.cbor()
+                    .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+            default -> throw new IllegalArgumentException(format);
+        };
+        gzip = format.endsWith("-gzip");
+        LocalDateTime now = LocalDateTime.now();
+        users = IntStream.range(0, size).mapToObj(i -> {
+            UserDto user = BenchmarkApplication.user(i);
+            user.setId(i + 1);
+            user.setCreatedAt(now);
+            return user;
+        }).toList();
+    }
+
+    /** Bytes of the last serialized page; every page is the same, so this is the payload size per {@code size} users. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Payload {
+        public long payloadBytes;
+    }
+
+    @Benchmark
+    public byte[] serializeUserList(Payload payload) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(size * 64);
+        try (OutputStream out = gzip ? new GZIPOutputStream(buffer, 8192) : buffer) {
+            objectMapper.writeValue(out, users);
+        }
+        byte[] page = buffer.toByteArray();
+        payload.payloadBytes = page.length;
+        return page;
+    }
+}
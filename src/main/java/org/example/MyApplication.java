@@ -2,8 +2,15 @@ package org.example;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.core.Ordered;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+@EnableScheduling
 public class MyApplication {
     public static void main(String[] args) {
         SpringApplication.run(MyApplication.class, args);
@@ -0,0 +1,91 @@
+package org.example.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import jakarta.persistence.EntityManagerFactory;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Hibernate second-level cache on a local Ehcache (JCache) manager, switched on by {@code users.l2cache.enabled}.
+ * Every region listed under {@code users.l2cache.regions} gets a bounded heap tier in front of an off-heap tier;
+ * a region used by an entity but not configured fails the startup instead of silently growing unbounded.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "users.l2cache", name = "enabled", havingValue = "true")
+public class HibernateL2CacheConfig {
+    public static final String CACHE_MANAGER_TAG = "hibernate-l2";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(UserL2CacheProperties properties) {
+        Map<String, org.ehcache.config.CacheConfiguration<?, ?>> caches = new HashMap<>();
+        properties.getRegions().forEach((name, region) -> caches.put(name, CacheConfigurationBuilder
+                .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.newResourcePoolsBuilder()
+                        .heap(region.getHeapEntries(), EntryUnit.ENTRIES)
+                        .offheap(Math.max(1, region.getOffHeap().toMegabytes()), MemoryUnit.MB))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(region.getTimeToLive()))
+                .build()));
+
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        // one manager per application context: managers are shared per URI inside the provider
+        CacheManager cacheManager = provider.getCacheManager(URI.create("urn:users-l2cache:" + UUID.randomUUID()),
+                new DefaultConfiguration(caches, getClass().getClassLoader()));
+        properties.getRegions().keySet().forEach(name -> cacheManager.enableStatistics(name, true));
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+        return hibernateProperties -> {
+            hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    /**
+     * Ehcache counters per region ({@code cache.gets}, {@code cache.puts}, {@code cache.evictions}, ...) and the hit
+     * ratio seen by Hibernate ({@code users.l2cache.hit.ratio}).
+     */
+    @Bean
+    public MeterBinder secondLevelCacheMetrics(CacheManager hibernateCacheManager, UserL2CacheProperties properties,
+                                               ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        return registry -> properties.getRegions().keySet().forEach(name -> {
+            JCacheMetrics.monitor(registry, hibernateCacheManager.getCache(name), Tags.of("cacheManager", CACHE_MANAGER_TAG));
+            Gauge.builder("users.l2cache.hit.ratio", () -> hitRatio(entityManagerFactory, name))
+                    .tag("region", name)
+                    .register(registry);
+        });
+    }
+
+    private static double hitRatio(ObjectProvider<EntityManagerFactory> entityManagerFactory, String region) {
+        CacheRegionStatistics statistics = entityManagerFactory.getObject().unwrap(SessionFactory.class)
+                .getStatistics().getDomainDataRegionStatistics(region);
+        long requests = statistics.getHitCount() + statistics.getMissCount();
+        return requests == 0 ? 0 : (double) statistics.getHitCount() / requests;
+    }
+}
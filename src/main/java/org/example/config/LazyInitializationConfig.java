@@ -0,0 +1,27 @@
+package org.example.config;
+
+import org.example.emailfilter.UserEmailFilter;
+import org.example.services.UserArchiveService;
+import org.example.services.UserOutboxRelay;
+import org.example.services.UserOutboxTail;
+import org.example.sharding.UserShardRouter;
+import org.example.writebehind.UserWriteBehindQueue;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Beans that must start with the application even under {@code spring.main.lazy-initialization}
+ * (the {@code startup} profile). Created lazily, they would wait for the first request that needs them,
+ * and until then the outbox would not be relayed or tailed, the write-behind journal would not be replayed,
+ * the email filter would not be built and the {@code @Scheduled} jobs of these beans (archiving, the shard layout
+ * refresh) would not run.
+ */
+@Configuration
+public class LazyInitializationConfig {
+    @Bean
+    static LazyInitializationExcludeFilter backgroundWorkersExcludeFilter() {
+        return LazyInitializationExcludeFilter.forBeanTypes(UserOutboxRelay.class, UserWriteBehindQueue.class,
+                UserEmailFilter.class, UserOutboxTail.class, UserArchiveService.class, UserShardRouter.class);
+    }
+}
@@ -0,0 +1,56 @@
+package org.example.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.rate-limit")
+public class RateLimitProperties {
+    private boolean enabled = true;
+    private String clientHeader = "X-Client-Id";
+    /**
+     * Remote addresses (gateways, reverse proxies) whose {@link #clientHeader} names the client. From any other
+     * address the header is ignored and the client is the address itself, so a caller cannot escape its limits by
+     * sending a new id with every request.
+     */
+    private Set<String> trustedProxies = new LinkedHashSet<>();
+    private long maxClients = 100000;
+    private Duration clientIdleTimeout = Duration.ofMinutes(10);
+    private Map<String, Rule> rules = new LinkedHashMap<>();
+
+    /**
+     * Limits of one endpoint, matched by the handler mapping pattern (e.g. {@code /api/v1/users/{email}}) and, if set,
+     * the HTTP method. A rate of 0 or a {@code maxConcurrent} of 0 switches that limit off.
+     */
+    @Getter
+    @Setter
+    public static class Rule {
+        private String pattern;
+        private String method;
+        private double clientRate;
+        private int clientBurst = 1;
+        private double endpointRate;
+        private int endpointBurst = 1;
+        private int maxConcurrent;
+
+        public Rule copy() {
+            Rule copy = new Rule();
+            copy.setPattern(pattern);
+            copy.setMethod(method);
+            copy.setClientRate(clientRate);
+            copy.setClientBurst(clientBurst);
+            copy.setEndpointRate(endpointRate);
+            copy.setEndpointBurst(endpointBurst);
+            copy.setMaxConcurrent(maxConcurrent);
+            return copy;
+        }
+    }
+}
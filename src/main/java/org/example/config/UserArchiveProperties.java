@@ -0,0 +1,18 @@
+package org.example.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.archive")
+public class UserArchiveProperties {
+    private boolean enabled;
+    /** Users created longer ago than this are moved from {@code users} to {@code users_archive}. */
+    private Duration retention = Duration.ofDays(365);
+    /** Users moved per transaction. */
+    private int batchSize = 1000;
+}
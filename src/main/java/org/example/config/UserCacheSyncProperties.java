@@ -0,0 +1,12 @@
+package org.example.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.cache-sync")
+public class UserCacheSyncProperties {
+    private boolean enabled = true;
+}
@@ -0,0 +1,14 @@
+package org.example.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.copy")
+public class UserCopyProperties {
+    private int importChunkSize = 20000;
+    private int exportChunkIds = 100000;
+    private int maxErrorsPerChunk = 100;
+}
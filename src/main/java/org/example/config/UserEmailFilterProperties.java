@@ -0,0 +1,23 @@
+package org.example.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.email-filter")
+public class UserEmailFilterProperties {
+    private boolean enabled = true;
+    /** Share of absent emails the filter still sends to the database. */
+    private double falsePositiveRate = 0.01;
+    /** The filter is sized for {@code headroom} times the users present at a rebuild, but never for fewer than this. */
+    private long minCapacity = 100_000;
+    private double headroom = 2.0;
+    /** A filter that has not caught up with {@code user_outbox} for longer rules nothing out and lookups go to the database. */
+    private Duration maxLag = Duration.ofSeconds(5);
+    /** Rows fetched per round trip while the users table is streamed into a new filter. */
+    private int fetchSize = 10_000;
+}
@@ -0,0 +1,23 @@
+package org.example.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.feed")
+public class UserFeedProperties {
+    /** How many of the latest changes are kept for subscribers that reconnect with Last-Event-ID. */
+    private int history = 10000;
+    /** Changes queued for one subscriber; a subscriber that falls further behind is disconnected. */
+    private int subscriberBuffer = 1000;
+    private int maxSubscribers = 10000;
+    private int senderThreads = 4;
+    /** A write to one subscriber that takes longer disconnects it; its sender thread is replaced until the write returns. */
+    private Duration writeTimeout = Duration.ofSeconds(5);
+    private Duration heartbeat = Duration.ofSeconds(15);
+    private Duration timeout = Duration.ofMinutes(30);
+}
@@ -0,0 +1,26 @@
+package org.example.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.l2cache")
+public class UserL2CacheProperties {
+    private boolean enabled;
+    private Map<String, Region> regions = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Region {
+        private long heapEntries = 10000;
+        private DataSize offHeap = DataSize.ofMegabytes(32);
+        private Duration timeToLive = Duration.ofMinutes(5);
+    }
+}
@@ -0,0 +1,13 @@
+package org.example.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.lookup")
+public class UserLookupProperties {
+    private int maxEmails = 1000;
+    private int chunkSize = 500;
+}
@@ -0,0 +1,20 @@
+package org.example.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.outbox")
+public class UserOutboxProperties {
+    private String topic = "users.events";
+    private boolean relayEnabled = true;
+    private int batchSize = 500;
+    private Duration sendTimeout = Duration.ofSeconds(10);
+    private Duration retention = Duration.ofDays(7);
+    /** Events {@link org.example.services.UserOutboxTail} reads per query. */
+    private int tailBatchSize = 1000;
+}
@@ -0,0 +1,46 @@
+package org.example.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.sharding")
+public class UserShardingProperties {
+    private boolean enabled;
+    /**
+     * Ids are {@code sequence value * max-shards + shard number}, so they stay unique across shards and do not change
+     * when a user moves. Must not change once there is data.
+     */
+    private int maxShards = 16;
+    private int virtualNodes = 128;
+    private int scatterThreads = 8;
+    private Duration queryTimeout = Duration.ofSeconds(5);
+    private int rebalanceBatchSize = 500;
+    /** How often every router reloads {@code users_shard_layout}; a rebalance waits two of these before moving users. */
+    private Duration layoutRefresh = Duration.ofSeconds(1);
+    /** Runs {@code schema-shard.sql} against every shard at startup. */
+    private boolean initializeSchema = true;
+    private Map<String, Shard> shards = new LinkedHashMap<>();
+
+    /**
+     * One shard database. An inactive shard is connected but owns no emails until it is added with
+     * {@code POST /actuator/sharding/{name}}. {@code active} only seeds {@code users_shard_layout} on the first start;
+     * afterwards the table decides.
+     */
+    @Getter
+    @Setter
+    public static class Shard {
+        private int number;
+        private boolean active = true;
+        private String jdbcUrl;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
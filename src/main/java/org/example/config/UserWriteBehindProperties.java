@@ -0,0 +1,23 @@
+package org.example.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.write-behind")
+public class UserWriteBehindProperties {
+    private boolean enabled;
+    private int shards = 8;
+    private int capacity = 10000;
+    private int batchSize = 500;
+    private int flushThreads = 2;
+    private Duration flushInterval = Duration.ofMillis(50);
+    /** Directory for the journal of accepted updates; without it pending updates are lost if the process dies. */
+    private Path journalDir;
+    private boolean journalFsync = true;
+}
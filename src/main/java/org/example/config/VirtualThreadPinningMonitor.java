@@ -0,0 +1,76 @@
+package org.example.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+@Slf4j
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final Counter pinnedCounter;
+    private final Duration threshold;
+    private RecordingStream recording;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+                                       @Value("${users.virtual-threads.pinning-threshold:20ms}") Duration threshold) {
+        this.pinnedCounter = Counter.builder("users.virtual-threads.pinned")
+                .description("Virtual thread pinning events longer than the configured threshold")
+                .register(meterRegistry);
+        this.threshold = threshold;
+    }
+
+    @Override
+    public synchronized void start() {
+        recording = new RecordingStream();
+        recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recording.onEvent(PINNED_EVENT, this::report);
+        recording.startAsync();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return recording != null;
+    }
+
+    private void report(RecordedEvent event) {
+        pinnedCounter.increment();
+        List<RecordedFrame> frames = event.getStackTrace() == null ? List.of() : event.getStackTrace().getFrames();
+        String location = location(frames.stream()
+                .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName())
+                .toList());
+        log.warn("Virtual thread pinned for {} ms at {}", event.getDuration().toMillis(), location);
+    }
+
+    /**
+     * The top frame is nearly always inside the JDK ({@code Object.wait}, a monitor enter in {@code java.io}), which
+     * says nothing about whose lock pinned the thread; the first frame outside {@code java.} and {@code jdk.} does.
+     */
+    static String location(List<String> frames) {
+        return frames.stream()
+                .filter(frame -> !frame.startsWith("java.") && !frame.startsWith("jdk."))
+                .findFirst()
+                .orElse(frames.isEmpty() ? "unknown" : frames.get(0));
+    }
+}
@@ -0,0 +1,21 @@
+package org.example.config;
+
+import lombok.AllArgsConstructor;
+import org.example.metrics.SqlStatementMetricsInterceptor;
+import org.example.ratelimit.RateLimitInterceptor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@AllArgsConstructor
+public class WebMvcConfig implements WebMvcConfigurer {
+    private final RateLimitInterceptor rateLimitInterceptor;
+    private final SqlStatementMetricsInterceptor sqlStatementMetricsInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(rateLimitInterceptor).addPathPatterns("/api/**");
+        registry.addInterceptor(sqlStatementMetricsInterceptor).addPathPatterns("/api/**");
+    }
+}
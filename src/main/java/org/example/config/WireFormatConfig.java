@@ -0,0 +1,38 @@
+package org.example.config;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Binary alternatives to JSON, chosen by the {@code Accept} header: CBOR ({@code application/cbor}) and
+ * Smile ({@code application/x-jackson-smile}). Both mappers start from the application's Jackson builder,
+ * so modules and {@code spring.jackson.*} settings match the JSON output, except that dates are written
+ * as numeric arrays instead of ISO strings.
+ */
+@Configuration
+public class WireFormatConfig {
+    /** RFC 8742: CBOR data items written back to back, the binary counterpart of NDJSON. */
+    public static final String APPLICATION_CBOR_SEQ_VALUE = "application/cbor-seq";
+    public static final MediaType APPLICATION_CBOR_SEQ = MediaType.parseMediaType(APPLICATION_CBOR_SEQ_VALUE);
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory())
+                .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory())
+                .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build());
+    }
+}
@@ -0,0 +1,55 @@
+package org.example.controller;
+
+import lombok.AllArgsConstructor;
+import org.example.dto.UserDto;
+import org.example.dto.UserSearchSort;
+import org.example.metrics.UserErrorMetrics;
+import org.example.services.UserArchiveService;
+import org.example.services.UserService;
+import org.example.utils.UserSearchCursor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/users")
+@AllArgsConstructor
+public class UserArchiveController {
+    private final UserArchiveService userArchiveService;
+    private final UserErrorMetrics errorMetrics;
+
+    /** Archived users of a creation window; pages continue with the {@code X-Next-Cursor} of the previous one. */
+    @GetMapping("/archive")
+    public ResponseEntity<List<UserDto>> searchArchive(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+                                                       @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+                                                       @RequestParam(required = false) String cursor,
+                                                       @RequestParam(defaultValue = "" + UserService.DEFAULT_PAGE_LIMIT) int limit) {
+        UserSearchCursor after;
+        try {
+            after = UserSearchCursor.decode(cursor, UserSearchSort.CREATED_AT, false);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!createdFrom.isBefore(createdTo) || limit < 1 || limit > UserService.MAX_PAGE_LIMIT) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            List<UserDto> users = userArchiveService.searchArchive(createdFrom, createdTo, after, limit);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (users.size() == limit) {
+                response.header(UserController.NEXT_CURSOR_HEADER,
+                        UserSearchCursor.after(UserSearchSort.CREATED_AT, false, users.get(users.size() - 1)).encode());
+            }
+            return response.body(users);
+        } catch (Exception e) {
+            errorMetrics.record("searchArchive", e);
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+}
@@ -1,40 +1,238 @@
 package org.example.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
+import org.example.config.UserLookupProperties;
+import org.example.config.WireFormatConfig;
 import org.example.dto.UserDto;
+import org.example.dto.UserImportResultDto;
+import org.example.dto.UserLookupResultDto;
+import org.example.dto.UserSearchCriteria;
+import org.example.dto.UserSearchSort;
 import org.example.entities.UserEntity;
+import org.example.exceptions.UserAlreadyExistsException;
+import org.example.exceptions.UserVersionConflictException;
+import org.example.feed.UserChangeFeed;
+import org.example.metrics.UserErrorMetrics;
+import org.example.services.UserImportService;
 import org.example.services.UserService;
+import org.example.utils.EmailNormalizer;
 import org.example.utils.MappingUtils;
+import org.example.utils.UserETag;
+import org.example.utils.UserSearchCursor;
+import org.example.writebehind.UserWriteBehindQueue;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/v1/users")
 @AllArgsConstructor
+@ConditionalOnProperty(prefix = "users.sharding", name = "enabled", havingValue = "false", matchIfMissing = true)
 public class UserController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String PREFER_HEADER = "Prefer";
+    public static final String PREFERENCE_APPLIED_HEADER = "Preference-Applied";
+    public static final String RESPOND_ASYNC = "respond-async";
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
 
     private final UserService userService;
+    private final UserImportService userImportService;
     private final MappingUtils mappingUtils;
+    private final ObjectMapper objectMapper;
+    private final UserErrorMetrics errorMetrics;
+    private final UserLookupProperties lookupProperties;
+    private final MappingJackson2CborHttpMessageConverter cborConverter;
+    private final UserWriteBehindQueue writeBehindQueue;
+    private final UserChangeFeed changeFeed;
 
     @GetMapping
-    public ResponseEntity<List<UserDto>> getAllUser() {
+    public ResponseEntity<List<UserDto>> getAllUser(@RequestParam(required = false) Integer after,
+                                                    @RequestParam(defaultValue = "" + UserService.DEFAULT_PAGE_LIMIT) int limit,
+                                                    WebRequest request, HttpServletResponse response) {
+        if (limit < 1 || limit > UserService.MAX_PAGE_LIMIT) {
+            return ResponseEntity.badRequest().build();
+        }
+        varyByAccept(response);
         try {
-            List<UserDto> users = userService.getAll().stream().map(mappingUtils::mapToUserDto).toList();
-            return ResponseEntity.ok(users);
+            // the marker is read before the page: a change in between only makes the tag older than the body
+            String etag = UserETag.collection(userService.getChangeMarker());
+            if (request.checkNotModified(etag)) {
+                return null;
+            }
+            List<UserDto> users = userService.getPage(after, limit);
+            ResponseEntity.BodyBuilder page = ResponseEntity.ok().eTag(etag);
+            if (users.size() == limit) {
+                page.header(NEXT_CURSOR_HEADER, String.valueOf(users.get(users.size() - 1).getId()));
+            }
+            return page.body(users);
         } catch (Exception e) {
+            errorMetrics.record("getAllUser", e);
             return ResponseEntity.status(500).body(null);
         }
     }
 
+    @GetMapping("/search")
+    public ResponseEntity<List<UserDto>> searchUsers(@RequestParam(required = false) String namePrefix,
+                                                     @RequestParam(required = false) Integer minAge,
+                                                     @RequestParam(required = false) Integer maxAge,
+                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+                                                     @RequestParam(defaultValue = "ID") UserSearchSort sort,
+                                                     @RequestParam(defaultValue = "false") boolean desc,
+                                                     @RequestParam(required = false) String cursor,
+                                                     @RequestParam(defaultValue = "" + UserService.DEFAULT_PAGE_LIMIT) int limit) {
+        UserSearchCursor after;
+        try {
+            after = UserSearchCursor.decode(cursor, sort, desc);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (limit < 1 || limit > UserService.MAX_PAGE_LIMIT) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            UserSearchCriteria criteria = new UserSearchCriteria();
+            criteria.setNamePrefix(namePrefix);
+            criteria.setMinAge(minAge);
+            criteria.setMaxAge(maxAge);
+            criteria.setCreatedFrom(createdFrom);
+            criteria.setCreatedTo(createdTo);
+            criteria.setSort(sort);
+            criteria.setDescending(desc);
+            List<UserDto> users = userService.search(criteria, after, limit);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (users.size() == limit) {
+                response.header(NEXT_CURSOR_HEADER, UserSearchCursor.after(sort, desc, users.get(users.size() - 1)).encode());
+            }
+            return response.body(users);
+        } catch (Exception e) {
+            errorMetrics.record("searchUsers", e);
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers(WebRequest request, HttpServletResponse response) {
+        return stream(request, response, objectMapper, MediaType.APPLICATION_NDJSON, "\n");
+    }
+
+    @GetMapping(produces = WireFormatConfig.APPLICATION_CBOR_SEQ_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsersAsCbor(WebRequest request, HttpServletResponse response) {
+        // CBOR items are self-delimiting, so the sequence needs no separator
+        return stream(request, response, cborConverter.getObjectMapper(), WireFormatConfig.APPLICATION_CBOR_SEQ, null);
+    }
+
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamChanges(@RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) Long lastEventId,
+                                                    @RequestParam(required = false) Long after) {
+        SseEmitter emitter = changeFeed.subscribe(lastEventId != null ? lastEventId : after);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").build();
+        }
+        return ResponseEntity.ok().header(HttpHeaders.CACHE_CONTROL, "no-store").body(emitter);
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(WebRequest request, HttpServletResponse response, ObjectMapper mapper,
+                                                         MediaType contentType, String separator) {
+        varyByAccept(response);
+        String etag;
+        try {
+            etag = UserETag.collection(userService.getChangeMarker());
+        } catch (Exception e) {
+            errorMetrics.record("streamAllUsers", e);
+            return ResponseEntity.status(500).build();
+        }
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(outputStream)) {
+                generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+                if (separator != null) {
+                    generator.setRootValueSeparator(null);
+                }
+                userService.streamAll(user -> writeItem(generator, user, separator));
+            } catch (IOException | RuntimeException e) {
+                errorMetrics.record("streamAllUsers", e);
+                throw e;
+            }
+        };
+        return ResponseEntity.ok().eTag(etag).contentType(contentType).body(body);
+    }
+
+    /**
+     * The list is served in several formats under one URL and one collection tag, so caches must key it by
+     * {@code Accept}. Set on the response directly so that a {@code 304} carries it too.
+     */
+    private static void varyByAccept(HttpServletResponse response) {
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    }
+
+    /**
+     * Only plain name/age changes go write-behind: conditional updates need the current version and an email change
+     * has to see the unique constraint before it is acknowledged.
+     */
+    private boolean canWriteBehind(String email, UserDto userDto, UserETag expected, String prefer) {
+        return prefer != null && prefer.toLowerCase(Locale.ROOT).contains(RESPOND_ASYNC) && expected == null
+                && writeBehindQueue.isEnabled() && userDto.getEmail() != null
+                && EmailNormalizer.normalize(email).equals(EmailNormalizer.normalize(userDto.getEmail()));
+    }
+
+    private boolean isMalformedInput(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JsonProcessingException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeItem(JsonGenerator generator, UserDto user, String separator) {
+        try {
+            generator.writeObject(user);
+            if (separator != null) {
+                generator.writeRaw(separator);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
 
     @GetMapping("/{email}")
-    public ResponseEntity<UserDto> getByEmail(@PathVariable String email) {
+    public ResponseEntity<UserDto> getByEmail(@PathVariable String email,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                              HttpServletResponse response) {
+        varyByAccept(response);
+        MediaType representation = UserETag.representation(accept);
         try {
-            return userService.getByEmail(email).map(user -> ResponseEntity.ok(mappingUtils.mapToUserDto(user))).orElse(ResponseEntity.notFound().build());
+            return userService.getByEmail(email)
+                    .map(user -> ResponseEntity.ok().eTag(UserETag.of(user).of(representation)).contentType(representation)
+                            .body(mappingUtils.mapToUserDto(user)))
+                    .orElse(ResponseEntity.notFound().build());
         } catch (Exception e) {
+            errorMetrics.record("getByEmail", e);
             return ResponseEntity.status(500).build();
         }
     }
@@ -45,18 +243,77 @@ public class UserController {
             UserEntity entity = mappingUtils.mapToUSerEntity(userDto);
             userService.save(entity);
             return ResponseEntity.status(201).body(mappingUtils.mapToUserDto(entity));
+        } catch (UserAlreadyExistsException e) {
+            errorMetrics.record("createUser", e);
+            return ResponseEntity.status(409).body(null);
+        } catch (Exception e) {
+            errorMetrics.record("createUser", e);
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    @PostMapping("/lookup")
+    public ResponseEntity<UserLookupResultDto> lookupUsers(@RequestBody List<String> emails) {
+        if (emails.size() > lookupProperties.getMaxEmails()) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(userService.lookupByEmails(emails));
         } catch (Exception e) {
+            errorMetrics.record("lookupUsers", e);
             return ResponseEntity.status(500).body(null);
         }
     }
 
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<UserImportResultDto> importUsers(InputStream body) {
+        try (MappingIterator<UserDto> users = objectMapper.readerFor(UserDto.class).readValues(body)) {
+            return ResponseEntity.ok(userImportService.importUsers(users));
+        } catch (Exception e) {
+            errorMetrics.record("importUsers", e);
+            return ResponseEntity.status(isMalformedInput(e) ? 400 : 500).body(null);
+        }
+    }
+
     @PostMapping("/{email}")
-    public ResponseEntity<UserDto> updateUser(@PathVariable String email, @RequestBody UserDto userDto) {
+    public ResponseEntity<UserDto> updateUser(@PathVariable String email, @RequestBody UserDto userDto,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                              @RequestHeader(value = PREFER_HEADER, required = false) String prefer,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                              HttpServletResponse response) {
+        if (userDto.getEmail() == null || userDto.getEmail().isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        UserETag expected;
+        try {
+            expected = UserETag.parse(ifMatch);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
         try {
+            if (canWriteBehind(email, userDto, expected, prefer)) {
+                if (!writeBehindQueue.submit(email, userDto.getName(), userDto.getAge())) {
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+                }
+                return ResponseEntity.accepted().header(PREFERENCE_APPLIED_HEADER, RESPOND_ASYNC).build();
+            }
             UserEntity entity = mappingUtils.mapToUSerEntity(userDto);
-            Optional<UserEntity> update = userService.updateUserByEmail(email, entity);
-            return update.map(updateEntity -> ResponseEntity.ok(mappingUtils.mapToUserDto(updateEntity))).orElse(ResponseEntity.notFound().build());
+            Optional<UserEntity> update = expected == null
+                    ? userService.updateUserByEmail(email, entity)
+                    : userService.updateUserByEmail(email, entity, expected);
+            varyByAccept(response);
+            MediaType representation = UserETag.representation(accept);
+            return update.map(updateEntity -> ResponseEntity.ok().eTag(UserETag.of(updateEntity).of(representation))
+                    .contentType(representation).body(mappingUtils.mapToUserDto(updateEntity)))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (UserVersionConflictException e) {
+            errorMetrics.record("updateUser", e);
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        } catch (UserAlreadyExistsException e) {
+            errorMetrics.record("updateUser", e);
+            return ResponseEntity.status(409).body(null);
         } catch (Exception e) {
+            errorMetrics.record("updateUser", e);
             return ResponseEntity.status(500).body(null);
         }
     }
@@ -64,9 +321,9 @@ public class UserController {
     @DeleteMapping("/{email}")
     public ResponseEntity<Void> deleteUser(@PathVariable String email) {
         try {
-            userService.deleteByEmail(email);
-            return ResponseEntity.noContent().build();
+            return userService.deleteByEmail(email) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
         } catch (Exception e) {
+            errorMetrics.record("deleteUser", e);
             return ResponseEntity.status(500).build();
         }
     }
@@ -0,0 +1,83 @@
+package org.example.controller;
+
+import lombok.AllArgsConstructor;
+import org.example.copy.UserCopyFormat;
+import org.example.copy.UserCopyService;
+import org.example.dto.UserImportResultDto;
+import org.example.metrics.UserErrorMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/v1/users")
+@AllArgsConstructor
+@ConditionalOnProperty(prefix = "users.sharding", name = "enabled", havingValue = "false", matchIfMissing = true)
+public class UserCopyController {
+    public static final String EXPORT_UPPER_ID_HEADER = "X-Export-Upper-Id";
+
+    private final UserCopyService userCopyService;
+    private final UserErrorMetrics errorMetrics;
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(defaultValue = "CSV") UserCopyFormat format,
+                                                             @RequestParam(defaultValue = "0") int after) {
+        if (after < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        int upperId;
+        try {
+            upperId = userCopyService.getExportUpperId();
+        } catch (Exception e) {
+            errorMetrics.record("exportUsers", e);
+            return ResponseEntity.status(500).build();
+        }
+        StreamingResponseBody body = outputStream -> {
+            try {
+                userCopyService.export(format, after, upperId, outputStream);
+            } catch (IOException | RuntimeException e) {
+                errorMetrics.record("exportUsers", e);
+                throw e;
+            }
+        };
+        return ResponseEntity.ok()
+                .header(EXPORT_UPPER_ID_HEADER, String.valueOf(upperId))
+                .contentType(format.getMediaType())
+                .body(body);
+    }
+
+    @PostMapping(value = "/import", consumes = {UserCopyFormat.CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<UserImportResultDto> importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                           @RequestParam(defaultValue = "0") int skip,
+                                                           InputStream body) {
+        if (skip < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(userCopyService.importUsers(UserCopyFormat.of(contentType), body, skip));
+        } catch (Exception e) {
+            errorMetrics.record("copyImportUsers", e);
+            return ResponseEntity.status(isMalformedInput(e) ? 400 : 500).body(null);
+        }
+    }
+
+    private boolean isMalformedInput(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IllegalArgumentException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
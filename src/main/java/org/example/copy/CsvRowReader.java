@@ -0,0 +1,97 @@
+package org.example.copy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RFC 4180 reader over a character stream: quoted fields may contain separators, line breaks and doubled quotes.
+ * An unquoted empty field is read as {@code null} and a quoted one as an empty string, the same way
+ * {@code COPY ... WITH (FORMAT csv)} tells them apart.
+ */
+public class CsvRowReader {
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+
+    public CsvRowReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /** Returns the next row, or {@code null} at the end of the input. Blank lines are skipped. */
+    public List<String> next() throws IOException {
+        int c = read();
+        while (c == '\r' || c == '\n') {
+            c = read();
+        }
+        if (c == -1) {
+            return null;
+        }
+        List<String> row = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (c == '"' && field.isEmpty() && !quoted) {
+                quoted = true;
+                c = readQuoted(field);
+                continue;
+            }
+            if (c == ',' || c == '\n' || c == '\r' || c == -1) {
+                row.add(field.isEmpty() && !quoted ? null : field.toString());
+                if (c != ',') {
+                    if (c == '\r' && peek() == '\n') {
+                        read();
+                    }
+                    return row;
+                }
+                field.setLength(0);
+                quoted = false;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    private int readQuoted(StringBuilder field) throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IllegalArgumentException("Незакрытая кавычка в CSV");
+            }
+            if (c == '"') {
+                if (peek() != '"') {
+                    return read();
+                }
+                read();
+            }
+            field.append((char) c);
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -0,0 +1,51 @@
+package org.example.copy;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes rows that {@link CsvRowReader} and {@code COPY ... WITH (FORMAT csv)} read back unchanged:
+ * {@code null} is an empty unquoted field, an empty string is {@code ""}.
+ */
+public class CsvRowWriter {
+    private final Writer writer;
+
+    public CsvRowWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public void writeRow(Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writeField(values[i].toString());
+            }
+        }
+        writer.write('\n');
+    }
+
+    private void writeField(String value) throws IOException {
+        if (!needsQuotes(value)) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private boolean needsQuotes(String value) {
+        if (value.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.copy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import org.example.dto.UserDto;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Plain JDBC fallback for H2 (tests and benchmarks): staging is filled with batched inserts and exports are
+ * written row by row, but the merge keeps the same set-based shape as the Postgres dialect.
+ */
+@Component
+@AllArgsConstructor
+class H2UserCopyDialect implements UserCopyDialect {
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String MERGE_SQL = """
+            MERGE INTO users u USING users_copy_staging s ON u.email = s.email
+            WHEN MATCHED THEN UPDATE SET name = s.name, age = s.age, version = COALESCE(u.version, 0) + 1
+            WHEN NOT MATCHED THEN INSERT (id, name, email, age, created_at, version)
+                VALUES (s.id, s.name, s.email, s.age, LOCALTIMESTAMP, 0)
+            """;
+
+    private static final String OUTBOX_SQL = """
+            INSERT INTO user_outbox (id, aggregate_id, event_type, payload, created_at)
+            SELECT s.outbox_id, u.id, CASE WHEN s.existing THEN 'UPDATED' ELSE 'CREATED' END,
+                   CAST(JSON_OBJECT('type': CASE WHEN s.existing THEN 'UPDATED' ELSE 'CREATED' END, 'id': u.id,
+                                    'email': u.email, 'previousEmail': CAST(NULL AS VARCHAR), 'name': u.name,
+                                    'age': u.age, 'createdAt': REPLACE(CAST(u.created_at AS VARCHAR), ' ', 'T')
+                                    NULL ON NULL) AS VARCHAR),
+                   LOCALTIMESTAMP
+            FROM users_copy_staging s
+            JOIN users u ON u.email = s.email
+            """;
+
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public boolean supports(Connection connection) throws SQLException {
+        return "H2".equals(connection.getMetaData().getDatabaseProductName());
+    }
+
+    @Override
+    public String nextValuesSql(String sequence) {
+        return "SELECT NEXT VALUE FOR " + sequence + " FROM SYSTEM_RANGE(1, ?)";
+    }
+
+    @Override
+    public void prepareStaging(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            // TRANSACTIONAL keeps H2 from committing the chunk's transaction on DDL
+            statement.execute("CREATE LOCAL TEMPORARY TABLE IF NOT EXISTS " + STAGING_TABLE
+                    + " (id INTEGER, outbox_id BIGINT, name VARCHAR(255), email VARCHAR(255), age INTEGER, existing BOOLEAN)"
+                    + " TRANSACTIONAL");
+            statement.execute("DELETE FROM " + STAGING_TABLE);
+        }
+    }
+
+    @Override
+    public void writeStaging(Connection connection, List<StagingRow> rows) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + STAGING_TABLE
+                + " (id, outbox_id, name, email, age) VALUES (?, ?, ?, ?, ?)")) {
+            int batched = 0;
+            for (StagingRow row : rows) {
+                statement.setInt(1, row.id());
+                statement.setLong(2, row.outboxId());
+                statement.setString(3, row.name());
+                statement.setString(4, row.email());
+                statement.setObject(5, row.age());
+                statement.addBatch();
+                if (++batched == BATCH_SIZE) {
+                    statement.executeBatch();
+                    batched = 0;
+                }
+            }
+            if (batched > 0) {
+                statement.executeBatch();
+            }
+        }
+    }
+
+    @Override
+    public int merge(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE " + STAGING_TABLE
+                    + " s SET existing = EXISTS (SELECT 1 FROM users u WHERE u.email = s.email)");
+            statement.executeUpdate(MERGE_SQL);
+            return statement.executeUpdate(OUTBOX_SQL);
+        }
+    }
+
+    @Override
+    public long export(Connection connection, UserCopyFormat format, int fromId, int toId, OutputStream out)
+            throws SQLException, IOException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT id, name, email, age, created_at FROM users WHERE id > ? AND id <= ? ORDER BY id")) {
+            statement.setInt(1, fromId);
+            statement.setInt(2, toId);
+            statement.setFetchSize(BATCH_SIZE);
+            // not closed: closing the writer would close the response stream
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            CsvRowWriter csv = new CsvRowWriter(writer);
+            long rows = 0;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    Timestamp createdAt = resultSet.getTimestamp(5);
+                    UserDto user = new UserDto(resultSet.getInt(1), resultSet.getString(2), resultSet.getString(3),
+                            (Integer) resultSet.getObject(4), createdAt == null ? null : createdAt.toLocalDateTime());
+                    if (format == UserCopyFormat.NDJSON) {
+                        writer.write(objectMapper.writeValueAsString(user));
+                        writer.write('\n');
+                    } else {
+                        csv.writeRow(user.getId(), user.getName(), user.getEmail(), user.getAge(), user.getCreatedAt());
+                    }
+                    rows++;
+                }
+            }
+            writer.flush();
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.example.copy;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Streams rows through the COPY protocol: the driver moves raw CSV between the socket and the stream in
+ * 64 KB buffers, so neither side builds rows, entities or statements per user.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+class PostgresUserCopyDialect implements UserCopyDialect {
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+
+    private static final String COPY_IN_SQL = "COPY " + STAGING_TABLE
+            + " (id, outbox_id, name, email, age) FROM STDIN WITH (FORMAT csv)";
+
+    // xmax = 0 only for rows this statement inserted; a conflicting row that got updated carries our xid
+    private static final String MERGE_SQL = """
+            WITH merged AS (
+                INSERT INTO users (id, name, email, age, created_at, version)
+                SELECT id, name, email, age, localtimestamp, 0 FROM users_copy_staging
+                ON CONFLICT (email) DO UPDATE
+                    SET name = excluded.name, age = excluded.age, version = coalesce(users.version, 0) + 1
+                RETURNING id, name, email, age, created_at, (xmax = 0) AS inserted
+            )
+            INSERT INTO user_outbox (id, aggregate_id, event_type, payload, created_at)
+            SELECT s.outbox_id, m.id, e.type,
+                   json_build_object('type', e.type, 'id', m.id, 'email', m.email, 'previousEmail', null,
+                                     'name', m.name, 'age', m.age, 'createdAt', m.created_at)::text,
+                   localtimestamp
+            FROM merged m
+            JOIN users_copy_staging s ON s.email = m.email
+            CROSS JOIN LATERAL (SELECT CASE WHEN m.inserted THEN 'CREATED' ELSE 'UPDATED' END AS type) e
+            """;
+
+    private static final String EXPORT_CSV_SQL = "COPY (SELECT id, name, email, age, created_at FROM users"
+            + " WHERE id > %d AND id <= %d ORDER BY id) TO STDOUT WITH (FORMAT csv)";
+
+    // json is never quoted or split: control bytes 1 and 2 cannot appear in json_build_object output
+    private static final String EXPORT_NDJSON_SQL = "COPY (SELECT json_build_object('id', id, 'name', name,"
+            + " 'email', email, 'age', age, 'createdAt', created_at) FROM users"
+            + " WHERE id > %d AND id <= %d ORDER BY id) TO STDOUT WITH (FORMAT csv, QUOTE E'\\x01', DELIMITER E'\\x02')";
+
+    @Override
+    public boolean supports(Connection connection) throws SQLException {
+        return connection.isWrapperFor(PGConnection.class);
+    }
+
+    @Override
+    public String nextValuesSql(String sequence) {
+        return "SELECT nextval('" + sequence + "') FROM generate_series(1, ?)";
+    }
+
+    @Override
+    public void prepareStaging(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TEMP TABLE IF NOT EXISTS " + STAGING_TABLE
+                    + " (id integer, outbox_id bigint, name varchar(255), email varchar(255), age integer)"
+                    + " ON COMMIT DELETE ROWS");
+            statement.execute("TRUNCATE " + STAGING_TABLE);
+        }
+    }
+
+    @Override
+    public void writeStaging(Connection connection, List<StagingRow> rows) throws SQLException, IOException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        try (Writer writer = new OutputStreamWriter(new PGCopyOutputStream(pgConnection, COPY_IN_SQL, COPY_BUFFER_SIZE),
+                StandardCharsets.UTF_8)) {
+            CsvRowWriter csv = new CsvRowWriter(writer);
+            for (StagingRow row : rows) {
+                csv.writeRow(row.id(), row.outboxId(), row.name(), row.email(), row.age());
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            // temp tables are never auto-analyzed; without stats the join back to staging is planned blind
+            statement.execute("ANALYZE " + STAGING_TABLE);
+        }
+    }
+
+    @Override
+    public int merge(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            return statement.executeUpdate(MERGE_SQL);
+        }
+    }
+
+    @Override
+    public long export(Connection connection, UserCopyFormat format, int fromId, int toId, OutputStream out)
+            throws SQLException, IOException {
+        String sql = format == UserCopyFormat.NDJSON ? EXPORT_NDJSON_SQL : EXPORT_CSV_SQL;
+        return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(String.format(sql, fromId, toId), out);
+    }
+}
@@ -0,0 +1,34 @@
+package org.example.copy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Database-specific half of {@link UserCopyService}. Every import chunk is written into the connection's
+ * {@code users_copy_staging} temporary table and then merged into {@code users} and {@code user_outbox}
+ * with set-based statements, inside the chunk's transaction.
+ */
+interface UserCopyDialect {
+    String STAGING_TABLE = "users_copy_staging";
+
+    boolean supports(Connection connection) throws SQLException;
+
+    /** A query returning {@code ?} fresh values of the given sequence, one per row. */
+    String nextValuesSql(String sequence);
+
+    void prepareStaging(Connection connection) throws SQLException;
+
+    void writeStaging(Connection connection, List<StagingRow> rows) throws SQLException, IOException;
+
+    /** Upserts the staged rows by email and records a CREATED or UPDATED event for each; returns the number merged. */
+    int merge(Connection connection) throws SQLException;
+
+    /** Writes users with {@code fromId < id <= toId} in id order and returns how many were written. */
+    long export(Connection connection, UserCopyFormat format, int fromId, int toId, OutputStream out) throws SQLException, IOException;
+
+    record StagingRow(int id, long outboxId, String name, String email, Integer age) {
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.copy;
+
+import org.springframework.http.MediaType;
+
+public enum UserCopyFormat {
+    CSV(new MediaType("text", "csv")),
+    NDJSON(MediaType.APPLICATION_NDJSON);
+
+    public static final String CSV_VALUE = "text/csv";
+
+    private final MediaType mediaType;
+
+    UserCopyFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public static UserCopyFormat of(MediaType contentType) {
+        return contentType != null && NDJSON.mediaType.isCompatibleWith(contentType) ? NDJSON : CSV;
+    }
+}
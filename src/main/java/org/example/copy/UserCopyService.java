@@ -0,0 +1,353 @@
+package org.example.copy;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.UserCopyProperties;
+import org.example.dto.UserDto;
+import org.example.dto.UserImportChunkDto;
+import org.example.dto.UserImportResultDto;
+import org.example.emailfilter.UserEmailFilter;
+import org.example.entities.UserEntity;
+import org.example.feed.UserChangeFeed;
+import org.example.entities.UserOutboxEntity;
+import org.example.services.UserChangeMarker;
+import org.example.services.UserService;
+import org.example.utils.EmailNormalizer;
+import org.hibernate.SessionFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Bulk export and import of the {@code users} table without entities. Exports walk the primary key in id ranges,
+ * one short statement per range, so a client that lost the connection resumes with the last id it received.
+ * Imports are committed in chunks of {@code users.copy.import-chunk-size} rows and stop at the first chunk that
+ * fails; resending the input with {@code skip} set to that chunk's first row continues where it stopped.
+ */
+@Slf4j
+@Service
+public class UserCopyService {
+    public static final String CSV_HEADER = "id,name,email,age,created_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final List<UserCopyDialect> dialects;
+    private final CacheManager cacheManager;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ObjectMapper objectMapper;
+    private final UserCopyProperties properties;
+    private final UserChangeFeed changeFeed;
+    private final UserEmailFilter emailFilter;
+    private final UserChangeMarker changeMarker;
+    private final Counter exportedRows;
+    private final Counter importedRows;
+
+    private volatile UserCopyDialect dialect;
+
+    public UserCopyService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, List<UserCopyDialect> dialects,
+                           CacheManager cacheManager, EntityManagerFactory entityManagerFactory, ObjectMapper objectMapper,
+                           UserCopyProperties properties, UserChangeFeed changeFeed, UserEmailFilter emailFilter,
+                           UserChangeMarker changeMarker, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.dialects = dialects;
+        this.cacheManager = cacheManager;
+        this.entityManagerFactory = entityManagerFactory;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.changeFeed = changeFeed;
+        this.emailFilter = emailFilter;
+        this.changeMarker = changeMarker;
+        this.exportedRows = meterRegistry.counter("users.copy.rows", "direction", "export");
+        this.importedRows = meterRegistry.counter("users.copy.rows", "direction", "import");
+    }
+
+    /** The highest id an export started now covers; rows inserted later are left for the next export. */
+    public int getExportUpperId() {
+        Integer max = jdbcTemplate.queryForObject("select max(id) from users", Integer.class);
+        return max == null ? 0 : max;
+    }
+
+    public long export(UserCopyFormat format, int afterId, int upperId, OutputStream out) throws IOException {
+        if (format == UserCopyFormat.CSV) {
+            out.write((CSV_HEADER + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        long rows = 0;
+        for (int from = afterId; from < upperId; ) {
+            int lower = from;
+            int upper = (int) Math.min((long) from + properties.getExportChunkIds(), upperId);
+            Long written = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                try {
+                    return dialect(connection).export(connection, format, lower, upper, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+            rows += written == null ? 0 : written;
+            exportedRows.increment(written == null ? 0 : written);
+            log.info("Выгрузка пользователей: {} строк, id {} из {}", rows, upper, upperId);
+            from = upper;
+        }
+        return rows;
+    }
+
+    public UserImportResultDto importUsers(UserCopyFormat format, InputStream in, int skip) {
+        try {
+            RowSource rows = format == UserCopyFormat.NDJSON ? new NdjsonRows(in) : new CsvRows(in);
+            int rowNumber = 0;
+            while (rowNumber < skip && rows.next() != null) {
+                rowNumber++;
+            }
+            UserImportResultDto result = new UserImportResultDto();
+            int chunkSize = properties.getImportChunkSize();
+            List<Row> chunk = new ArrayList<>(chunkSize);
+            Row row;
+            while ((row = rows.next()) != null) {
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    if (!importChunk(result, rowNumber, chunk)) {
+                        return result;
+                    }
+                    rowNumber += chunk.size();
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(result, rowNumber, chunk);
+            }
+            return result;
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при загрузке пользователей", e);
+        }
+    }
+
+    private boolean importChunk(UserImportResultDto result, int firstRow, List<Row> rows) {
+        UserImportChunkDto chunk = new UserImportChunkDto(result.getChunks().size(), firstRow);
+        List<UserDto> valid = new ArrayList<>(rows.size());
+        Set<String> emails = new HashSet<>();
+        for (int i = 0; i < rows.size(); i++) {
+            Row row = rows.get(i);
+            String email = row.user() == null ? null : EmailNormalizer.normalize(row.user().getEmail());
+            if (row.error() != null) {
+                addError(chunk, "Строка " + (firstRow + i) + ": " + row.error());
+            } else if (email == null || email.isEmpty()) {
+                addError(chunk, "Строка " + (firstRow + i) + ": email не может быть пустым");
+            } else if (!emails.add(email)) {
+                addError(chunk, "Строка " + (firstRow + i) + ": email " + email + " повторяется в чанке");
+            } else {
+                row.user().setEmail(email);
+                valid.add(row.user());
+            }
+        }
+
+        try {
+            emailFilter.addAll(emails);
+            Integer saved = transactionTemplate.execute(status ->
+                    jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> merge(connection, valid)));
+            chunk.setSaved(saved == null ? 0 : saved);
+            chunk.setRejected(rows.size() - valid.size());
+            chunk.setCommitted(true);
+            importedRows.increment(chunk.getSaved());
+            evict(emails);
+            log.info("Загрузка пользователей: чанк {} (строки {}-{}) сохранён, {} строк", chunk.getChunk(), firstRow,
+                    firstRow + rows.size() - 1, chunk.getSaved());
+        } catch (RuntimeException e) {
+            chunk.setRejected(rows.size());
+            chunk.getErrors().add("Чанк не сохранён, продолжите загрузку со строки " + firstRow + ": " + e.getMessage());
+            log.warn("Загрузка пользователей остановлена на строке {}", firstRow, e);
+        }
+        result.addChunk(chunk, rows.size());
+        return chunk.isCommitted();
+    }
+
+    private Integer merge(Connection connection, List<UserDto> users) throws SQLException {
+        if (users.isEmpty()) {
+            return 0;
+        }
+        UserCopyDialect dialect = dialect(connection);
+        long[] ids = allocateIds(connection, dialect, UserEntity.ID_SEQUENCE, UserEntity.ID_ALLOCATION_SIZE, users.size());
+        long[] outboxIds = allocateIds(connection, dialect, UserOutboxEntity.ID_SEQUENCE, UserOutboxEntity.ID_ALLOCATION_SIZE,
+                users.size());
+        List<UserCopyDialect.StagingRow> staged = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            UserDto user = users.get(i);
+            staged.add(new UserCopyDialect.StagingRow((int) ids[i], outboxIds[i], user.getName(), user.getEmail(), user.getAge()));
+        }
+        dialect.prepareStaging(connection);
+        try {
+            dialect.writeStaging(connection, staged);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int merged = dialect.merge(connection);
+        // after the merge, which locked the chunk's users; see UserChangeMarker
+        long commitSeq = changeMarker.increment();
+        try (PreparedStatement statement = connection.prepareStatement("UPDATE user_outbox SET commit_seq = ? WHERE id IN "
+                + "(SELECT outbox_id FROM " + UserCopyDialect.STAGING_TABLE + ")")) {
+            statement.setLong(1, commitSeq);
+            statement.executeUpdate();
+        }
+        return merged;
+    }
+
+    /**
+     * Takes ids the way Hibernate's pooled optimizer does: every sequence value {@code hi} reserves the block
+     * {@code (hi - allocationSize, hi]}, so rows written here never collide with ids handed out by the entities.
+     */
+    private long[] allocateIds(Connection connection, UserCopyDialect dialect, String sequence, int allocationSize, int count)
+            throws SQLException {
+        long[] ids = new long[count];
+        int filled = 0;
+        try (PreparedStatement statement = connection.prepareStatement(dialect.nextValuesSql(sequence))) {
+            while (filled < count) {
+                statement.setInt(1, (count - filled + allocationSize - 1) / allocationSize);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        long hi = resultSet.getLong(1);
+                        for (long id = Math.max(1, hi - allocationSize + 1); id <= hi && filled < count; id++) {
+                            ids[filled++] = id;
+                        }
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    private UserCopyDialect dialect(Connection connection) throws SQLException {
+        UserCopyDialect current = dialect;
+        if (current == null) {
+            for (UserCopyDialect candidate : dialects) {
+                if (candidate.supports(connection)) {
+                    dialect = current = candidate;
+                    break;
+                }
+            }
+            if (current == null) {
+                throw new IllegalStateException("Выгрузка и загрузка не поддерживаются для "
+                        + connection.getMetaData().getDatabaseProductName());
+            }
+        }
+        return current;
+    }
+
+    private void addError(UserImportChunkDto chunk, String error) {
+        if (chunk.getErrors().size() < properties.getMaxErrorsPerChunk()) {
+            chunk.getErrors().add(error);
+        }
+    }
+
+    private void evict(Set<String> emails) {
+        Cache cache = cacheManager.getCache(UserService.USERS_BY_EMAIL_CACHE);
+        if (cache != null) {
+            emails.forEach(cache::evict);
+        }
+        // rows were changed behind Hibernate's back; a no-op unless users.l2cache.enabled is set
+        org.hibernate.Cache secondLevelCache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        secondLevelCache.evictEntityData(UserEntity.class);
+        secondLevelCache.evictNaturalIdData(UserEntity.class);
+        // the outbox rows are written by SQL, so change feed subscribers get no deltas and have to reload
+        changeFeed.reset();
+    }
+
+    private record Row(UserDto user, String error) {
+    }
+
+    private interface RowSource {
+        Row next() throws IOException;
+    }
+
+    private static final class CsvRows implements RowSource {
+        private final CsvRowReader reader;
+        private final int nameColumn;
+        private final int emailColumn;
+        private final int ageColumn;
+
+        private CsvRows(InputStream in) throws IOException {
+            reader = new CsvRowReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+            List<String> header = reader.next();
+            if (header == null) {
+                throw new IllegalArgumentException("CSV без заголовка");
+            }
+            List<String> columns = header.stream().map(column -> column == null ? "" : column.trim().toLowerCase(Locale.ROOT)).toList();
+            nameColumn = columns.indexOf("name");
+            emailColumn = columns.indexOf("email");
+            ageColumn = columns.indexOf("age");
+            if (emailColumn < 0) {
+                throw new IllegalArgumentException("В заголовке CSV нет колонки email");
+            }
+        }
+
+        @Override
+        public Row next() throws IOException {
+            List<String> fields = reader.next();
+            if (fields == null) {
+                return null;
+            }
+            String age = field(fields, ageColumn);
+            try {
+                return new Row(new UserDto(field(fields, nameColumn), field(fields, emailColumn),
+                        age == null || age.isBlank() ? null : Integer.valueOf(age.trim())), null);
+            } catch (NumberFormatException e) {
+                return new Row(null, "возраст " + age + " не является числом");
+            }
+        }
+
+        private String field(List<String> fields, int column) {
+            return column >= 0 && column < fields.size() ? fields.get(column) : null;
+        }
+    }
+
+    /** One user per line, parsed line by line so a malformed line is reported as a bad row like in CSV. */
+    private final class NdjsonRows implements RowSource {
+        private final BufferedReader reader;
+        private final ObjectReader userReader = objectMapper.readerFor(UserDto.class);
+
+        private NdjsonRows(InputStream in) {
+            reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public Row next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+            try {
+                UserDto user = userReader.readValue(line);
+                return user == null ? new Row(null, "ожидается объект пользователя") : new Row(user, null);
+            } catch (JsonProcessingException e) {
+                return new Row(null, "некорректный JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+}
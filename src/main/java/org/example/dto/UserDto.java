@@ -23,4 +23,12 @@ public class UserDto {
         this.email = email;
         this.age = age;
     }
+
+    public UserDto(Integer id, String name, String email, Integer age, LocalDateTime createdAt) {
+        this.id = id;
+        this.name = name;
+        this.email = email;
+        this.age = age;
+        this.createdAt = createdAt;
+    }
 }
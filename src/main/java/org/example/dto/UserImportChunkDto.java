@@ -0,0 +1,27 @@
+package org.example.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class UserImportChunkDto {
+    private int chunk;
+    private int firstRow;
+    private int saved;
+    private int rejected;
+    private boolean committed;
+    private List<String> errors = new ArrayList<>();
+
+    public UserImportChunkDto() {
+
+    }
+
+    public UserImportChunkDto(int chunk, int firstRow) {
+        this.chunk = chunk;
+        this.firstRow = firstRow;
+    }
+}
@@ -0,0 +1,23 @@
+package org.example.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class UserImportResultDto {
+    private int total;
+    private int saved;
+    private int rejected;
+    private List<UserImportChunkDto> chunks = new ArrayList<>();
+
+    public void addChunk(UserImportChunkDto chunk, int rows) {
+        chunks.add(chunk);
+        total += rows;
+        saved += chunk.getSaved();
+        rejected += chunk.getRejected();
+    }
+}
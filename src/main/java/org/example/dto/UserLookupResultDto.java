@@ -0,0 +1,14 @@
+package org.example.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class UserLookupResultDto {
+    private List<UserDto> found = new ArrayList<>();
+    private List<String> missing = new ArrayList<>();
+}
@@ -0,0 +1,18 @@
+package org.example.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+public class UserSearchCriteria {
+    private String namePrefix;
+    private Integer minAge;
+    private Integer maxAge;
+    private LocalDateTime createdFrom;
+    private LocalDateTime createdTo;
+    private UserSearchSort sort = UserSearchSort.ID;
+    private boolean descending;
+}
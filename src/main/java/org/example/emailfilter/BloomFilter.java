@@ -0,0 +1,102 @@
+package org.example.emailfilter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of strings sized for {@code capacity} entries at a false-positive rate of {@code fpp}:
+ * {@code m = -n ln p / (ln 2)^2} bits and {@code k = m / n ln 2} probes, derived from two 64-bit hashes
+ * (Kirsch–Mitzenmacher). {@link #put} and {@link #mightContain} are safe to call from any thread; entries
+ * cannot be removed.
+ */
+class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int probes;
+    private final AtomicLong entries = new AtomicLong();
+
+    BloomFilter(long capacity, double fpp) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Ёмкость фильтра должна быть положительной");
+        }
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("Доля ложных срабатываний должна быть между 0 и 1");
+        }
+        long wanted = (long) Math.ceil(-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        long wordCount = Math.max(1, (wanted + 63) / 64);
+        if (wordCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Фильтр на " + capacity + " email не помещается в память");
+        }
+        this.words = new AtomicLongArray((int) wordCount);
+        this.bits = wordCount * 64;
+        this.probes = Math.max(1, (int) Math.round((double) bits / capacity * Math.log(2)));
+    }
+
+    void put(String value) {
+        long h1 = hash(value);
+        long h2 = mix(h1 + 0x9e3779b97f4a7c15L) | 1;
+        boolean changed = false;
+        for (int i = 0; i < probes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            if ((words.get(word) & mask) == 0) {
+                words.getAndAccumulate(word, mask, (current, set) -> current | set);
+                changed = true;
+            }
+        }
+        if (changed) {
+            entries.incrementAndGet();
+        }
+    }
+
+    boolean mightContain(String value) {
+        long h1 = hash(value);
+        long h2 = mix(h1 + 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < probes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long getBits() {
+        return bits;
+    }
+
+    int getProbes() {
+        return probes;
+    }
+
+    /** Distinct values put so far; values that only set bits already set are not counted. */
+    long getEntries() {
+        return entries.get();
+    }
+
+    /** False-positive rate expected at the current number of entries: {@code (1 - e^(-kn/m))^k}. */
+    double expectedFpp() {
+        return Math.pow(1 - Math.exp(-(double) probes * entries.get() / bits), probes);
+    }
+
+    /** FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer. */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
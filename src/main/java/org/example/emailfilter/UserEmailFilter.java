@@ -0,0 +1,195 @@
+package org.example.emailfilter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.UserEmailFilterProperties;
+import org.example.dto.UserEventDto;
+import org.example.entities.UserEventType;
+import org.example.services.UserOutboxTail;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bloom filter of every normalized email in {@code users}, so lookups of emails that do not exist are answered
+ * without a query. {@link #mightExist} returning {@code false} is definite; {@code true} may be a false positive
+ * at about {@code users.email-filter.false-positive-rate}.
+ * <p>
+ * Emails must be {@linkplain #add added} before the transaction that writes them commits. Writers of this
+ * instance do that themselves; rows created by other instances, the reactive service or a COPY import come from
+ * {@code user_outbox} through the {@link UserOutboxTail}. Deletes cannot be removed from a Bloom filter, so deleted emails stay
+ * false positives until the next rebuild ({@code users.email-filter.rebuild-cron}), which streams the table into
+ * a new filter while the old one keeps answering. Until the first build finishes every email might exist.
+ * <p>
+ * A miss is only as fresh as the last poll of the tail. If the filter has not caught up with {@code user_outbox}
+ * within {@code users.email-filter.max-lag}, because polls fail or stall, every email might exist again. {@code UserService}
+ * does not cache the misses this filter rules out, so a user another writer created is found right after the next poll.
+ */
+@Slf4j
+@Component
+public class UserEmailFilter implements UserOutboxTail.Listener {
+    private static final List<UserEventType> ADDING_EVENTS = List.of(UserEventType.CREATED, UserEventType.UPDATED);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserEmailFilterProperties properties;
+    private final ExecutorService builder;
+    private final AtomicBoolean building = new AtomicBoolean();
+    private final Counter skipped;
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter next;
+    private volatile LocalDateTime caughtUp;
+
+    @Autowired
+    public UserEmailFilter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                           UserEmailFilterProperties properties, MeterRegistry meterRegistry) {
+        this(jdbcTemplate, transactionTemplate, properties, meterRegistry, newBuilder());
+    }
+
+    UserEmailFilter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                    UserEmailFilterProperties properties, MeterRegistry meterRegistry, ExecutorService builder) {
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(properties.getFetchSize());
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.builder = builder;
+        this.skipped = meterRegistry.counter("users.email_filter.skipped_lookups");
+        Gauge.builder("users.email_filter.entries", this, filter -> filter.current == null ? Double.NaN : filter.current.getEntries())
+                .description("Email в фильтре, включая удалённые до следующей перестройки")
+                .register(meterRegistry);
+        Gauge.builder("users.email_filter.expected_fpp", this, filter -> filter.current == null ? Double.NaN : filter.current.expectedFpp())
+                .description("Ожидаемая доля ложных срабатываний при текущем заполнении")
+                .register(meterRegistry);
+    }
+
+    private static ExecutorService newBuilder() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("user-email-filter-");
+        threadFactory.setDaemon(true);
+        return Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    /** {@code false} only if no user has this normalized email; the caller can answer "not found" without a query. */
+    public boolean mightExist(String email) {
+        if (!isRuledOut(email)) {
+            return true;
+        }
+        skipped.increment();
+        return false;
+    }
+
+    /** Same answer as {@link #mightExist}, inverted, without counting a skipped lookup. */
+    public boolean isRuledOut(String email) {
+        BloomFilter filter = current;
+        LocalDateTime polled = caughtUp;
+        return filter != null && email != null && polled != null
+                && polled.isAfter(LocalDateTime.now().minus(properties.getMaxLag())) && !filter.mightContain(email);
+    }
+
+    public void add(String email) {
+        if (email == null) {
+            return;
+        }
+        BloomFilter filter = current;
+        if (filter != null) {
+            filter.put(email);
+        }
+        BloomFilter rebuilt = next;
+        if (rebuilt != null) {
+            rebuilt.put(email);
+        }
+    }
+
+    public void addAll(Collection<String> emails) {
+        emails.forEach(this::add);
+    }
+
+    /** The first build runs in the background: until it finishes lookups go to the database as before. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        scheduleRebuild();
+    }
+
+    @Scheduled(cron = "${users.email-filter.rebuild-cron:0 0 4 * * *}")
+    public void scheduleRebuild() {
+        if (!properties.isEnabled() || !building.compareAndSet(false, true)) {
+            return;
+        }
+        builder.execute(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.error("Ошибка при построении фильтра email", e);
+            } finally {
+                building.set(false);
+            }
+        });
+    }
+
+    /** Adds the emails of users other writers created or renamed. */
+    @Override
+    public void onEvents(List<UserEventDto> events) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        for (UserEventDto event : events) {
+            if (ADDING_EVENTS.contains(event.getType())) {
+                add(event.getEmail());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void caughtUp(LocalDateTime time) {
+        if (caughtUp == null || time.isAfter(caughtUp)) {
+            caughtUp = time;
+        }
+    }
+
+    /**
+     * Streams {@code users} into a new filter and swaps it in. Adds made meanwhile, including those of the
+     * {@link UserOutboxTail}, go to both filters; users committed before the scan started are in the scan.
+     */
+    void rebuild() {
+        LocalDateTime started = LocalDateTime.now();
+        Long users = jdbcTemplate.queryForObject("select count(*) from users", Long.class);
+        long capacity = Math.max(properties.getMinCapacity(), (long) Math.ceil((users == null ? 0 : users) * properties.getHeadroom()));
+        BloomFilter filter = new BloomFilter(capacity, properties.getFalsePositiveRate());
+        next = filter;
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.query("select email from users", (RowCallbackHandler) rs -> filter.put(rs.getString(1))));
+            current = filter;
+            caughtUp(started);
+        } finally {
+            next = null;
+        }
+        log.info("Фильтр email построен: {} email, {} бит, {} хешей, ожидаемая доля ложных срабатываний {}",
+                filter.getEntries(), filter.getBits(), filter.getProbes(), filter.expectedFpp());
+    }
+
+    boolean isReady() {
+        return current != null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        builder.shutdownNow();
+    }
+}
@@ -1,30 +1,49 @@
 package org.example.entities;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import java.time.LocalDateTime;
 
 @Getter
 @Setter
 @Entity
-@Table(name = "users")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = UserEntity.CACHE_REGION)
+@NaturalIdCache(region = UserEntity.NATURAL_ID_CACHE_REGION)
+@Table(name = "users", uniqueConstraints = @UniqueConstraint(name = "uk_users_email", columnNames = "email"))
 public class UserEntity {
+    public static final String CACHE_REGION = "users";
+    public static final String NATURAL_ID_CACHE_REGION = "users-natural-id";
+    public static final String ID_SEQUENCE = "users_id_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     @Column(name = "id")
     private Integer id;
 
     @Column(name = "name")
     private String name;
 
+    @NaturalId(mutable = true)
     @Column(name = "email")
     private String email;
 
@@ -34,6 +53,11 @@ public class UserEntity {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version")
+    private Long version;
+
     @PrePersist
     private void onCreate() {this.createdAt = LocalDateTime.now();}
 
@@ -0,0 +1,8 @@
+package org.example.entities;
+
+public enum UserEventType {
+    CREATED,
+    UPDATED,
+    DELETED,
+    ARCHIVED
+}
@@ -0,0 +1,71 @@
+package org.example.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@Entity
+@Table(name = "user_outbox", indexes = {
+        @Index(name = "idx_user_outbox_unpublished", columnList = "published_at, commit_seq, id"),
+        @Index(name = "idx_user_outbox_created_at", columnList = "created_at"),
+        @Index(name = "idx_user_outbox_commit_seq", columnList = "commit_seq, id")
+})
+public class UserOutboxEntity {
+    public static final String ID_SEQUENCE = "user_outbox_id_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "aggregate_id", nullable = false)
+    private Integer aggregateId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 16)
+    private UserEventType eventType;
+
+    @Column(name = "payload", nullable = false, length = 4000)
+    private String payload;
+
+    /**
+     * {@code users_change_marker} value of the transaction that wrote the event: grows in commit order, unlike
+     * {@code id}, which comes from per-instance blocks. Null for events written before the column existed.
+     */
+    @Column(name = "commit_seq")
+    private Long commitSeq;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+
+    @PrePersist
+    private void onCreate() {this.createdAt = LocalDateTime.now();}
+
+    public UserOutboxEntity() {
+    }
+
+    public UserOutboxEntity(Integer aggregateId, UserEventType eventType, String payload) {
+        this.aggregateId = aggregateId;
+        this.eventType = eventType;
+        this.payload = payload;
+    }
+}
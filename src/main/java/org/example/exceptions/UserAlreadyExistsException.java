@@ -0,0 +1,7 @@
+package org.example.exceptions;
+
+public class UserAlreadyExistsException extends RuntimeException {
+    public UserAlreadyExistsException(String email, Throwable cause) {
+        super("Пользователь с email " + email + " уже существует", cause);
+    }
+}
@@ -0,0 +1,7 @@
+package org.example.exceptions;
+
+public class UserVersionConflictException extends RuntimeException {
+    public UserVersionConflictException(String email) {
+        super("Пользователь с email " + email + " был изменён другим запросом");
+    }
+}
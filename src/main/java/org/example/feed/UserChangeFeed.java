@@ -0,0 +1,295 @@
+package org.example.feed;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.UserFeedProperties;
+import org.example.dto.UserEventDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-sent events with the changes of users committed by this instance. Every change gets the next sequence
+ * number as its SSE id and is serialized once for all subscribers. The latest {@code users.feed.history} changes
+ * are kept, so a client that reconnects with {@code Last-Event-ID} gets what it missed. If that is no longer
+ * possible, and on a fresh subscription, the client gets a {@code reset} event and should reload the user list.
+ * <p>
+ * Publishing only appends to the subscriber queues; the sender threads write to the clients. A subscriber whose
+ * queue holds {@code users.feed.subscriber-buffer} unsent changes is disconnected instead of slowing anyone down.
+ * Writes block, so a client that stops reading holds its sender thread: once a write takes longer than
+ * {@code users.feed.write-timeout} the client is disconnected and the pool gets an extra thread until that write
+ * returns. Emitters are completed on their own threads, because completing waits for a write in progress.
+ * Sequence numbers start at the start time in microseconds, so they keep growing across restarts and an id from
+ * the previous process is always older than the history.
+ */
+@Slf4j
+@Component
+public class UserChangeFeed {
+    public static final String RESET_EVENT = "reset";
+
+    private static final Set<DataWithMediaType> HEARTBEAT = SseEmitter.event().comment("").build();
+
+    private final UserFeedProperties properties;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor sender;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService closer;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Change[] history;
+    private final long firstSeq;
+    private final long writeTimeout;
+    private final Counter slowConsumers;
+    private final Counter writeTimeouts;
+    private long lastSeq;
+
+    @Autowired
+    public UserChangeFeed(UserFeedProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this(properties, objectMapper, meterRegistry, newSender(properties),
+                Executors.newSingleThreadScheduledExecutor(daemonThreads("user-feed-timer-")),
+                Executors.newCachedThreadPool(daemonThreads("user-feed-close-")));
+    }
+
+    UserChangeFeed(UserFeedProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                   ThreadPoolExecutor sender, ScheduledExecutorService timer, ExecutorService closer) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.sender = sender;
+        this.timer = timer;
+        this.closer = closer;
+        this.history = new Change[properties.getHistory()];
+        this.firstSeq = System.currentTimeMillis() * 1000;
+        this.lastSeq = firstSeq;
+        this.writeTimeout = properties.getWriteTimeout().toNanos();
+        this.slowConsumers = meterRegistry.counter("users.feed.slow_consumers");
+        this.writeTimeouts = meterRegistry.counter("users.feed.write_timeouts");
+        Gauge.builder("users.feed.subscribers", subscribers, Set::size)
+                .description("Открытые подписки на изменения пользователей")
+                .register(meterRegistry);
+        long heartbeat = properties.getHeartbeat().toMillis();
+        timer.scheduleAtFixedRate(this::heartbeat, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+        long check = Math.max(1, properties.getWriteTimeout().toMillis() / 2);
+        timer.scheduleAtFixedRate(this::expireWrites, check, check, TimeUnit.MILLISECONDS);
+    }
+
+    static ThreadPoolExecutor newSender(UserFeedProperties properties) {
+        return new ThreadPoolExecutor(properties.getSenderThreads(), properties.getSenderThreads(), 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("user-feed-"));
+    }
+
+    private static CustomizableThreadFactory daemonThreads(String prefix) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(prefix);
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    /**
+     * Opens a subscription that starts after the change with sequence number {@code after},
+     * or with a {@code reset} event if {@code after} is {@code null} or no longer in the history.
+     *
+     * @return {@code null} if there are already {@code users.feed.max-subscribers} subscriptions
+     */
+    public SseEmitter subscribe(Long after) {
+        if (subscribers.size() >= properties.getMaxSubscribers()) {
+            return null;
+        }
+        SseEmitter emitter = newEmitter(properties.getTimeout().toMillis());
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        synchronized (this) {
+            long oldest = Math.max(firstSeq, lastSeq - history.length);
+            if (after == null || after < oldest || after > lastSeq || lastSeq - after > properties.getSubscriberBuffer()) {
+                subscriber.offer(new Change(lastSeq, SseEmitter.event().id(String.valueOf(lastSeq)).name(RESET_EVENT)
+                        .data("").build()));
+            } else {
+                for (long seq = after + 1; seq <= lastSeq; seq++) {
+                    subscriber.offer(history[(int) (seq % history.length)]);
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onUserEvent(UserEventDto event) {
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            log.error("Не удалось сериализовать событие пользователя {} для подписчиков", event.getId(), e);
+            return;
+        }
+        publish(event.getType().name(), data);
+    }
+
+    /** Tells every subscriber to reload the user list, after changes that did not go through {@link #onUserEvent}. */
+    public void reset() {
+        publish(RESET_EVENT, "");
+    }
+
+    public int getSubscribers() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(Subscriber::close);
+        closer.shutdown();
+        timer.shutdownNow();
+        sender.shutdownNow();
+    }
+
+    SseEmitter newEmitter(long timeout) {
+        return new SseEmitter(timeout);
+    }
+
+    private synchronized void publish(String name, String data) {
+        long seq = ++lastSeq;
+        Change change = new Change(seq, SseEmitter.event().id(String.valueOf(seq)).name(name)
+                .data(data, MediaType.APPLICATION_JSON).build());
+        history[(int) (seq % history.length)] = change;
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.offer(change)) {
+                slowConsumers.increment();
+                subscriber.close();
+            }
+        }
+    }
+
+    private void heartbeat() {
+        Change heartbeat = new Change(0, HEARTBEAT);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(heartbeat);
+        }
+    }
+
+    private void expireWrites() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.expireWrite(now);
+        }
+    }
+
+    /** Lends the sender pool a thread for a write that was given up on, and takes it back when the write returns. */
+    private void resizeSender(int delta) {
+        synchronized (sender) {
+            if (delta > 0) {
+                sender.setMaximumPoolSize(sender.getMaximumPoolSize() + delta);
+                sender.setCorePoolSize(sender.getCorePoolSize() + delta);
+            } else {
+                sender.setCorePoolSize(sender.getCorePoolSize() + delta);
+                sender.setMaximumPoolSize(sender.getMaximumPoolSize() + delta);
+            }
+        }
+    }
+
+    private record Change(long seq, Set<DataWithMediaType> frame) {
+    }
+
+    private final class Subscriber {
+        private static final long IDLE = Long.MIN_VALUE;
+        private static final long EXPIRED = Long.MIN_VALUE + 1;
+
+        private final SseEmitter emitter;
+        private final ArrayDeque<Change> queue = new ArrayDeque<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        /** {@link System#nanoTime} when the current write started, {@code IDLE} or {@code EXPIRED}. */
+        private final AtomicLong writeStarted = new AtomicLong(IDLE);
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /** @return {@code false} if the queue is full */
+        private boolean offer(Change change) {
+            synchronized (queue) {
+                if (closed) {
+                    return true;
+                }
+                if (queue.size() >= properties.getSubscriberBuffer()) {
+                    return false;
+                }
+                queue.add(change);
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+            return true;
+        }
+
+        private void drain() {
+            while (true) {
+                Change change;
+                synchronized (queue) {
+                    change = queue.poll();
+                    if (change == null) {
+                        scheduled.set(false);
+                        return;
+                    }
+                }
+                if (closed) {
+                    continue;
+                }
+                long started = System.nanoTime();
+                writeStarted.set(started);
+                try {
+                    emitter.send(change.frame());
+                } catch (IOException | IllegalStateException e) {
+                    close();
+                } finally {
+                    if (!writeStarted.compareAndSet(started, IDLE)) {
+                        resizeSender(-1);
+                    }
+                }
+            }
+        }
+
+        private void expireWrite(long now) {
+            long started = writeStarted.get();
+            if (started != IDLE && started != EXPIRED && now - started > writeTimeout
+                    && writeStarted.compareAndSet(started, EXPIRED)) {
+                writeTimeouts.increment();
+                resizeSender(1);
+                close();
+            }
+        }
+
+        /** Never blocks: the emitter may be in the middle of a write to a client that does not read. */
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            subscribers.remove(this);
+            if (!closer.isShutdown()) {
+                closer.execute(emitter::complete);
+            }
+        }
+    }
+}
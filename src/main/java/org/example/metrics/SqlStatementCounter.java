@@ -0,0 +1,21 @@
+package org.example.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+public class SqlStatementCounter implements StatementInspector {
+    private static final ThreadLocal<int[]> STATEMENTS = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.get()[0]++;
+        return sql;
+    }
+
+    public static void reset() {
+        STATEMENTS.get()[0] = 0;
+    }
+
+    public static int current() {
+        return STATEMENTS.get()[0];
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+
+@Component
+@AllArgsConstructor
+public class UserErrorMetrics {
+    private final MeterRegistry meterRegistry;
+
+    public void record(String operation, Throwable error) {
+        Throwable root = error;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        meterRegistry.counter("users.errors",
+                "operation", operation,
+                "exception", error.getClass().getSimpleName(),
+                "cause", root.getClass().getSimpleName()).increment();
+    }
+}
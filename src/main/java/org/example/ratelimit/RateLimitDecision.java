@@ -0,0 +1,43 @@
+package org.example.ratelimit;
+
+import lombok.Getter;
+
+import java.util.concurrent.Semaphore;
+
+@Getter
+public final class RateLimitDecision {
+    private static final RateLimitDecision UNLIMITED = new RateLimitDecision(true, null, 0, null);
+
+    private final boolean allowed;
+    private final String reason;
+    private final long retryAfterSeconds;
+    private final Semaphore permit;
+
+    private RateLimitDecision(boolean allowed, String reason, long retryAfterSeconds, Semaphore permit) {
+        this.allowed = allowed;
+        this.reason = reason;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.permit = permit;
+    }
+
+    static RateLimitDecision unlimited() {
+        return UNLIMITED;
+    }
+
+    static RateLimitDecision allowed(Semaphore permit) {
+        return permit == null ? UNLIMITED : new RateLimitDecision(true, null, 0, permit);
+    }
+
+    static RateLimitDecision rejected(String reason, long retryAfterSeconds) {
+        return new RateLimitDecision(false, reason, Math.max(1, retryAfterSeconds), null);
+    }
+
+    /**
+     * Returns the concurrency permit taken for this request, if any.
+     */
+    public void release() {
+        if (permit != null) {
+            permit.release();
+        }
+    }
+}
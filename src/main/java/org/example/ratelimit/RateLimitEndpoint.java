@@ -0,0 +1,59 @@
+package org.example.ratelimit;
+
+import lombok.AllArgsConstructor;
+import org.example.config.RateLimitProperties;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * {@code /actuator/ratelimits}: shows the rules and changes a rule at runtime. Changes live until the next restart;
+ * after a change all buckets start full. The write operation is off unless
+ * {@code management.endpoint.ratelimits.access=unrestricted}.
+ */
+@Component
+@Endpoint(id = "ratelimits")
+@AllArgsConstructor
+public class RateLimitEndpoint {
+    private final RateLimiter rateLimiter;
+
+    @ReadOperation
+    public Map<String, RateLimitProperties.Rule> rules() {
+        return rateLimiter.getRules();
+    }
+
+    @WriteOperation
+    public RateLimitProperties.Rule update(@Selector String name, @Nullable String pattern, @Nullable String method,
+                                           @Nullable Double clientRate, @Nullable Integer clientBurst,
+                                           @Nullable Double endpointRate, @Nullable Integer endpointBurst,
+                                           @Nullable Integer maxConcurrent) {
+        return rateLimiter.update(name, rule -> {
+            if (pattern != null) {
+                rule.setPattern(pattern);
+            }
+            if (method != null) {
+                rule.setMethod(method);
+            }
+            if (clientRate != null) {
+                rule.setClientRate(clientRate);
+            }
+            if (clientBurst != null) {
+                rule.setClientBurst(clientBurst);
+            }
+            if (endpointRate != null) {
+                rule.setEndpointRate(endpointRate);
+            }
+            if (endpointBurst != null) {
+                rule.setEndpointBurst(endpointBurst);
+            }
+            if (maxConcurrent != null) {
+                rule.setMaxConcurrent(maxConcurrent);
+            }
+        });
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.ratelimit;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Answers over-limit requests with 429 and {@code Retry-After} before the handler runs, so they never wait for a
+ * connection from the pool. The concurrency permit is held until the request completes, including the async
+ * dispatch of streamed responses.
+ */
+@Component
+@AllArgsConstructor
+public class RateLimitInterceptor implements HandlerInterceptor {
+    private static final String DECISION_ATTRIBUTE = RateLimitInterceptor.class.getName() + ".decision";
+
+    private final RateLimiter rateLimiter;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        String pattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        RateLimitDecision decision = rateLimiter.acquire(request.getMethod(), pattern, clientKey(request));
+        if (!decision.isAllowed()) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(decision.getRetryAfterSeconds()));
+            return false;
+        }
+        request.setAttribute(DECISION_ATTRIBUTE, decision);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        RateLimitDecision decision = (RateLimitDecision) request.getAttribute(DECISION_ATTRIBUTE);
+        if (decision != null) {
+            request.removeAttribute(DECISION_ATTRIBUTE);
+            decision.release();
+        }
+    }
+
+    private String clientKey(HttpServletRequest request) {
+        String address = request.getRemoteAddr();
+        if (!rateLimiter.getProperties().getTrustedProxies().contains(address)) {
+            return address;
+        }
+        String client = request.getHeader(rateLimiter.getProperties().getClientHeader());
+        return client == null || client.isBlank() ? address : client;
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.config.RateLimitProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Applies {@link RateLimitProperties} rules: a token bucket per client and rule, a token bucket per rule shared by
+ * all clients and a non-blocking concurrency cap. Rules are compiled into an immutable snapshot that
+ * {@link #reload()} swaps atomically, so limits can be changed at runtime without locking the request path.
+ * Runtime changes go through {@link #update}, which replaces the rule under the same lock as the reload.
+ */
+@Component
+public class RateLimiter {
+    public static final String REASON_CLIENT = "client";
+    public static final String REASON_ENDPOINT = "endpoint";
+    public static final String REASON_CONCURRENCY = "concurrency";
+
+    private final RateLimitProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier clock;
+    private volatile Map<String, CompiledRule> rules;
+
+    @Autowired
+    public RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        reload();
+    }
+
+    public synchronized void reload() {
+        Map<String, CompiledRule> compiled = new LinkedHashMap<>();
+        properties.getRules().forEach((name, rule) -> compiled.put(name, new CompiledRule(name, rule)));
+        rules = compiled;
+    }
+
+    public RateLimitProperties getProperties() {
+        return properties;
+    }
+
+    /** A copy of the configured rules; later updates do not change it. */
+    public synchronized Map<String, RateLimitProperties.Rule> getRules() {
+        Map<String, RateLimitProperties.Rule> rules = new LinkedHashMap<>();
+        properties.getRules().forEach((name, rule) -> rules.put(name, rule.copy()));
+        return rules;
+    }
+
+    /**
+     * Applies {@code change} to a copy of the rule (a new one if there is none), stores it and recompiles the rules.
+     * All buckets start full again.
+     */
+    public synchronized RateLimitProperties.Rule update(String name, Consumer<RateLimitProperties.Rule> change) {
+        RateLimitProperties.Rule current = properties.getRules().get(name);
+        RateLimitProperties.Rule rule = current == null ? new RateLimitProperties.Rule() : current.copy();
+        change.accept(rule);
+        properties.getRules().put(name, rule);
+        reload();
+        return rule.copy();
+    }
+
+    public RateLimitDecision acquire(String method, String pattern, String client) {
+        if (!properties.isEnabled() || pattern == null) {
+            return RateLimitDecision.unlimited();
+        }
+        for (CompiledRule rule : rules.values()) {
+            if (rule.matches(method, pattern)) {
+                return rule.acquire(client);
+            }
+        }
+        return RateLimitDecision.unlimited();
+    }
+
+    private RateLimitDecision reject(CompiledRule rule, String reason, long waitNanos) {
+        meterRegistry.counter("users.ratelimit.rejected", "rule", rule.name, "reason", reason).increment();
+        return RateLimitDecision.rejected(reason, (long) Math.ceil(waitNanos / 1e9));
+    }
+
+    private final class CompiledRule {
+        private final String name;
+        private final String pattern;
+        private final String method;
+        private final double clientRate;
+        private final int clientBurst;
+        private final TokenBucket endpointBucket;
+        private final Cache<String, TokenBucket> clientBuckets;
+        private final Semaphore concurrency;
+
+        private CompiledRule(String name, RateLimitProperties.Rule rule) {
+            this.name = name;
+            this.pattern = rule.getPattern();
+            this.method = rule.getMethod();
+            this.clientRate = rule.getClientRate();
+            this.clientBurst = rule.getClientBurst();
+            this.endpointBucket = rule.getEndpointRate() > 0
+                    ? new TokenBucket(rule.getEndpointRate(), rule.getEndpointBurst(), clock.getAsLong()) : null;
+            this.clientBuckets = rule.getClientRate() > 0 ? Caffeine.newBuilder()
+                    .maximumSize(properties.getMaxClients())
+                    .expireAfterAccess(properties.getClientIdleTimeout().toNanos(), TimeUnit.NANOSECONDS)
+                    .build() : null;
+            this.concurrency = rule.getMaxConcurrent() > 0 ? new Semaphore(rule.getMaxConcurrent()) : null;
+        }
+
+        private boolean matches(String requestMethod, String requestPattern) {
+            return requestPattern.equals(pattern) && (method == null || method.equalsIgnoreCase(requestMethod));
+        }
+
+        private RateLimitDecision acquire(String client) {
+            // the permit is taken first: giving it back is free, a consumed token is not
+            if (concurrency != null && !concurrency.tryAcquire()) {
+                return reject(this, REASON_CONCURRENCY, 1_000_000_000L);
+            }
+            long now = clock.getAsLong();
+            long wait = clientBuckets == null ? 0
+                    : clientBuckets.get(client, key -> new TokenBucket(clientRate, clientBurst, now)).tryAcquire(now);
+            String reason = REASON_CLIENT;
+            if (wait == 0 && endpointBucket != null) {
+                wait = endpointBucket.tryAcquire(now);
+                reason = REASON_ENDPOINT;
+            }
+            if (wait > 0) {
+                if (concurrency != null) {
+                    concurrency.release();
+                }
+                return reject(this, reason, wait);
+            }
+            return RateLimitDecision.allowed(concurrency);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in its "virtual scheduling" form (GCRA): instead of a token count it keeps the time at which
+ * the bucket would be full again, so a permit costs one CAS on a single {@code long} and no refill thread is needed.
+ */
+public final class TokenBucket {
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    /**
+     * @param permitsPerSecond sustained rate
+     * @param burst            permits available at once after the bucket has been idle
+     */
+    public TokenBucket(double permitsPerSecond, int burst, long nowNanos) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate и burst должны быть положительными");
+        }
+        this.nanosPerToken = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+        this.burstNanos = nanosPerToken * burst;
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * @return 0 if a permit was taken, otherwise the nanoseconds until one becomes available
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, nowNanos) + nanosPerToken;
+            long wait = next - nowNanos - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
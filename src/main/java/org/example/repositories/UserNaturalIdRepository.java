@@ -0,0 +1,9 @@
+package org.example.repositories;
+
+import org.example.entities.UserEntity;
+
+import java.util.Optional;
+
+public interface UserNaturalIdRepository {
+    Optional<UserEntity> loadByEmail(String email);
+}
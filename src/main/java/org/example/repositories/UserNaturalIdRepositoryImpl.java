@@ -0,0 +1,22 @@
+package org.example.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.example.entities.UserEntity;
+import org.hibernate.Session;
+
+import java.util.Optional;
+
+/**
+ * Loads a user through the email natural id. With the second-level cache on, a hit in the natural-id region and the
+ * entity region answers without SQL; otherwise it is a plain select by email.
+ */
+public class UserNaturalIdRepositoryImpl implements UserNaturalIdRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<UserEntity> loadByEmail(String email) {
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(UserEntity.class).loadOptional(email);
+    }
+}
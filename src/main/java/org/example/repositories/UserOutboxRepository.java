@@ -0,0 +1,48 @@
+package org.example.repositories;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.example.entities.UserOutboxEntity;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface UserOutboxRepository extends JpaRepository<UserOutboxEntity, Long> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from UserOutboxEntity o where o.publishedAt is null order by o.commitSeq nulls first, o.id")
+    List<UserOutboxEntity> lockUnpublished(Limit limit);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update UserOutboxEntity o set o.publishedAt = :publishedAt where o.id in :ids")
+    int markPublished(@Param("ids") Collection<Long> ids, @Param("publishedAt") LocalDateTime publishedAt);
+
+    @Query("select count(o) from UserOutboxEntity o where o.publishedAt is null")
+    long countUnpublished();
+
+    @Query("select min(o.createdAt) from UserOutboxEntity o where o.publishedAt is null")
+    LocalDateTime findOldestUnpublishedCreatedAt();
+
+    @Query("select max(o.commitSeq) from UserOutboxEntity o")
+    Long findMaxCommitSeq();
+
+    /** Events after the one with {@code commitSeq} and {@code id}, in commit order. */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("select o from UserOutboxEntity o where o.commitSeq > :commitSeq or (o.commitSeq = :commitSeq and o.id > :id) "
+            + "order by o.commitSeq, o.id")
+    List<UserOutboxEntity> findCommittedAfter(@Param("commitSeq") long commitSeq, @Param("id") long id, Limit limit);
+
+    @Modifying
+    @Query("delete from UserOutboxEntity o where o.publishedAt < :before")
+    int deletePublishedBefore(@Param("before") LocalDateTime before);
+}
@@ -1,14 +1,76 @@
 package org.example.repositories;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.example.dto.UserDto;
 import org.example.entities.UserEntity;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface UserRepository extends JpaRepository<UserEntity, Integer> {
+public interface UserRepository extends JpaRepository<UserEntity, Integer>, UserSearchRepository,
+        UserNaturalIdRepository {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     Optional<UserEntity> findByEmail(String email);
 
-    void deleteByEmail(String email);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    List<UserEntity> findByEmailIn(Collection<String> emails);
+
+    @Override
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500")
+    })
+    List<UserEntity> findAll();
+
+    /** Same as {@link #findByEmailIn} but without the read-only hint, so changes to the result are flushed. */
+    @Query("select u from UserEntity u where u.email in :emails")
+    List<UserEntity> findWritableByEmailIn(@Param("emails") Collection<String> emails);
+
+    /** Writable user locked until the end of the transaction, for a read-modify-write nobody can slip in between. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u from UserEntity u where u.email = :email")
+    Optional<UserEntity> lockByEmail(@Param("email") String email);
+
+    @Query("select u.id from UserEntity u where u.email = :email")
+    Optional<Integer> findIdByEmail(@Param("email") String email);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from UserEntity u where u.email = :email")
+    int deleteByEmail(@Param("email") String email);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update UserEntity u set u.name = :name, u.email = :newEmail, u.age = :age, "
+            + "u.version = coalesce(u.version, 0) + 1 where u.email = :email")
+    int updateByEmail(@Param("email") String email, @Param("newEmail") String newEmail,
+                      @Param("name") String name, @Param("age") Integer age);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update UserEntity u set u.name = :name, u.email = :newEmail, u.age = :age, "
+            + "u.version = coalesce(u.version, 0) + 1 "
+            + "where u.email = :email and u.id = :id and coalesce(u.version, 0) = :version")
+    int updateByEmailAndVersion(@Param("email") String email, @Param("newEmail") String newEmail,
+                                @Param("name") String name, @Param("age") Integer age,
+                                @Param("id") Integer id, @Param("version") Long version);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new org.example.dto.UserDto(u.id, u.name, u.email, u.age, u.createdAt) from UserEntity u "
+            + "where u.id > :after order by u.id")
+    List<UserDto> findPageAfter(@Param("after") Integer after, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new org.example.dto.UserDto(u.id, u.name, u.email, u.age, u.createdAt) from UserEntity u order by u.id")
+    Stream<UserDto> streamAllOrderById();
 }
@@ -0,0 +1,11 @@
+package org.example.repositories;
+
+import org.example.dto.UserDto;
+import org.example.dto.UserSearchCriteria;
+import org.example.utils.UserSearchCursor;
+
+import java.util.List;
+
+public interface UserSearchRepository {
+    List<UserDto> search(UserSearchCriteria criteria, UserSearchCursor after, int limit);
+}
@@ -0,0 +1,92 @@
+package org.example.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.example.dto.UserDto;
+import org.example.dto.UserSearchCriteria;
+import org.example.dto.UserSearchSort;
+import org.example.entities.UserEntity;
+import org.example.utils.UserSearchCursor;
+import org.hibernate.jpa.HibernateHints;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the search as a DTO projection with only the predicates that were asked for, so every filter combination
+ * maps onto one of the composite indexes in {@code schema-postgresql.sql}. Pages continue from the last row
+ * ({@code created_at >= :c and (created_at > :c or id > :id)}), never with an offset.
+ */
+public class UserSearchRepositoryImpl implements UserSearchRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<UserDto> search(UserSearchCriteria criteria, UserSearchCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<UserDto> query = cb.createQuery(UserDto.class);
+        Root<UserEntity> user = query.from(UserEntity.class);
+        Path<Integer> id = user.get("id");
+        Path<LocalDateTime> createdAt = user.get("createdAt");
+        Path<Integer> age = user.get("age");
+        query.select(cb.construct(UserDto.class, id, user.get("name"), user.get("email"), age, createdAt));
+
+        List<Predicate> where = new ArrayList<>();
+        if (criteria.getNamePrefix() != null && !criteria.getNamePrefix().isEmpty()) {
+            where.add(cb.like(user.get("name"), escapeLike(criteria.getNamePrefix()) + "%", '\\'));
+        }
+        if (criteria.getMinAge() != null) {
+            where.add(cb.greaterThanOrEqualTo(age, criteria.getMinAge()));
+        }
+        if (criteria.getMaxAge() != null) {
+            where.add(cb.lessThanOrEqualTo(age, criteria.getMaxAge()));
+        }
+        if (criteria.getCreatedFrom() != null) {
+            where.add(cb.greaterThanOrEqualTo(createdAt, criteria.getCreatedFrom()));
+        }
+        if (criteria.getCreatedTo() != null) {
+            where.add(cb.lessThan(createdAt, criteria.getCreatedTo()));
+        }
+
+        boolean descending = criteria.isDescending();
+        if (after != null) {
+            where.add(criteria.getSort() == UserSearchSort.CREATED_AT
+                    ? cb.and(descending
+                                    ? cb.lessThanOrEqualTo(createdAt, after.getCreatedAt())
+                                    : cb.greaterThanOrEqualTo(createdAt, after.getCreatedAt()),
+                            cb.or(descending
+                                            ? cb.lessThan(createdAt, after.getCreatedAt())
+                                            : cb.greaterThan(createdAt, after.getCreatedAt()),
+                                    after(cb, id, after.getId(), descending)))
+                    : after(cb, id, after.getId(), descending));
+        }
+        query.where(where.toArray(new Predicate[0]));
+
+        List<Order> orderBy = new ArrayList<>(2);
+        if (criteria.getSort() == UserSearchSort.CREATED_AT) {
+            orderBy.add(descending ? cb.desc(createdAt) : cb.asc(createdAt));
+        }
+        orderBy.add(descending ? cb.desc(id) : cb.asc(id));
+        query.orderBy(orderBy);
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, limit)
+                .getResultList();
+    }
+
+    private Predicate after(CriteriaBuilder cb, Path<Integer> id, Integer value, boolean descending) {
+        return descending ? cb.lessThan(id, value) : cb.greaterThan(id, value);
+    }
+
+    private String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,212 @@
+package org.example.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.UserArchiveProperties;
+import org.example.dto.UserDto;
+import org.example.entities.UserEntity;
+import org.example.utils.UserSearchCursor;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps {@code users} small by moving users created before {@code users.archive.retention} to {@code users_archive}.
+ * Each batch is one transaction: the oldest users are locked, copied into the archive and deleted, and an
+ * {@code ARCHIVED} event per user goes to the outbox. On PostgreSQL the archive is partitioned by month of
+ * {@code created_at}, and the partitions a run needs are created before it moves anything.
+ * <p>
+ * Runs on its own thread, started by {@code users.archive.cron}: a long backlog must not hold up the outbox relay
+ * on the shared scheduler.
+ */
+@Slf4j
+@Service
+public class UserArchiveService {
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("'y'yyyy'm'MM");
+    private static final RowMapper<UserDto> DTO_MAPPER = (rs, rowNum) -> new UserDto(rs.getInt("id"), rs.getString("name"),
+            rs.getString("email"), (Integer) rs.getObject("age"), rs.getObject("created_at", LocalDateTime.class));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserEventOutbox userEventOutbox;
+    private final CacheManager cacheManager;
+    private final EntityManagerFactory entityManagerFactory;
+    private final UserArchiveProperties properties;
+    private final ExecutorService worker;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Set<YearMonth> partitions = ConcurrentHashMap.newKeySet();
+    private final Counter archived;
+    private volatile Boolean partitioned;
+
+    @Autowired
+    public UserArchiveService(NamedParameterJdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                              UserEventOutbox userEventOutbox, CacheManager cacheManager,
+                              EntityManagerFactory entityManagerFactory, UserArchiveProperties properties,
+                              MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.userEventOutbox = userEventOutbox;
+        this.cacheManager = cacheManager;
+        this.entityManagerFactory = entityManagerFactory;
+        this.properties = properties;
+        this.archived = meterRegistry.counter("users.archive.archived");
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("user-archive-");
+        threadFactory.setDaemon(true);
+        this.worker = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    @Scheduled(cron = "${users.archive.cron:0 30 3 * * *}")
+    public void scheduleArchive() {
+        if (!properties.isEnabled() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        worker.execute(() -> {
+            try {
+                archive(LocalDateTime.now().minus(properties.getRetention()));
+            } catch (RuntimeException e) {
+                log.error("Ошибка при архивации пользователей", e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    /**
+     * Moves every user created before {@code cutoff}, oldest first.
+     *
+     * @return number of users archived
+     */
+    public long archive(LocalDateTime cutoff) {
+        try {
+            LocalDateTime oldest = jdbcTemplate.queryForObject("select min(created_at) from users where created_at < :cutoff",
+                    new MapSqlParameterSource("cutoff", cutoff), LocalDateTime.class);
+            if (oldest == null) {
+                return 0;
+            }
+            createPartitions(YearMonth.from(oldest), YearMonth.from(cutoff));
+            long total = 0;
+            int moved;
+            do {
+                moved = archiveBatch(cutoff);
+                total += moved;
+            } while (moved == properties.getBatchSize());
+            log.info("Архивация пользователей: перенесено {}, созданных до {}", total, cutoff);
+            return total;
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при архивации пользователей, созданных до " + cutoff, e);
+        }
+    }
+
+    /**
+     * Archived users created in {@code [from, to)}, in {@code created_at, id} order. On PostgreSQL only the
+     * partitions of the window are read.
+     */
+    public List<UserDto> searchArchive(LocalDateTime from, LocalDateTime to, UserSearchCursor after, int limit) {
+        try {
+            if (from == null || to == null || !from.isBefore(to)) {
+                throw new IllegalArgumentException("Нужен интервал created_at, в котором from раньше to");
+            }
+            if (limit < 1 || limit > UserService.MAX_PAGE_LIMIT) {
+                throw new IllegalArgumentException("Limit должен быть в диапазоне от 1 до " + UserService.MAX_PAGE_LIMIT);
+            }
+            MapSqlParameterSource params = new MapSqlParameterSource("from", from).addValue("to", to).addValue("limit", limit);
+            String keyset = "";
+            if (after != null) {
+                keyset = " and created_at >= :afterCreatedAt and (created_at > :afterCreatedAt or id > :afterId)";
+                params.addValue("afterCreatedAt", after.getCreatedAt()).addValue("afterId", after.getId());
+            }
+            return jdbcTemplate.query("select id, name, email, age, created_at from users_archive "
+                    + "where created_at >= :from and created_at < :to" + keyset
+                    + " order by created_at, id limit :limit", params, DTO_MAPPER);
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при поиске в архиве пользователей", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    private int archiveBatch(LocalDateTime cutoff) {
+        List<ArchivedUser> users = transactionTemplate.execute(status -> {
+            List<ArchivedUser> batch = jdbcTemplate.query("select id, email from users where created_at < :cutoff "
+                            + "order by created_at, id limit :limit for update",
+                    new MapSqlParameterSource("cutoff", cutoff).addValue("limit", properties.getBatchSize()),
+                    (rs, rowNum) -> new ArchivedUser(rs.getInt("id"), rs.getString("email")));
+            if (batch.isEmpty()) {
+                return batch;
+            }
+            MapSqlParameterSource ids = new MapSqlParameterSource("ids", batch.stream().map(ArchivedUser::id).toList())
+                    .addValue("archivedAt", LocalDateTime.now());
+            jdbcTemplate.update("insert into users_archive (id, name, email, age, created_at, version, archived_at) "
+                    + "select id, name, email, age, created_at, version, :archivedAt from users where id in (:ids)", ids);
+            jdbcTemplate.update("delete from users where id in (:ids)", ids);
+            batch.forEach(user -> userEventOutbox.archived(user.id(), user.email()));
+            return batch;
+        });
+        evict(users);
+        archived.increment(users.size());
+        return users.size();
+    }
+
+    private void createPartitions(YearMonth first, YearMonth last) {
+        if (!isPartitioned()) {
+            return;
+        }
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            if (partitions.contains(month)) {
+                continue;
+            }
+            jdbcTemplate.getJdbcTemplate().execute("CREATE TABLE IF NOT EXISTS users_archive_" + month.format(PARTITION_SUFFIX)
+                    + " PARTITION OF users_archive FOR VALUES FROM ('" + month.atDay(1) + "') TO ('"
+                    + month.plusMonths(1).atDay(1) + "')");
+            partitions.add(month);
+        }
+    }
+
+    /** Partitions exist only in the PostgreSQL schema; elsewhere (H2 in tests) the archive is a plain table. */
+    private boolean isPartitioned() {
+        if (partitioned == null) {
+            partitioned = jdbcTemplate.getJdbcTemplate().execute((ConnectionCallback<Boolean>) connection ->
+                    "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName()));
+        }
+        return partitioned;
+    }
+
+    private void evict(List<ArchivedUser> users) {
+        Cache cache = cacheManager.getCache(UserService.USERS_BY_EMAIL_CACHE);
+        if (cache != null) {
+            users.forEach(user -> cache.evict(user.email()));
+        }
+        // rows were deleted behind Hibernate's back; a no-op unless users.l2cache.enabled is set
+        org.hibernate.Cache secondLevelCache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        users.forEach(user -> secondLevelCache.evictEntityData(UserEntity.class, user.id()));
+        secondLevelCache.evictNaturalIdData(UserEntity.class);
+    }
+
+    private record ArchivedUser(int id, String email) {
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.config.UserCacheSyncProperties;
+import org.example.dto.UserEventDto;
+import org.example.entities.UserEntity;
+import org.example.utils.EmailNormalizer;
+import org.hibernate.SessionFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Evicts the {@code usersByEmail} entries, misses included, and the second-level cache entries of users changed by
+ * other writers: other instances, the reactive service and anything else that records its changes in
+ * {@code user_outbox}. Events come from the {@link UserOutboxTail}, so a cached entry can be stale for about
+ * {@code users.outbox.tail-interval}. Changes of this instance are evicted a second time, which costs one reload
+ * of the user.
+ */
+@Component
+public class UserCacheSync implements UserOutboxTail.Listener {
+    private final CacheManager cacheManager;
+    private final EntityManagerFactory entityManagerFactory;
+    private final UserCacheSyncProperties properties;
+
+    public UserCacheSync(CacheManager cacheManager, EntityManagerFactory entityManagerFactory,
+                         UserCacheSyncProperties properties) {
+        this.cacheManager = cacheManager;
+        this.entityManagerFactory = entityManagerFactory;
+        this.properties = properties;
+    }
+
+    @Override
+    public void onEvents(List<UserEventDto> events) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Cache cache = cacheManager.getCache(UserService.USERS_BY_EMAIL_CACHE);
+        org.hibernate.Cache secondLevelCache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        for (UserEventDto event : events) {
+            if (cache != null) {
+                evict(cache, event.getEmail());
+                evict(cache, event.getPreviousEmail());
+            }
+            if (event.getId() != null) {
+                secondLevelCache.evictEntityData(UserEntity.class, event.getId());
+            }
+        }
+        // a no-op unless users.l2cache.enabled is set
+        secondLevelCache.evictNaturalIdData(UserEntity.class);
+    }
+
+    private static void evict(Cache cache, String email) {
+        if (email != null) {
+            cache.evict(EmailNormalizer.normalize(email));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.example.services;
+
+import lombok.AllArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Counter in the single-row table {@code users_change_marker}, incremented once by every transaction that writes
+ * {@code user_outbox}. The increment locks the row until commit, so the counter grows in commit order: a transaction
+ * can only read a higher value after every transaction with a lower one has committed or rolled back. Outbox ids
+ * come from pooled blocks and cannot promise that.
+ * <p>
+ * Writers serialize from their increment to their commit. Callers therefore increment after the rest of the
+ * transaction's changes (events are recorded last), which keeps the wait short and cannot deadlock on user rows.
+ * The lock is still held through the commit, so writes are bounded by one commit at a time across all instances;
+ * {@code UserChangeMarkerBenchmark} measures that bound. It stays because the outbox relay and
+ * {@link UserOutboxTail} read events in this order.
+ */
+@Component
+@AllArgsConstructor
+public class UserChangeMarker {
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Increments the marker on the first call in a transaction; later calls in it return the same value. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long increment() {
+        Long marker = (Long) TransactionSynchronizationManager.getResource(this);
+        if (marker != null) {
+            return marker;
+        }
+        jdbcTemplate.update("update users_change_marker set marker = marker + 1 where id = 1");
+        marker = jdbcTemplate.queryForObject("select marker from users_change_marker where id = 1", Long.class);
+        TransactionSynchronizationManager.bindResource(this, marker);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(UserChangeMarker.this);
+            }
+        });
+        return marker;
+    }
+
+    public long current() {
+        Long marker = jdbcTemplate.queryForObject("select marker from users_change_marker where id = 1", Long.class);
+        return marker == null ? 0 : marker;
+    }
+}
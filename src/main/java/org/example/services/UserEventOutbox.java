@@ -0,0 +1,87 @@
+package org.example.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import org.example.dto.UserEventDto;
+import org.example.entities.UserEntity;
+import org.example.entities.UserEventType;
+import org.example.entities.UserOutboxEntity;
+import org.example.repositories.UserOutboxRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes user change events into {@code user_outbox}. Must be called inside the transaction that changes the user,
+ * so the event is stored if and only if the change commits; {@link UserOutboxRelay} publishes it afterwards.
+ * The event is also published in-process, for listeners such as {@link org.example.feed.UserChangeFeed}
+ * that react after the commit. Recording an event increments the {@link UserChangeMarker}, so it has to come after
+ * the transaction's other changes; the marker value is stored with the event and orders the relay.
+ */
+@Component
+@AllArgsConstructor
+@Transactional(propagation = Propagation.MANDATORY)
+public class UserEventOutbox {
+    private final UserOutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserChangeMarker changeMarker;
+
+    public void created(UserEntity user) {
+        outboxRepository.save(toOutbox(UserEventType.CREATED, user, null));
+    }
+
+    public void createdAll(List<UserEntity> users) {
+        List<UserOutboxEntity> events = new ArrayList<>(users.size());
+        for (UserEntity user : users) {
+            events.add(toOutbox(UserEventType.CREATED, user, null));
+        }
+        outboxRepository.saveAll(events);
+    }
+
+    public void updated(UserEntity user, String previousEmail) {
+        outboxRepository.save(toOutbox(UserEventType.UPDATED, user, previousEmail));
+    }
+
+    public void deleted(Integer id, String email) {
+        removed(UserEventType.DELETED, id, email);
+    }
+
+    /** The user left {@code users} for {@code users_archive}; for consumers it is gone, like a deleted one. */
+    public void archived(Integer id, String email) {
+        removed(UserEventType.ARCHIVED, id, email);
+    }
+
+    private void removed(UserEventType type, Integer id, String email) {
+        UserEventDto event = new UserEventDto(type, id, email);
+        eventPublisher.publishEvent(event);
+        UserOutboxEntity outbox = new UserOutboxEntity(id, type, write(event));
+        outbox.setCommitSeq(changeMarker.increment());
+        outboxRepository.save(outbox);
+    }
+
+    private UserOutboxEntity toOutbox(UserEventType type, UserEntity user, String previousEmail) {
+        UserEventDto event = new UserEventDto(type, user.getId(), user.getEmail());
+        event.setPreviousEmail(previousEmail);
+        event.setName(user.getName());
+        event.setAge(user.getAge());
+        event.setCreatedAt(user.getCreatedAt());
+        eventPublisher.publishEvent(event);
+        UserOutboxEntity outbox = new UserOutboxEntity(user.getId(), type, write(event));
+        outbox.setCommitSeq(changeMarker.increment());
+        return outbox;
+    }
+
+    private String write(UserEventDto event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать событие пользователя " + event.getId(), e);
+        }
+    }
+}
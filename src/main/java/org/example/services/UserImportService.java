@@ -0,0 +1,109 @@
+package org.example.services;
+
+import jakarta.persistence.EntityManager;
+import lombok.AllArgsConstructor;
+import org.example.config.UserImportProperties;
+import org.example.dto.UserDto;
+import org.example.dto.UserImportChunkDto;
+import org.example.dto.UserImportResultDto;
+import org.example.emailfilter.UserEmailFilter;
+import org.example.entities.UserEntity;
+import org.example.repositories.UserRepository;
+import org.example.utils.EmailNormalizer;
+import org.example.utils.MappingUtils;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+@Service
+@AllArgsConstructor
+public class UserImportService {
+    private final UserRepository userRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheManager cacheManager;
+    private final MappingUtils mappingUtils;
+    private final UserImportProperties properties;
+    private final UserEventOutbox userEventOutbox;
+    private final UserEmailFilter emailFilter;
+
+    public UserImportResultDto importUsers(Iterator<UserDto> users) {
+        try {
+            if (users == null) {
+                throw new IllegalArgumentException("Users не может быть null");
+            }
+            int chunkSize = properties.getChunkSize();
+            UserImportResultDto result = new UserImportResultDto();
+            List<UserDto> rows = new ArrayList<>(chunkSize);
+            int firstRow = 0;
+            while (users.hasNext()) {
+                rows.add(users.next());
+                if (rows.size() == chunkSize) {
+                    result.addChunk(importChunk(result.getChunks().size(), firstRow, rows), rows.size());
+                    firstRow += rows.size();
+                    rows.clear();
+                }
+            }
+            if (!rows.isEmpty()) {
+                result.addChunk(importChunk(result.getChunks().size(), firstRow, rows), rows.size());
+            }
+            return result;
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при импорте пользователей", e);
+        }
+    }
+
+    private UserImportChunkDto importChunk(int index, int firstRow, List<UserDto> rows) {
+        UserImportChunkDto chunk = new UserImportChunkDto(index, firstRow);
+        List<UserEntity> valid = new ArrayList<>(rows.size());
+        Set<String> emails = new HashSet<>();
+
+        for (int i = 0; i < rows.size(); i++) {
+            UserEntity user = mappingUtils.mapToUSerEntity(rows.get(i));
+            user.setId(null);
+            user.setEmail(EmailNormalizer.normalize(user.getEmail()));
+            if (user.getEmail() == null || user.getEmail().isEmpty()) {
+                chunk.getErrors().add("Строка " + (firstRow + i) + ": email не может быть пустым");
+            } else if (!emails.add(user.getEmail())) {
+                chunk.getErrors().add("Строка " + (firstRow + i) + ": email " + user.getEmail() + " повторяется в запросе");
+            } else {
+                valid.add(user);
+            }
+        }
+
+        try {
+            valid.forEach(user -> emailFilter.add(user.getEmail()));
+            transactionTemplate.executeWithoutResult(status -> {
+                userRepository.saveAll(valid);
+                // users first: the outbox events take the change marker lock, which is held until commit
+                userRepository.flush();
+                userEventOutbox.createdAll(valid);
+                userRepository.flush();
+                entityManager.clear();
+            });
+            chunk.setSaved(valid.size());
+            chunk.setRejected(rows.size() - valid.size());
+            chunk.setCommitted(true);
+            evict(emails);
+        } catch (DataIntegrityViolationException e) {
+            chunk.setRejected(rows.size());
+            chunk.getErrors().add("Чанк не сохранён: один из email уже существует");
+        }
+        return chunk;
+    }
+
+    private void evict(Set<String> emails) {
+        Cache cache = cacheManager.getCache(UserService.USERS_BY_EMAIL_CACHE);
+        if (cache != null) {
+            emails.forEach(cache::evict);
+        }
+    }
+}
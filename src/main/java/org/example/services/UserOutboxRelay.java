@@ -0,0 +1,152 @@
+package org.example.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.example.config.UserOutboxProperties;
+import org.example.entities.UserOutboxEntity;
+import org.example.repositories.UserOutboxRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes {@code user_outbox} rows to Kafka in commit order ({@code commit_seq}, then id within a transaction).
+ * Ids alone would not do: every instance and the reactive service take them in blocks, so a later change can hold
+ * a lower id. Events are keyed by user id, so all changes of one user land in one partition in commit order. Rows are locked for the duration of a batch, which keeps several instances
+ * from interleaving batches; a send failure stops the batch and the rest is retried on the next run.
+ */
+@Service
+public class UserOutboxRelay {
+    public static final String EVENT_TYPE_HEADER = "event-type";
+    public static final String OUTBOX_ID_HEADER = "outbox-id";
+
+    private final UserOutboxRepository outboxRepository;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserOutboxProperties properties;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicReference<LocalDateTime> oldestPending = new AtomicReference<>();
+    private final Counter published;
+    private final Counter failures;
+
+    public UserOutboxRelay(UserOutboxRepository outboxRepository, KafkaTemplate<String, String> kafkaTemplate,
+                           TransactionTemplate transactionTemplate, UserOutboxProperties properties,
+                           MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.published = meterRegistry.counter("users.outbox.published");
+        this.failures = meterRegistry.counter("users.outbox.failures");
+        Gauge.builder("users.outbox.pending", pending, AtomicLong::get)
+                .description("Неопубликованные события в user_outbox")
+                .register(meterRegistry);
+        Gauge.builder("users.outbox.lag", this, UserOutboxRelay::lagSeconds)
+                .description("Возраст самого старого неопубликованного события")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${users.outbox.relay-interval:PT0.5S}")
+    public void relay() {
+        if (!properties.isRelayEnabled()) {
+            return;
+        }
+        int sent;
+        do {
+            sent = publishBatch();
+        } while (sent == properties.getBatchSize());
+    }
+
+    /** Deletes published events older than the retention. */
+    @Scheduled(cron = "${users.outbox.purge-cron:0 0 * * * *}")
+    public void purge() {
+        LocalDateTime before = LocalDateTime.now().minus(properties.getRetention());
+        transactionTemplate.executeWithoutResult(status -> outboxRepository.deletePublishedBefore(before));
+    }
+
+    /**
+     * Sends one batch and marks the acknowledged prefix as published.
+     *
+     * @return number of events published
+     */
+    public int publishBatch() {
+        Integer sent = transactionTemplate.execute(status -> {
+            List<UserOutboxEntity> batch = outboxRepository.lockUnpublished(Limit.of(properties.getBatchSize()));
+            List<CompletableFuture<SendResult<String, String>>> sends = new ArrayList<>(batch.size());
+            for (UserOutboxEntity event : batch) {
+                sends.add(send(event));
+            }
+
+            List<Long> acknowledged = new ArrayList<>(batch.size());
+            for (int i = 0; i < sends.size(); i++) {
+                if (!await(sends.get(i))) {
+                    break;
+                }
+                acknowledged.add(batch.get(i).getId());
+            }
+            if (!acknowledged.isEmpty()) {
+                outboxRepository.markPublished(acknowledged, LocalDateTime.now());
+            }
+            return acknowledged.size();
+        });
+        published.increment(sent);
+        refreshBacklog();
+        return sent;
+    }
+
+    private CompletableFuture<SendResult<String, String>> send(UserOutboxEntity event) {
+        try {
+            return kafkaTemplate.send(toRecord(event));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private ProducerRecord<String, String> toRecord(UserOutboxEntity event) {
+        ProducerRecord<String, String> record = new ProducerRecord<>(properties.getTopic(),
+                String.valueOf(event.getAggregateId()), event.getPayload());
+        record.headers().add(EVENT_TYPE_HEADER, event.getEventType().name().getBytes(StandardCharsets.UTF_8));
+        record.headers().add(OUTBOX_ID_HEADER, String.valueOf(event.getId()).getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+
+    private boolean await(CompletableFuture<SendResult<String, String>> send) {
+        try {
+            send.get(properties.getSendTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.increment();
+            return false;
+        } catch (Exception e) {
+            failures.increment();
+            return false;
+        }
+    }
+
+    private void refreshBacklog() {
+        pending.set(outboxRepository.countUnpublished());
+        oldestPending.set(outboxRepository.findOldestUnpublishedCreatedAt());
+    }
+
+    private double lagSeconds() {
+        LocalDateTime oldest = oldestPending.get();
+        return oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).toMillis() / 1000.0;
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.UserOutboxProperties;
+import org.example.dto.UserEventDto;
+import org.example.entities.UserOutboxEntity;
+import org.example.repositories.UserOutboxRepository;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the {@code user_outbox} events committed by any writer (this and other instances, the reactive service,
+ * COPY imports) and hands them to the {@link Listener}s of this instance, such as the email filter and the cache
+ * eviction. Rows are read in {@code commit_seq} order after the last one read: {@link UserChangeMarker} hands the
+ * sequence out in commit order, so a row with a lower value than one already read is never committed later.
+ * Neither the time a row was inserted nor the writer's clock matters. Tailing starts at the newest event when the
+ * application context is refreshed; listeners start from a full load of their own.
+ * <p>
+ * Delivery is at least once: if reading or a listener fails, the position stays and the same events are handed
+ * to every listener again on the next poll, so listeners must be idempotent.
+ */
+@Slf4j
+@Component
+public class UserOutboxTail {
+    private final UserOutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+    private final UserOutboxProperties properties;
+    private final List<Listener> listeners;
+
+    private Long lastSeq;
+    private long lastId;
+
+    public UserOutboxTail(UserOutboxRepository outboxRepository, ObjectMapper objectMapper,
+                          UserOutboxProperties properties, List<Listener> listeners) {
+        this.outboxRepository = outboxRepository;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.listeners = listeners;
+    }
+
+    /** Receives the events of every writer in commit order. */
+    public interface Listener {
+        void onEvents(List<UserEventDto> events);
+
+        /** Every change committed before {@code time} has been passed to {@link #onEvents}. */
+        default void caughtUp(LocalDateTime time) {
+        }
+    }
+
+    /** Takes the position before the first request, so events committed after it are not skipped. */
+    @EventListener(ContextRefreshedEvent.class)
+    public void start() {
+        poll();
+    }
+
+    @Scheduled(fixedDelayString = "${users.outbox.tail-interval:PT1S}")
+    public synchronized void poll() {
+        try {
+            if (lastSeq == null) {
+                Long newest = outboxRepository.findMaxCommitSeq();
+                lastSeq = newest == null ? 0 : newest;
+                lastId = Long.MAX_VALUE;
+                return;
+            }
+            List<UserOutboxEntity> batch;
+            LocalDateTime read;
+            do {
+                read = LocalDateTime.now();
+                batch = outboxRepository.findCommittedAfter(lastSeq, lastId, Limit.of(properties.getTailBatchSize()));
+                if (!batch.isEmpty()) {
+                    List<UserEventDto> events = new ArrayList<>(batch.size());
+                    for (UserOutboxEntity row : batch) {
+                        events.add(read(row.getPayload()));
+                    }
+                    listeners.forEach(listener -> listener.onEvents(events));
+                    UserOutboxEntity last = batch.get(batch.size() - 1);
+                    lastSeq = last.getCommitSeq();
+                    lastId = last.getId();
+                }
+            } while (batch.size() == properties.getTailBatchSize());
+            LocalDateTime caughtUp = read;
+            listeners.forEach(listener -> listener.caughtUp(caughtUp));
+        } catch (RuntimeException e) {
+            log.warn("Ошибка при чтении user_outbox", e);
+        }
+    }
+
+    private UserEventDto read(String payload) {
+        try {
+            return objectMapper.readValue(payload, UserEventDto.class);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Ошибка при чтении события пользователя из user_outbox", e);
+        }
+    }
+}
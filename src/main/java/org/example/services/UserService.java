@@ -1,41 +1,173 @@
 package org.example.services;
 
-import jakarta.transaction.Transactional;
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
+import org.example.config.UserL2CacheProperties;
+import org.example.config.UserLookupProperties;
+import org.example.dto.UserDto;
+import org.example.dto.UserLookupResultDto;
+import org.example.dto.UserSearchCriteria;
+import org.example.emailfilter.UserEmailFilter;
 import org.example.entities.UserEntity;
+import org.example.exceptions.UserAlreadyExistsException;
+import org.example.exceptions.UserVersionConflictException;
 import org.example.repositories.UserRepository;
+import org.example.utils.EmailNormalizer;
+import org.example.utils.MappingUtils;
+import org.example.utils.UserETag;
+import org.example.utils.UserSearchCursor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @AllArgsConstructor
+@Timed(value = "users.service", percentiles = {0.5, 0.95, 0.99})
 public class UserService {
+    public static final int DEFAULT_PAGE_LIMIT = 100;
+    public static final int MAX_PAGE_LIMIT = 1000;
+    public static final String USERS_BY_EMAIL_CACHE = "usersByEmail";
+    private static final String NORMALIZED_EMAIL_KEY = "T(org.example.utils.EmailNormalizer).normalize(#email)";
+
     private final UserRepository userRepository;
+    private final UserEventOutbox userEventOutbox;
+    private final CacheManager cacheManager;
+    private final MappingUtils mappingUtils;
+    private final UserLookupProperties lookupProperties;
+    private final UserEmailFilter emailFilter;
+    private final UserChangeMarker changeMarker;
+    private final UserL2CacheProperties l2CacheProperties;
 
+    @CacheEvict(cacheNames = USERS_BY_EMAIL_CACHE,
+            key = "T(org.example.utils.EmailNormalizer).normalize(#userEntity.email)",
+            condition = "#userEntity != null && #userEntity.email != null")
+    @Transactional
     public void save(UserEntity userEntity) {
         try {
             if (userEntity == null) {
                 throw new IllegalArgumentException("UserEntity не может быть null");
             }
-            userRepository.save(userEntity);
+            userEntity.setEmail(EmailNormalizer.normalize(userEntity.getEmail()));
+            emailFilter.add(userEntity.getEmail());
+            userRepository.saveAndFlush(userEntity);
+            userEventOutbox.created(userEntity);
+        } catch (DataIntegrityViolationException e) {
+            throw new UserAlreadyExistsException(userEntity.getEmail(), e);
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при сохранении пользователя", e);
         }
     }
 
+    /**
+     * Emails the email filter rules out bypass the cache: the miss costs no query, and caching it would hide a user
+     * another writer created until the entry expired. The load is not a read-only transaction, so it is served by the
+     * primary even with a read replica: a lagging replica would put the state from before a write back into the cache
+     * right after the write evicted it, and the cache would serve it until the entry expired.
+     */
+    @Cacheable(cacheNames = USERS_BY_EMAIL_CACHE, key = NORMALIZED_EMAIL_KEY,
+            condition = "#email != null && !#email.isEmpty() && !@userEmailFilter.isRuledOut(" + NORMALIZED_EMAIL_KEY + ")",
+            sync = true)
+    @Transactional
     public Optional<UserEntity> getByEmail(String email) {
         try {
             if (email == null || email.isEmpty()) {
                 throw new IllegalArgumentException("Email не может быть null");
             }
-            return userRepository.findByEmail(email);
+            String normalized = EmailNormalizer.normalize(email);
+            if (!emailFilter.mightExist(normalized)) {
+                return Optional.empty();
+            }
+            return userRepository.loadByEmail(normalized);
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при получении пользователя по email: " + email, e);
         }
     }
 
+    /**
+     * Resolves a batch of emails: cached entries of {@link #getByEmail} are answered from the cache, the rest with one
+     * {@code IN} query per {@code users.lookup.chunk-size} emails. Results, including misses, are put back into the
+     * cache. Emails the email filter rules out are reported missing without a query. Found users and missing emails
+     * keep the order of the request. Reads go to the primary for the same reason as in {@link #getByEmail}.
+     */
+    @Transactional
+    public UserLookupResultDto lookupByEmails(Collection<String> emails) {
+        try {
+            if (emails == null) {
+                throw new IllegalArgumentException("Emails не может быть null");
+            }
+            if (emails.size() > lookupProperties.getMaxEmails()) {
+                throw new IllegalArgumentException("Можно запросить не более " + lookupProperties.getMaxEmails() + " email");
+            }
+            Set<String> keys = new LinkedHashSet<>();
+            for (String email : emails) {
+                String key = EmailNormalizer.normalize(email);
+                if (key != null && !key.isEmpty()) {
+                    keys.add(key);
+                }
+            }
+
+            Cache cache = cacheManager.getCache(USERS_BY_EMAIL_CACHE);
+            Map<String, UserEntity> found = new HashMap<>();
+            List<String> uncached = new ArrayList<>();
+            for (String key : keys) {
+                Cache.ValueWrapper cached = cache == null ? null : cache.get(key);
+                if (cached == null) {
+                    if (emailFilter.mightExist(key)) {
+                        uncached.add(key);
+                    }
+                } else if (cached.get() != null) {
+                    found.put(key, (UserEntity) cached.get());
+                }
+            }
+
+            int chunkSize = lookupProperties.getChunkSize();
+            for (int from = 0; from < uncached.size(); from += chunkSize) {
+                List<String> chunk = uncached.subList(from, Math.min(from + chunkSize, uncached.size()));
+                for (UserEntity user : userRepository.findByEmailIn(chunk)) {
+                    found.put(user.getEmail(), user);
+                }
+                if (cache != null) {
+                    chunk.forEach(key -> cache.putIfAbsent(key, found.get(key)));
+                }
+            }
+
+            UserLookupResultDto result = new UserLookupResultDto();
+            for (String key : keys) {
+                UserEntity user = found.get(key);
+                if (user == null) {
+                    result.getMissing().add(key);
+                } else {
+                    result.getFound().add(mappingUtils.mapToUserDto(user));
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при поиске пользователей по списку email", e);
+        }
+    }
+
+    @Transactional(readOnly = true)
     public List<UserEntity> getAll() {
         try {
             return userRepository.findAll();
@@ -44,19 +176,210 @@ public class UserService {
         }
     }
 
+    @Transactional(readOnly = true)
+    public List<UserDto> getPage(Integer after, int limit) {
+        try {
+            if (limit < 1 || limit > MAX_PAGE_LIMIT) {
+                throw new IllegalArgumentException("Limit должен быть в диапазоне от 1 до " + MAX_PAGE_LIMIT);
+            }
+            return userRepository.findPageAfter(after == null ? 0 : after, Limit.of(limit));
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при получении страницы пользователей после id: " + after, e);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<UserDto> search(UserSearchCriteria criteria, UserSearchCursor after, int limit) {
+        try {
+            if (criteria == null) {
+                throw new IllegalArgumentException("Criteria не может быть null");
+            }
+            if (limit < 1 || limit > MAX_PAGE_LIMIT) {
+                throw new IllegalArgumentException("Limit должен быть в диапазоне от 1 до " + MAX_PAGE_LIMIT);
+            }
+            return userRepository.search(criteria, after, limit);
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при поиске пользователей", e);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<UserDto> consumer) {
+        try (Stream<UserDto> users = userRepository.streamAllOrderById()) {
+            users.forEach(consumer);
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при потоковой выгрузке пользователей", e);
+        }
+    }
+
     @Transactional
-    public void deleteByEmail(String email) {
+    @CacheEvict(cacheNames = USERS_BY_EMAIL_CACHE, key = NORMALIZED_EMAIL_KEY,
+            condition = "#email != null && !#email.isEmpty()")
+    public boolean deleteByEmail(String email) {
         try {
             if (email == null || email.isEmpty()) {
                 throw new IllegalArgumentException("Email не может быть null");
             }
-            userRepository.deleteByEmail(email);
+            String normalized = EmailNormalizer.normalize(email);
+            if (!emailFilter.mightExist(normalized)) {
+                return false;
+            }
+            if (l2CacheProperties.isEnabled()) {
+                return deleteLoaded(normalized);
+            }
+            Optional<Integer> id = userRepository.findIdByEmail(normalized);
+            if (id.isEmpty() || userRepository.deleteByEmail(normalized) == 0) {
+                return false;
+            }
+            userEventOutbox.deleted(id.get(), normalized);
+            return true;
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при удалении пользователя с email: " + email, e);
         }
     }
 
+    @Caching(evict = {
+            @CacheEvict(cacheNames = USERS_BY_EMAIL_CACHE, key = NORMALIZED_EMAIL_KEY,
+                    condition = "#email != null && !#email.isEmpty()"),
+            @CacheEvict(cacheNames = USERS_BY_EMAIL_CACHE,
+                    key = "T(org.example.utils.EmailNormalizer).normalize(#newData.email)",
+                    condition = "#newData != null && #newData.email != null")
+    })
+    @Transactional
     public Optional<UserEntity> updateUserByEmail(String email, UserEntity newData) {
+        return update(email, newData, null);
+    }
+
+    /**
+     * Same as {@link #updateUserByEmail(String, UserEntity)}, but only applies while the user still has the id and
+     * version of {@code expected}.
+     *
+     * @throws UserVersionConflictException if the user exists with another id or version
+     */
+    @Caching(evict = {
+            @CacheEvict(cacheNames = USERS_BY_EMAIL_CACHE, key = NORMALIZED_EMAIL_KEY,
+                    condition = "#email != null && !#email.isEmpty()"),
+            @CacheEvict(cacheNames = USERS_BY_EMAIL_CACHE,
+                    key = "T(org.example.utils.EmailNormalizer).normalize(#newData.email)",
+                    condition = "#newData != null && #newData.email != null")
+    })
+    @Transactional
+    public Optional<UserEntity> updateUserByEmail(String email, UserEntity newData, UserETag expected) {
+        return update(email, newData, expected);
+    }
+
+    /**
+     * Current tag of the user, read from the primary in a read-write transaction: a lagging replica could return a
+     * version the row no longer has.
+     */
+    @Transactional
+    public Optional<UserETag> getTagByEmail(String email) {
+        try {
+            String normalized = EmailNormalizer.normalize(email);
+            if (normalized == null || normalized.isEmpty() || !emailFilter.mightExist(normalized)) {
+                return Optional.empty();
+            }
+            return userRepository.findWritableByEmailIn(List.of(normalized)).stream().findFirst().map(UserETag::of);
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при получении версии пользователя с email: " + email, e);
+        }
+    }
+
+    /**
+     * Applies name and age changes to many users in one transaction: a single select for the batch, then versioned
+     * updates and outbox inserts that Hibernate sends in JDBC batches. Keys are normalized emails; emails without
+     * a user are skipped. A change whose entity carries an id and version applies only while the user still has
+     * them, so it cannot overwrite a newer one; a user changed since then is skipped as well. The email cache is
+     * evicted once the transaction commits.
+     *
+     * @return emails of the users the changes were applied to
+     */
+    @Transactional
+    public Set<String> updateAllByEmail(Map<String, UserEntity> updates) {
+        try {
+            if (updates == null) {
+                throw new IllegalArgumentException("Updates не может быть null");
+            }
+            Set<String> found = new HashSet<>();
+            List<UserEntity> changed = new ArrayList<>();
+            for (UserEntity user : userRepository.findWritableByEmailIn(updates.keySet())) {
+                UserEntity data = updates.get(user.getEmail());
+                if (data.getVersion() != null && !isSameVersion(user, UserETag.of(data))) {
+                    continue;
+                }
+                found.add(user.getEmail());
+                if (!Objects.equals(user.getName(), data.getName()) || !Objects.equals(user.getAge(), data.getAge())) {
+                    user.setName(data.getName());
+                    user.setAge(data.getAge());
+                    changed.add(user);
+                }
+            }
+            userRepository.flush();
+            changed.forEach(user -> userEventOutbox.updated(user, user.getEmail()));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    Cache cache = cacheManager.getCache(USERS_BY_EMAIL_CACHE);
+                    if (cache != null) {
+                        found.forEach(cache::evict);
+                    }
+                }
+            });
+            return found;
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при пакетном обновлении пользователей", e);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long getChangeMarker() {
+        try {
+            return changeMarker.current();
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при получении маркера изменений пользователей", e);
+        }
+    }
+
+    private static boolean isSameVersion(UserEntity user, UserETag expected) {
+        UserETag current = UserETag.of(user);
+        return Objects.equals(current.getId(), expected.getId()) && Objects.equals(current.getVersion(), expected.getVersion());
+    }
+
+    /**
+     * Update through the managed entity, used while the second-level cache is on: a bulk JPQL update makes Hibernate
+     * drop the whole entity and natural-id regions, this replaces only the entries of the one user. The row is
+     * locked when loaded, so the version check and the write see the same state.
+     */
+    private Optional<UserEntity> updateLoaded(String oldEmail, String newEmail, UserEntity newData, UserETag expected) {
+        Optional<UserEntity> found = userRepository.lockByEmail(oldEmail);
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        UserEntity user = found.get();
+        if (expected != null && !isSameVersion(user, expected)) {
+            throw new UserVersionConflictException(oldEmail);
+        }
+        user.setName(newData.getName());
+        user.setEmail(newEmail);
+        user.setAge(newData.getAge());
+        userRepository.flush();
+        userEventOutbox.updated(user, oldEmail);
+        return Optional.of(user);
+    }
+
+    /** Delete through the managed entity while the second-level cache is on, see {@link #updateLoaded}. */
+    private boolean deleteLoaded(String email) {
+        Optional<UserEntity> found = userRepository.lockByEmail(email);
+        if (found.isEmpty()) {
+            return false;
+        }
+        userRepository.delete(found.get());
+        userRepository.flush();
+        userEventOutbox.deleted(found.get().getId(), email);
+        return true;
+    }
+
+    private Optional<UserEntity> update(String email, UserEntity newData, UserETag expected) {
         try {
             if (email == null || email.isEmpty()) {
                 throw new IllegalArgumentException("Email не может быть null");
@@ -65,20 +388,36 @@ public class UserService {
                 throw new IllegalArgumentException("NewData не может быть null");
             }
 
-            Optional<UserEntity> existingUserOpt = userRepository.findByEmail(email);
-
-            if (existingUserOpt.isEmpty()) {
+            String oldEmail = EmailNormalizer.normalize(email);
+            String newEmail = EmailNormalizer.normalize(newData.getEmail());
+            if (newEmail == null || newEmail.isEmpty()) {
+                throw new IllegalArgumentException("Новый email не может быть пустым");
+            }
+            if (!emailFilter.mightExist(oldEmail)) {
                 return Optional.empty();
             }
+            emailFilter.add(newEmail);
+            if (l2CacheProperties.isEnabled()) {
+                return updateLoaded(oldEmail, newEmail, newData, expected);
+            }
+            int updated = expected == null
+                    ? userRepository.updateByEmail(oldEmail, newEmail, newData.getName(), newData.getAge())
+                    : userRepository.updateByEmailAndVersion(oldEmail, newEmail, newData.getName(), newData.getAge(),
+                    expected.getId(), expected.getVersion());
 
-            UserEntity existingUser = existingUserOpt.get();
-
-            existingUser.setName(newData.getName());
-            existingUser.setEmail(newData.getEmail());
-            existingUser.setAge(newData.getAge());
-
-            userRepository.save(existingUser);
-            return Optional.of(existingUser);
+            if (updated == 0) {
+                if (expected != null && userRepository.findIdByEmail(oldEmail).isPresent()) {
+                    throw new UserVersionConflictException(oldEmail);
+                }
+                return Optional.empty();
+            }
+            Optional<UserEntity> user = userRepository.findByEmail(newEmail);
+            user.ifPresent(entity -> userEventOutbox.updated(entity, oldEmail));
+            return user;
+        } catch (DataIntegrityViolationException e) {
+            throw new UserAlreadyExistsException(EmailNormalizer.normalize(newData.getEmail()), e);
+        } catch (UserVersionConflictException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при обновлении пользователя с email: " + email, e);
         }
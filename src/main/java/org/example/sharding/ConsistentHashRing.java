@@ -0,0 +1,63 @@
+package org.example.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash of normalized emails onto shard names. Every shard is placed on the ring {@code virtualNodes}
+ * times, so keys spread evenly and adding a shard moves only about {@code 1/(n+1)} of them, all to the new shard.
+ * Immutable; {@link #with} returns a new ring.
+ */
+public final class ConsistentHashRing {
+    private final List<String> nodes;
+    private final int virtualNodes;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("Нужен хотя бы один шард");
+        }
+        this.nodes = List.copyOf(nodes);
+        this.virtualNodes = virtualNodes;
+        for (String node : this.nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    public ConsistentHashRing with(String node) {
+        List<String> extended = new ArrayList<>(nodes);
+        extended.add(node);
+        return new ConsistentHashRing(extended, virtualNodes);
+    }
+
+    public String nodeFor(String key) {
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    /** FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer so that similar keys land far apart. */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
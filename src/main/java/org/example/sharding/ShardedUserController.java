@@ -0,0 +1,173 @@
+package org.example.sharding;
+
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+import org.example.controller.UserController;
+import org.example.dto.UserDto;
+import org.example.dto.UserSearchCriteria;
+import org.example.dto.UserSearchSort;
+import org.example.entities.UserEntity;
+import org.example.exceptions.UserAlreadyExistsException;
+import org.example.exceptions.UserVersionConflictException;
+import org.example.metrics.UserErrorMetrics;
+import org.example.services.UserService;
+import org.example.utils.MappingUtils;
+import org.example.utils.UserETag;
+import org.example.utils.UserSearchCursor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The {@link UserController} contract in sharded mode, for the operations that work across shards: paging, search
+ * and single-user CRUD. Collection ETags, streaming, the change feed, lookup and bulk import need the primary
+ * database and are not mapped.
+ */
+@RestController
+@RequestMapping("/api/v1/users")
+@AllArgsConstructor
+@ConditionalOnProperty(prefix = "users.sharding", name = "enabled", havingValue = "true")
+public class ShardedUserController {
+    private final ShardedUserService userService;
+    private final MappingUtils mappingUtils;
+    private final UserErrorMetrics errorMetrics;
+
+    @GetMapping
+    public ResponseEntity<List<UserDto>> getAllUser(@RequestParam(required = false) Integer after,
+                                                    @RequestParam(defaultValue = "" + UserService.DEFAULT_PAGE_LIMIT) int limit) {
+        if (limit < 1 || limit > UserService.MAX_PAGE_LIMIT) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            List<UserDto> users = userService.getPage(after, limit);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (users.size() == limit) {
+                response.header(UserController.NEXT_CURSOR_HEADER, String.valueOf(users.get(users.size() - 1).getId()));
+            }
+            return response.body(users);
+        } catch (Exception e) {
+            errorMetrics.record("getAllUser", e);
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<UserDto>> searchUsers(@RequestParam(required = false) String namePrefix,
+                                                     @RequestParam(required = false) Integer minAge,
+                                                     @RequestParam(required = false) Integer maxAge,
+                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+                                                     @RequestParam(defaultValue = "ID") UserSearchSort sort,
+                                                     @RequestParam(defaultValue = "false") boolean desc,
+                                                     @RequestParam(required = false) String cursor,
+                                                     @RequestParam(defaultValue = "" + UserService.DEFAULT_PAGE_LIMIT) int limit) {
+        UserSearchCursor after;
+        try {
+            after = UserSearchCursor.decode(cursor, sort, desc);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (limit < 1 || limit > UserService.MAX_PAGE_LIMIT) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            UserSearchCriteria criteria = new UserSearchCriteria();
+            criteria.setNamePrefix(namePrefix);
+            criteria.setMinAge(minAge);
+            criteria.setMaxAge(maxAge);
+            criteria.setCreatedFrom(createdFrom);
+            criteria.setCreatedTo(createdTo);
+            criteria.setSort(sort);
+            criteria.setDescending(desc);
+            List<UserDto> users = userService.search(criteria, after, limit);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (users.size() == limit) {
+                response.header(UserController.NEXT_CURSOR_HEADER, UserSearchCursor.after(sort, desc, users.get(users.size() - 1)).encode());
+            }
+            return response.body(users);
+        } catch (Exception e) {
+            errorMetrics.record("searchUsers", e);
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    @GetMapping("/{email}")
+    public ResponseEntity<UserDto> getByEmail(@PathVariable String email,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                              HttpServletResponse response) {
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        MediaType representation = UserETag.representation(accept);
+        try {
+            return userService.getByEmail(email)
+                    .map(user -> ResponseEntity.ok().eTag(UserETag.of(user).of(representation)).contentType(representation)
+                            .body(mappingUtils.mapToUserDto(user)))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (Exception e) {
+            errorMetrics.record("getByEmail", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    @PostMapping
+    public ResponseEntity<UserDto> createUser(@RequestBody UserDto userDto) {
+        try {
+            UserEntity entity = mappingUtils.mapToUSerEntity(userDto);
+            userService.save(entity);
+            return ResponseEntity.status(201).body(mappingUtils.mapToUserDto(entity));
+        } catch (UserAlreadyExistsException e) {
+            errorMetrics.record("createUser", e);
+            return ResponseEntity.status(409).body(null);
+        } catch (Exception e) {
+            errorMetrics.record("createUser", e);
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    @PostMapping("/{email}")
+    public ResponseEntity<UserDto> updateUser(@PathVariable String email, @RequestBody UserDto userDto,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                              HttpServletResponse response) {
+        UserETag expected;
+        try {
+            expected = UserETag.parse(ifMatch);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+        try {
+            Optional<UserEntity> update = userService.updateUserByEmail(email, mappingUtils.mapToUSerEntity(userDto), expected);
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            MediaType representation = UserETag.representation(accept);
+            return update.map(updateEntity -> ResponseEntity.ok().eTag(UserETag.of(updateEntity).of(representation))
+                    .contentType(representation).body(mappingUtils.mapToUserDto(updateEntity)))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (UserVersionConflictException e) {
+            errorMetrics.record("updateUser", e);
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        } catch (UserAlreadyExistsException e) {
+            errorMetrics.record("updateUser", e);
+            return ResponseEntity.status(409).body(null);
+        } catch (Exception e) {
+            errorMetrics.record("updateUser", e);
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    @DeleteMapping("/{email}")
+    public ResponseEntity<Void> deleteUser(@PathVariable String email) {
+        try {
+            return userService.deleteByEmail(email) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            errorMetrics.record("deleteUser", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+}
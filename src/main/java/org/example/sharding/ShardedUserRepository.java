@@ -0,0 +1,346 @@
+package org.example.sharding;
+
+import jakarta.annotation.PreDestroy;
+import org.example.config.UserShardingProperties;
+import org.example.dto.UserDto;
+import org.example.dto.UserSearchCriteria;
+import org.example.dto.UserSearchSort;
+import org.example.entities.UserEntity;
+import org.example.utils.UserSearchCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Users spread over the shards of {@link UserShardRouter}. Lookups and changes of one email touch only the shard
+ * that owns it (two while a shard is being added); pages and searches run the same keyset query on every shard in
+ * parallel, each limited to the page size, and merge the results in the requested order. Emails are expected
+ * normalized.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "users.sharding", name = "enabled", havingValue = "true")
+public class ShardedUserRepository {
+    static final int MAX_ATTEMPTS = 5;
+
+    private static final String COLUMNS = "id, name, email, age, created_at, version";
+    private static final String INSERT = "insert into users (" + COLUMNS + ") values (:id, :name, :email, :age, :createdAt, :version)";
+    private static final RowMapper<UserEntity> USER_MAPPER = (rs, rowNum) -> {
+        UserEntity user = new UserEntity(rs.getString("name"), rs.getString("email"), (Integer) rs.getObject("age"));
+        user.setId(rs.getInt("id"));
+        user.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+        user.setVersion(rs.getLong("version"));
+        return user;
+    };
+    private static final RowMapper<UserDto> DTO_MAPPER = (rs, rowNum) -> new UserDto(rs.getInt("id"), rs.getString("name"),
+            rs.getString("email"), (Integer) rs.getObject("age"), rs.getObject("created_at", LocalDateTime.class));
+
+    private final UserShardRouter router;
+    private final int maxShards;
+    private final Duration queryTimeout;
+    private final ExecutorService scatter;
+
+    @Autowired
+    public ShardedUserRepository(UserShardRouter router, UserShardingProperties properties) {
+        this(router, properties, newScatter(properties));
+    }
+
+    ShardedUserRepository(UserShardRouter router, UserShardingProperties properties, ExecutorService scatter) {
+        this.router = router;
+        this.maxShards = properties.getMaxShards();
+        this.queryTimeout = properties.getQueryTimeout();
+        this.scatter = scatter;
+    }
+
+    private static ExecutorService newScatter(UserShardingProperties properties) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("user-shard-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(properties.getScatterThreads(), threadFactory);
+    }
+
+    public Optional<UserEntity> findByEmail(String email) {
+        return locateUser(email).map(Located::user);
+    }
+
+    /**
+     * Inserts into the owner of the email with a new id from that shard's sequence.
+     *
+     * @throws DuplicateKeyException if a user with the email exists on any shard that may hold it
+     */
+    public UserEntity insert(UserEntity user) {
+        List<UserShard> shards = router.locate(user.getEmail());
+        UserShard owner = shards.get(0);
+        checkEmailFree(user.getEmail(), owner);
+        Long next = owner.getJdbc().getJdbcTemplate().queryForObject("select nextval('users_shard_id_seq')", Long.class);
+        user.setId(Math.toIntExact(next * maxShards + owner.getNumber()));
+        user.setCreatedAt(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        user.setVersion(0L);
+        owner.getJdbc().update(INSERT, params(user));
+        return user;
+    }
+
+    /**
+     * Changes name, email and age of the user with {@code email}. When the new email belongs to another shard, the
+     * row is inserted there under the same id and then deleted here, each in its own transaction; the delete only
+     * succeeds for the version that was copied, otherwise the copy is undone and the update starts over.
+     *
+     * @param precondition gets the current row before anything is written and may throw to refuse the change
+     * @throws DuplicateKeyException if the new email is taken
+     */
+    public Optional<UserEntity> updateByEmail(String email, String newEmail, String name, Integer age,
+                                              Consumer<UserEntity> precondition) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            Optional<Located> found = locateUser(email);
+            if (found.isEmpty()) {
+                return Optional.empty();
+            }
+            UserShard shard = found.get().shard();
+            UserEntity current = found.get().user();
+            precondition.accept(current);
+            UserEntity updated = new UserEntity(name, newEmail, age);
+            updated.setId(current.getId());
+            updated.setCreatedAt(current.getCreatedAt());
+            updated.setVersion(current.getVersion() + 1);
+
+            UserShard destination = router.owner(newEmail);
+            if (!newEmail.equals(email)) {
+                checkEmailFree(newEmail, destination);
+            }
+            if (destination == shard) {
+                int rows = shard.getJdbc().update("update users set name = :name, email = :email, age = :age, "
+                        + "version = :version where id = :id and version = :version - 1", params(updated));
+                if (rows == 1) {
+                    return Optional.of(updated);
+                }
+            } else {
+                try {
+                    destination.getJdbc().update(INSERT, params(updated));
+                } catch (DuplicateKeyException e) {
+                    if (findById(destination, updated.getId()).isPresent()) {
+                        // the rebalancer copied the row there first; the next attempt finds and updates that copy
+                        continue;
+                    }
+                    throw e;
+                }
+                if (deleteVersion(shard, current) || findById(shard, current.getId()).isEmpty()) {
+                    // deleted here by us, or by the rebalancer after it saw our newer copy
+                    return Optional.of(updated);
+                }
+                deleteVersion(destination, updated);
+            }
+        }
+        throw new IllegalStateException("Пользователь с email " + email + " изменялся конкурентно " + MAX_ATTEMPTS + " раз подряд");
+    }
+
+    public boolean deleteByEmail(String email) {
+        boolean deleted = false;
+        for (UserShard shard : router.locate(email)) {
+            deleted |= shard.getJdbc().update("delete from users where email = :email",
+                    new MapSqlParameterSource("email", email)) > 0;
+        }
+        return deleted;
+    }
+
+    public List<UserDto> findPage(int after, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource("after", after).addValue("limit", limit);
+        return merge(scatter(shard -> shard.getJdbc().query("select id, name, email, age, created_at from users "
+                + "where id > :after order by id limit :limit", params, DTO_MAPPER)), Comparator.comparing(UserDto::getId), limit);
+    }
+
+    /** The query of {@code UserSearchRepositoryImpl} on every shard, merged by the same sort key. */
+    public List<UserDto> search(UserSearchCriteria criteria, UserSearchCursor after, int limit) {
+        StringBuilder sql = new StringBuilder("select id, name, email, age, created_at from users where 1 = 1");
+        MapSqlParameterSource params = new MapSqlParameterSource("limit", limit);
+        if (criteria.getNamePrefix() != null && !criteria.getNamePrefix().isEmpty()) {
+            sql.append(" and name like :namePrefix escape '\\'");
+            params.addValue("namePrefix", escapeLike(criteria.getNamePrefix()) + "%");
+        }
+        if (criteria.getMinAge() != null) {
+            sql.append(" and age >= :minAge");
+            params.addValue("minAge", criteria.getMinAge());
+        }
+        if (criteria.getMaxAge() != null) {
+            sql.append(" and age <= :maxAge");
+            params.addValue("maxAge", criteria.getMaxAge());
+        }
+        if (criteria.getCreatedFrom() != null) {
+            sql.append(" and created_at >= :createdFrom");
+            params.addValue("createdFrom", criteria.getCreatedFrom());
+        }
+        if (criteria.getCreatedTo() != null) {
+            sql.append(" and created_at < :createdTo");
+            params.addValue("createdTo", criteria.getCreatedTo());
+        }
+
+        boolean byCreatedAt = criteria.getSort() == UserSearchSort.CREATED_AT;
+        String direction = criteria.isDescending() ? " desc" : "";
+        String before = criteria.isDescending() ? "<" : ">";
+        if (after != null) {
+            params.addValue("afterId", after.getId());
+            if (byCreatedAt) {
+                sql.append(" and created_at ").append(before).append("= :afterCreatedAt and (created_at ")
+                        .append(before).append(" :afterCreatedAt or id ").append(before).append(" :afterId)");
+                params.addValue("afterCreatedAt", after.getCreatedAt());
+            } else {
+                sql.append(" and id ").append(before).append(" :afterId");
+            }
+        }
+        sql.append(" order by ").append(byCreatedAt ? "created_at" + direction + ", " : "").append("id").append(direction)
+                .append(" limit :limit");
+
+        Comparator<UserDto> order = byCreatedAt
+                ? Comparator.comparing(UserDto::getCreatedAt).thenComparing(UserDto::getId)
+                : Comparator.comparing(UserDto::getId);
+        String query = sql.toString();
+        return merge(scatter(shard -> shard.getJdbc().query(query, params, DTO_MAPPER)),
+                criteria.isDescending() ? order.reversed() : order, limit);
+    }
+
+    /** Users of one shard with {@code id > afterId} in id order, for the rebalancer. */
+    List<UserEntity> scan(UserShard shard, int afterId, int limit) {
+        return shard.getJdbc().query("select " + COLUMNS + " from users where id > :after order by id limit :limit",
+                new MapSqlParameterSource("after", afterId).addValue("limit", limit), USER_MAPPER);
+    }
+
+    /**
+     * Copies the user to {@code to} and deletes it from {@code from} if it is unchanged there; a user changed in the
+     * meantime is copied again. An older copy on {@code to} is overwritten, a newer one (written by an update that
+     * already routes to {@code to}) is kept.
+     *
+     * @return false if the user disappeared from {@code from} before it could be moved
+     */
+    boolean move(UserShard from, UserShard to, UserEntity user) {
+        UserEntity current = user;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            UserEntity copy = current;
+            to.getTx().executeWithoutResult(status -> {
+                if (to.getJdbc().update("update users set name = :name, email = :email, age = :age, created_at = :createdAt, "
+                        + "version = :version where id = :id and version < :version", params(copy)) == 0
+                        && findById(to, copy.getId()).isEmpty()) {
+                    to.getJdbc().update(INSERT, params(copy));
+                }
+            });
+            if (deleteVersion(from, current)) {
+                return true;
+            }
+            Optional<UserEntity> changed = findById(from, current.getId());
+            if (changed.isEmpty()) {
+                // deleted, or moved by an email change: only our own copy has to go
+                deleteVersion(to, current);
+                return false;
+            }
+            current = changed.get();
+        }
+        throw new IllegalStateException("Пользователь " + user.getId() + " изменялся конкурентно " + MAX_ATTEMPTS + " раз подряд");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scatter.shutdownNow();
+    }
+
+    private Optional<Located> locateUser(String email) {
+        for (UserShard shard : router.locate(email)) {
+            List<UserEntity> users = shard.getJdbc().query("select " + COLUMNS + " from users where email = :email",
+                    new MapSqlParameterSource("email", email), USER_MAPPER);
+            if (!users.isEmpty()) {
+                return Optional.of(new Located(shard, users.get(0)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** The unique constraint only covers one shard; while a shard is being added the email may still be on another. */
+    private void checkEmailFree(String email, UserShard owner) {
+        for (UserShard shard : router.locate(email)) {
+            if (shard != owner && !shard.getJdbc().queryForList("select id from users where email = :email",
+                    new MapSqlParameterSource("email", email), Integer.class).isEmpty()) {
+                throw new DuplicateKeyException("Email " + email + " уже занят на шарде " + shard.getName());
+            }
+        }
+    }
+
+    private Optional<UserEntity> findById(UserShard shard, int id) {
+        return shard.getJdbc().query("select " + COLUMNS + " from users where id = :id",
+                new MapSqlParameterSource("id", id), USER_MAPPER).stream().findFirst();
+    }
+
+    private boolean deleteVersion(UserShard shard, UserEntity user) {
+        return shard.getJdbc().update("delete from users where id = :id and version = :version",
+                new MapSqlParameterSource("id", user.getId()).addValue("version", user.getVersion())) == 1;
+    }
+
+    private List<List<UserDto>> scatter(Function<UserShard, List<UserDto>> query) {
+        List<UserShard> shards = router.members();
+        List<CompletableFuture<List<UserDto>>> futures = shards.stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> query.apply(shard), scatter))
+                .toList();
+        long deadline = System.nanoTime() + queryTimeout.toNanos();
+        List<List<UserDto>> results = new ArrayList<>(shards.size());
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Ошибка при запросе к шарду " + shards.get(i).getName(), e.getCause());
+                } catch (TimeoutException e) {
+                    throw new IllegalStateException("Шард " + shards.get(i).getName() + " не ответил за " + queryTimeout, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Опрос шардов прерван", e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        return results;
+    }
+
+    /** A user that is being moved can be on two shards at once; the first copy in merge order wins. */
+    private static List<UserDto> merge(List<List<UserDto>> pages, Comparator<UserDto> order, int limit) {
+        Set<Integer> seen = new HashSet<>();
+        return pages.stream()
+                .flatMap(List::stream)
+                .sorted(order)
+                .filter(user -> seen.add(user.getId()))
+                .limit(limit)
+                .toList();
+    }
+
+    private static MapSqlParameterSource params(UserEntity user) {
+        return new MapSqlParameterSource("id", user.getId())
+                .addValue("name", user.getName())
+                .addValue("email", user.getEmail())
+                .addValue("age", user.getAge())
+                .addValue("createdAt", user.getCreatedAt())
+                .addValue("version", user.getVersion());
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private record Located(UserShard shard, UserEntity user) {
+    }
+}
@@ -0,0 +1,122 @@
+package org.example.sharding;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.AllArgsConstructor;
+import org.example.dto.UserDto;
+import org.example.dto.UserSearchCriteria;
+import org.example.entities.UserEntity;
+import org.example.exceptions.UserAlreadyExistsException;
+import org.example.exceptions.UserVersionConflictException;
+import org.example.services.UserService;
+import org.example.utils.EmailNormalizer;
+import org.example.utils.UserETag;
+import org.example.utils.UserSearchCursor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * {@link UserService} for sharded mode. Changes are not written to the outbox and are not cached: both live in the
+ * primary database, which a shard transaction cannot include.
+ */
+@Service
+@AllArgsConstructor
+@ConditionalOnProperty(prefix = "users.sharding", name = "enabled", havingValue = "true")
+@Timed(value = "users.sharded", percentiles = {0.5, 0.95, 0.99})
+public class ShardedUserService {
+    private final ShardedUserRepository userRepository;
+
+    public void save(UserEntity userEntity) {
+        try {
+            if (userEntity == null) {
+                throw new IllegalArgumentException("UserEntity не может быть null");
+            }
+            userEntity.setEmail(EmailNormalizer.normalize(userEntity.getEmail()));
+            userRepository.insert(userEntity);
+        } catch (DuplicateKeyException e) {
+            throw new UserAlreadyExistsException(userEntity.getEmail(), e);
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при сохранении пользователя", e);
+        }
+    }
+
+    public Optional<UserEntity> getByEmail(String email) {
+        try {
+            if (email == null || email.isEmpty()) {
+                throw new IllegalArgumentException("Email не может быть null");
+            }
+            return userRepository.findByEmail(EmailNormalizer.normalize(email));
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при получении пользователя по email: " + email, e);
+        }
+    }
+
+    public List<UserDto> getPage(Integer after, int limit) {
+        try {
+            if (limit < 1 || limit > UserService.MAX_PAGE_LIMIT) {
+                throw new IllegalArgumentException("Limit должен быть в диапазоне от 1 до " + UserService.MAX_PAGE_LIMIT);
+            }
+            return userRepository.findPage(after == null ? 0 : after, limit);
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при получении страницы пользователей после id: " + after, e);
+        }
+    }
+
+    public List<UserDto> search(UserSearchCriteria criteria, UserSearchCursor after, int limit) {
+        try {
+            if (criteria == null) {
+                throw new IllegalArgumentException("Criteria не может быть null");
+            }
+            if (limit < 1 || limit > UserService.MAX_PAGE_LIMIT) {
+                throw new IllegalArgumentException("Limit должен быть в диапазоне от 1 до " + UserService.MAX_PAGE_LIMIT);
+            }
+            return userRepository.search(criteria, after, limit);
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при поиске пользователей", e);
+        }
+    }
+
+    /**
+     * @param expected id and version the user must still have, or {@code null}
+     * @throws UserVersionConflictException if the user exists with another id or version
+     */
+    public Optional<UserEntity> updateUserByEmail(String email, UserEntity newData, UserETag expected) {
+        try {
+            if (email == null || email.isEmpty()) {
+                throw new IllegalArgumentException("Email не может быть null");
+            }
+            if (newData == null) {
+                throw new IllegalArgumentException("NewData не может быть null");
+            }
+            String oldEmail = EmailNormalizer.normalize(email);
+            String newEmail = EmailNormalizer.normalize(newData.getEmail());
+            return userRepository.updateByEmail(oldEmail, newEmail, newData.getName(), newData.getAge(), current -> {
+                if (expected != null && (!Objects.equals(current.getId(), expected.getId())
+                        || !Objects.equals(current.getVersion(), expected.getVersion()))) {
+                    throw new UserVersionConflictException(oldEmail);
+                }
+            });
+        } catch (DuplicateKeyException e) {
+            throw new UserAlreadyExistsException(EmailNormalizer.normalize(newData.getEmail()), e);
+        } catch (UserVersionConflictException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при обновлении пользователя с email: " + email, e);
+        }
+    }
+
+    public boolean deleteByEmail(String email) {
+        try {
+            if (email == null || email.isEmpty()) {
+                throw new IllegalArgumentException("Email не может быть null");
+            }
+            return userRepository.deleteByEmail(EmailNormalizer.normalize(email));
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при удалении пользователя с email: " + email, e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.sharding;
+
+import lombok.AllArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code /actuator/sharding}: shows which shards own emails and the progress of the last rebalance;
+ * {@code POST /actuator/sharding/{name}} starts adding a configured inactive shard. The write operation is off
+ * unless {@code management.endpoint.sharding.access=unrestricted}.
+ */
+@Component
+@Endpoint(id = "sharding")
+@AllArgsConstructor
+@ConditionalOnProperty(prefix = "users.sharding", name = "enabled", havingValue = "true")
+public class ShardingEndpoint {
+    private final UserShardRouter router;
+    private final UserShardRebalancer rebalancer;
+
+    @ReadOperation
+    public Map<String, Object> sharding() {
+        UserShardRouter.Layout layout = router.getLayout();
+        return Map.of(
+                "shards", router.getShardNames(),
+                "active", layout.ring().getNodes(),
+                "target", layout.target() == null ? List.of() : layout.target().getNodes(),
+                "rebalance", rebalancer.getStatus());
+    }
+
+    @WriteOperation
+    public UserShardRebalancer.Status addShard(@Selector String name) {
+        return rebalancer.addShard(name);
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Getter;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/** One shard database with its own pool and transactions; a transaction never spans two shards. */
+@Getter
+public class UserShard {
+    private final String name;
+    private final int number;
+    private final HikariDataSource dataSource;
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+
+    UserShard(String name, int number, HikariDataSource dataSource) {
+        this.name = name;
+        this.number = number;
+        this.dataSource = dataSource;
+        this.jdbc = new NamedParameterJdbcTemplate(dataSource);
+        this.tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.sharding;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.UserShardingProperties;
+import org.example.entities.UserEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adds a configured, inactive shard. The router first switches to dual routing (see {@link UserShardRouter}) and
+ * stores it in {@code users_shard_layout}; after two {@code users.sharding.layout-refresh} intervals every instance
+ * routes that way too. Then every active shard is scanned in id order and each user whose email now belongs
+ * elsewhere is moved there. Scans repeat until one finds nothing left to move, because users updated behind the scan
+ * could still be in the wrong place, including users written by instances that had not yet picked up the layout;
+ * then the new ring replaces the old one for every instance. The service keeps serving reads and writes all along.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "users.sharding", name = "enabled", havingValue = "true")
+public class UserShardRebalancer {
+    static final int MAX_PASSES = 10;
+
+    private final UserShardRouter router;
+    private final ShardedUserRepository repository;
+    private final int batchSize;
+    private final Duration propagation;
+    private final ExecutorService worker;
+    private final AtomicLong moved = new AtomicLong();
+    private volatile Status status = new Status(State.IDLE, null, 0, null, null, null);
+
+    @Autowired
+    public UserShardRebalancer(UserShardRouter router, ShardedUserRepository repository, UserShardingProperties properties) {
+        this(router, repository, properties, newWorker());
+    }
+
+    UserShardRebalancer(UserShardRouter router, ShardedUserRepository repository, UserShardingProperties properties,
+                        ExecutorService worker) {
+        this.router = router;
+        this.repository = repository;
+        this.batchSize = properties.getRebalanceBatchSize();
+        this.propagation = properties.getLayoutRefresh().multipliedBy(2);
+        this.worker = worker;
+    }
+
+    private static ExecutorService newWorker() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("user-shard-rebalance-");
+        threadFactory.setDaemon(true);
+        return Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    /**
+     * Starts adding the shard in the background. A failed rebalance stays in dual routing and is resumed by adding
+     * the same shard again.
+     *
+     * @throws IllegalArgumentException if the shard is not configured
+     * @throws IllegalStateException if it is already active, another rebalance is running or another instance has
+     *                               just changed the layout
+     */
+    public synchronized Status addShard(String name) {
+        if (status.state() == State.RUNNING) {
+            throw new IllegalStateException("Уже идет добавление шарда " + status.shard());
+        }
+        router.beginRebalance(name);
+        moved.set(0);
+        status = new Status(State.RUNNING, name, 0, Instant.now(), null, null);
+        worker.execute(() -> migrate(name));
+        return status;
+    }
+
+    public Status getStatus() {
+        Status current = status;
+        return current.state() == State.RUNNING
+                ? new Status(current.state(), current.shard(), moved.get(), current.startedAt(), null, null)
+                : current;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    private void migrate(String name) {
+        Instant startedAt = status.startedAt();
+        try {
+            Thread.sleep(propagation.toMillis());
+            log.info("Добавление шарда {}: перенос пользователей", name);
+            for (int pass = 1; ; pass++) {
+                if (movePass() == 0) {
+                    break;
+                }
+                if (pass == MAX_PASSES) {
+                    throw new IllegalStateException("Пользователи продолжают оказываться не на своих шардах после "
+                            + MAX_PASSES + " проходов");
+                }
+            }
+            router.completeRebalance();
+            status = new Status(State.DONE, name, moved.get(), startedAt, Instant.now(), null);
+            log.info("Шард {} добавлен, перенесено пользователей: {}", name, moved.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = new Status(State.FAILED, name, moved.get(), startedAt, Instant.now(), "Прервано");
+        } catch (RuntimeException e) {
+            status = new Status(State.FAILED, name, moved.get(), startedAt, Instant.now(), e.getMessage());
+            log.error("Ошибка при добавлении шарда {}", name, e);
+        }
+    }
+
+    /** One scan of every shard of the current ring; returns how many users were in the wrong place. */
+    private long movePass() {
+        UserShardRouter.Layout layout = router.getLayout();
+        long misplaced = 0;
+        for (String source : layout.ring().getNodes()) {
+            UserShard from = router.get(source);
+            int after = 0;
+            List<UserEntity> users;
+            do {
+                users = repository.scan(from, after, batchSize);
+                for (UserEntity user : users) {
+                    String owner = layout.target().nodeFor(user.getEmail());
+                    if (!owner.equals(source)) {
+                        misplaced++;
+                        if (repository.move(from, router.get(owner), user)) {
+                            moved.incrementAndGet();
+                        }
+                    }
+                }
+                if (!users.isEmpty()) {
+                    after = users.get(users.size() - 1).getId();
+                }
+            } while (users.size() == batchSize);
+        }
+        return misplaced;
+    }
+
+    public enum State {
+        IDLE, RUNNING, DONE, FAILED
+    }
+
+    public record Status(State state, String shard, long moved, Instant startedAt, Instant finishedAt, String error) {
+    }
+}
@@ -0,0 +1,226 @@
+package org.example.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.UserShardingProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Owns the shard pools and decides which shard an email lives on. Normally that is the owner on the ring of the
+ * active shards. While a shard is being added there is also a target ring that includes it: new rows go to the
+ * target owner, and reads and changes look at the target owner first and then at the current one, so a user is
+ * found wherever the rebalancer has got to.
+ * <p>
+ * The layout is shared by every instance through the single-row table {@code users_shard_layout} in the main
+ * database. The first instance seeds it from the {@code active} flags of the shards; afterwards the table decides,
+ * every router reloads it each {@code users.sharding.layout-refresh}, and a rebalance changes it only if nobody else
+ * has since the router last read it.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "users.sharding", name = "enabled", havingValue = "true")
+public class UserShardRouter {
+    public static final String SCHEMA = "schema-shard.sql";
+
+    private final Map<String, UserShard> shards = new LinkedHashMap<>();
+    private final JdbcTemplate jdbcTemplate;
+    private final int virtualNodes;
+    private volatile Layout layout;
+
+    public UserShardRouter(UserShardingProperties properties, JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.virtualNodes = properties.getVirtualNodes();
+        Set<Integer> numbers = new HashSet<>();
+        List<String> active = new ArrayList<>();
+        try {
+            properties.getShards().forEach((name, shard) -> {
+                if (shard.getNumber() < 0 || shard.getNumber() >= properties.getMaxShards() || !numbers.add(shard.getNumber())) {
+                    throw new IllegalStateException("Номер шарда " + name + " должен быть уникальным и меньше "
+                            + properties.getMaxShards() + ": " + shard.getNumber());
+                }
+                UserShard userShard = new UserShard(name, shard.getNumber(), newDataSource(name, shard));
+                shards.put(name, userShard);
+                if (properties.isInitializeSchema()) {
+                    new ResourceDatabasePopulator(new ClassPathResource(SCHEMA)).execute(userShard.getDataSource());
+                }
+                if (shard.isActive()) {
+                    active.add(name);
+                }
+            });
+            this.layout = loadOrSeed(active);
+            List<UserShard> members = members();
+            for (UserShard shard : shards.values()) {
+                if (!members.contains(shard) && hasUsers(shard)) {
+                    // its users would be invisible
+                    throw new IllegalStateException("Шард " + shard.getName() + " не входит в users_shard_layout, но содержит пользователей");
+                }
+            }
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+        log.info("Шардирование пользователей: активные шарды {}", layout.ring().getNodes());
+    }
+
+    /** The shard a new user with this email is written to. */
+    public UserShard owner(String email) {
+        Layout current = layout;
+        return shards.get((current.target() != null ? current.target() : current.ring()).nodeFor(email));
+    }
+
+    /** The shards that may hold this email, the one it ends up on first. */
+    public List<UserShard> locate(String email) {
+        Layout current = layout;
+        UserShard owner = shards.get(current.ring().nodeFor(email));
+        if (current.target() == null) {
+            return List.of(owner);
+        }
+        UserShard target = shards.get(current.target().nodeFor(email));
+        return target == owner ? List.of(owner) : List.of(target, owner);
+    }
+
+    /** Every shard that may hold users: during a rebalance including the one being added. */
+    public List<UserShard> members() {
+        Layout current = layout;
+        Set<String> names = new LinkedHashSet<>(current.ring().getNodes());
+        if (current.target() != null) {
+            names.addAll(current.target().getNodes());
+        }
+        return names.stream().map(shards::get).toList();
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    public UserShard get(String name) {
+        return shards.get(name);
+    }
+
+    public Set<String> getShardNames() {
+        return shards.keySet();
+    }
+
+    /** Picks up a layout changed by another instance. */
+    @Scheduled(fixedDelayString = "${users.sharding.layout-refresh:PT1S}")
+    public void refresh() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            log.warn("Ошибка при чтении users_shard_layout", e);
+        }
+    }
+
+    private synchronized void reload() {
+        Long version = jdbcTemplate.queryForObject("select version from users_shard_layout where id = 1", Long.class);
+        if (version != null && version != layout.version()) {
+            Layout loaded = load();
+            log.info("Раскладка шардов изменилась: активные {}, добавляемые {}", loaded.ring().getNodes(),
+                    loaded.target() == null ? List.of() : loaded.target().getNodes());
+            layout = loaded;
+        }
+    }
+
+    /** Switches every instance to dual routing with the shard added; resuming the same shard keeps the layout. */
+    synchronized void beginRebalance(String name) {
+        if (!shards.containsKey(name)) {
+            throw new IllegalArgumentException("Шард " + name + " не настроен в users.sharding.shards");
+        }
+        reload();
+        if (layout.ring().getNodes().contains(name)) {
+            throw new IllegalStateException("Шард " + name + " уже активен");
+        }
+        if (layout.target() != null) {
+            if (!layout.target().getNodes().contains(name)) {
+                throw new IllegalStateException("Уже идет добавление шарда");
+            }
+            return;
+        }
+        store(layout.ring(), layout.ring().with(name));
+    }
+
+    synchronized void completeRebalance() {
+        if (layout.target() != null) {
+            store(layout.target(), null);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        shards.values().forEach(shard -> shard.getDataSource().close());
+    }
+
+    private Layout loadOrSeed(List<String> active) {
+        try {
+            jdbcTemplate.update("insert into users_shard_layout (id, version, ring, target) "
+                    + "select 1, 0, ?, null where not exists (select 1 from users_shard_layout where id = 1)", String.join(",", active));
+        } catch (DuplicateKeyException e) {
+            // seeded by an instance starting at the same time
+        }
+        return load();
+    }
+
+    private Layout load() {
+        return jdbcTemplate.queryForObject("select version, ring, target from users_shard_layout where id = 1",
+                (rs, rowNum) -> new Layout(ring(rs.getString("ring")), rs.getString("target") == null ? null : ring(rs.getString("target")),
+                        rs.getLong("version")));
+    }
+
+    private ConsistentHashRing ring(String names) {
+        List<String> nodes = Arrays.asList(names.split(","));
+        for (String node : nodes) {
+            if (!shards.containsKey(node)) {
+                throw new IllegalStateException("Шард " + node + " из users_shard_layout не настроен в users.sharding.shards");
+            }
+        }
+        return new ConsistentHashRing(nodes, virtualNodes);
+    }
+
+    /** Writes the layout unless another instance changed it since it was read. */
+    private void store(ConsistentHashRing ring, ConsistentHashRing target) {
+        long version = layout.version();
+        int rows = jdbcTemplate.update("update users_shard_layout set version = ?, ring = ?, target = ? where id = 1 and version = ?",
+                version + 1, String.join(",", ring.getNodes()), target == null ? null : String.join(",", target.getNodes()), version);
+        if (rows != 1) {
+            throw new IllegalStateException("Раскладку шардов изменил другой экземпляр");
+        }
+        layout = new Layout(ring, target, version + 1);
+    }
+
+    private static HikariDataSource newDataSource(String name, UserShardingProperties.Shard shard) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("shard-" + name);
+        dataSource.setJdbcUrl(shard.getJdbcUrl());
+        dataSource.setUsername(shard.getUsername());
+        dataSource.setPassword(shard.getPassword());
+        dataSource.setMaximumPoolSize(shard.getMaximumPoolSize());
+        return dataSource;
+    }
+
+    private static boolean hasUsers(UserShard shard) {
+        return !shard.getJdbc().getJdbcTemplate().queryForList("select id from users limit 1", Integer.class).isEmpty();
+    }
+
+    /**
+     * {@code ring} owns the emails; {@code target}, while a shard is being added, is the ring after the rebalance.
+     * {@code version} grows with every change stored in {@code users_shard_layout}.
+     */
+    public record Layout(ConsistentHashRing ring, ConsistentHashRing target, long version) {
+    }
+}
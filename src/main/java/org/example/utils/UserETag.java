@@ -0,0 +1,113 @@
+package org.example.utils;
+
+import lombok.Getter;
+import org.example.entities.UserEntity;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Strong entity tag of a single user, {@code "<id>-<version>"}. The version is the JPA {@code @Version} column,
+ * so the tag changes with every update and can be sent back in {@code If-Match}. A binary representation of the
+ * same version gets a tag of its own, {@code "<id>-<version>-cbor"} or {@code "<id>-<version>-smile"}, because a
+ * strong tag promises identical bytes.
+ */
+@Getter
+public final class UserETag {
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+    private static final List<MediaType> REPRESENTATIONS = List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, SMILE);
+
+    private final Integer id;
+    private final Long version;
+
+    private UserETag(Integer id, Long version) {
+        this.id = id;
+        this.version = version;
+    }
+
+    public static UserETag of(UserEntity user) {
+        return new UserETag(user.getId(), user.getVersion() == null ? 0L : user.getVersion());
+    }
+
+    /**
+     * @return weak tag of the collection for a table-wide change marker. It is weak because the same marker stands
+     * for every representation of the list (JSON, CBOR, Smile, NDJSON, CBOR sequence), which are equivalent but not
+     * byte-for-byte equal; responses carrying it must vary by {@code Accept}.
+     */
+    public static String collection(long changeMarker) {
+        return "W/\"users-" + changeMarker + "\"";
+    }
+
+    /**
+     * @return the tag, or {@code null} for a missing header and {@code *}
+     * @throws IllegalArgumentException for weak or malformed tags, which can never match
+     */
+    public static UserETag parse(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        int dash = tag.indexOf('-');
+        if (tag.length() < 5 || !tag.startsWith("\"") || !tag.endsWith("\"") || dash < 0) {
+            throw new IllegalArgumentException("Некорректный ETag: " + ifMatch);
+        }
+        String version = tag.substring(dash + 1, tag.length() - 1);
+        int suffix = version.indexOf('-');
+        if (suffix >= 0) {
+            String representation = version.substring(suffix + 1);
+            if (!representation.equals("cbor") && !representation.equals("smile")) {
+                throw new IllegalArgumentException("Некорректный ETag: " + ifMatch);
+            }
+            // every representation of a version names the same state
+            version = version.substring(0, suffix);
+        }
+        try {
+            return new UserETag(Integer.valueOf(tag.substring(1, dash)), Long.valueOf(version));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректный ETag: " + ifMatch, e);
+        }
+    }
+
+    /** @return the tag of the user in {@code representation}: JSON keeps the plain tag, CBOR and Smile add a suffix */
+    public String of(MediaType representation) {
+        String suffix = suffix(representation);
+        return suffix == null ? toString() : "\"" + id + "-" + version + "-" + suffix + "\"";
+    }
+
+    /**
+     * @return the format a single user is written in for this {@code Accept}: the most preferred of JSON, CBOR and
+     * Smile, JSON when the header allows any. Controllers set it as the content type, so the body is always the
+     * representation its {@link #of(MediaType) tag} names.
+     */
+    public static MediaType representation(String accept) {
+        List<MediaType> accepted;
+        try {
+            accepted = accept == null || accept.isBlank() ? List.of(MediaType.ALL) : MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            accepted = List.of(MediaType.ALL);
+        }
+        return accepted.stream()
+                .filter(type -> type.getQualityValue() > 0)
+                .sorted(Comparator.comparingDouble(MediaType::getQualityValue).reversed())
+                .flatMap(type -> REPRESENTATIONS.stream().filter(type::includes))
+                .findFirst()
+                .orElse(MediaType.APPLICATION_JSON);
+    }
+
+    private static String suffix(MediaType representation) {
+        if (MediaType.APPLICATION_CBOR.isCompatibleWith(representation)) {
+            return "cbor";
+        }
+        if (SMILE.isCompatibleWith(representation)) {
+            return "smile";
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "\"" + id + "-" + version + "\"";
+    }
+}
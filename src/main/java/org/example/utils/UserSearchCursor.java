@@ -0,0 +1,64 @@
+package org.example.utils;
+
+import lombok.Getter;
+import org.example.dto.UserDto;
+import org.example.dto.UserSearchSort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Keyset position of a search page: the sort key and id of the last returned user. Clients get it as an opaque
+ * Base64 token and send it back unchanged; a token issued for another sort or direction is rejected, since its
+ * position would be read the wrong way round.
+ */
+@Getter
+public final class UserSearchCursor {
+    private static final String SEPARATOR = "|";
+
+    private static final String ASCENDING = "ASC";
+    private static final String DESCENDING = "DESC";
+
+    private final UserSearchSort sort;
+    private final boolean descending;
+    private final LocalDateTime createdAt;
+    private final Integer id;
+
+    private UserSearchCursor(UserSearchSort sort, boolean descending, LocalDateTime createdAt, Integer id) {
+        this.sort = sort;
+        this.descending = descending;
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    public static UserSearchCursor after(UserSearchSort sort, boolean descending, UserDto last) {
+        return new UserSearchCursor(sort, descending, sort == UserSearchSort.CREATED_AT ? last.getCreatedAt() : null, last.getId());
+    }
+
+    public static UserSearchCursor decode(String token, UserSearchSort sort, boolean descending) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|", -1);
+            if (parts.length != 4 || UserSearchSort.valueOf(parts[0]) != sort
+                    || !parts[1].equals(descending ? DESCENDING : ASCENDING)) {
+                throw new IllegalArgumentException("Курсор выдан для другой сортировки");
+            }
+            LocalDateTime createdAt = parts[2].isEmpty() ? null : LocalDateTime.parse(parts[2]);
+            if (sort == UserSearchSort.CREATED_AT && createdAt == null) {
+                throw new IllegalArgumentException("В курсоре нет created_at");
+            }
+            return new UserSearchCursor(sort, descending, createdAt, Integer.valueOf(parts[3]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Некорректный курсор: " + token, e);
+        }
+    }
+
+    public String encode() {
+        String value = sort.name() + SEPARATOR + (descending ? DESCENDING : ASCENDING) + SEPARATOR
+                + (createdAt == null ? "" : createdAt) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
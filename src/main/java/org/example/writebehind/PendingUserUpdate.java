@@ -0,0 +1,37 @@
+package org.example.writebehind;
+
+import org.example.entities.UserEntity;
+
+/**
+ * An accepted but not yet written update; {@code email} is normalized and identifies the user. {@code id} and
+ * {@code version} are the user's when the update was accepted, or {@code null} if there was no such user then (and
+ * in journals written before they were recorded); the update is only written while the user still has them. In
+ * the journal a {@code superseded} entry records that whatever was queued for the email before it must not be
+ * replayed.
+ */
+public record PendingUserUpdate(String email, String name, Integer age, Integer id, Long version, boolean superseded) {
+
+    public PendingUserUpdate(String email, String name, Integer age) {
+        this(email, name, age, null, null, false);
+    }
+
+    public PendingUserUpdate(String email, String name, Integer age, Integer id, Long version) {
+        this(email, name, age, id, version, false);
+    }
+
+    static PendingUserUpdate supersede(String email) {
+        return new PendingUserUpdate(email, null, null, null, null, true);
+    }
+
+    boolean isConditional() {
+        return version != null;
+    }
+
+    /** The new data; carries the accepted id and version for a conditional write. */
+    UserEntity toEntity() {
+        UserEntity entity = new UserEntity(name, email, age);
+        entity.setId(id);
+        entity.setVersion(version);
+        return entity;
+    }
+}
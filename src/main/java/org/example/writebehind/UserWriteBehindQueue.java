@@ -0,0 +1,410 @@
+package org.example.writebehind;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.UserWriteBehindProperties;
+import org.example.dto.UserEventDto;
+import org.example.entities.UserEntity;
+import org.example.entities.UserEventType;
+import org.example.exceptions.UserVersionConflictException;
+import org.example.services.UserService;
+import org.example.utils.EmailNormalizer;
+import org.example.utils.UserETag;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Write-behind for name/age updates ({@code users.write-behind.enabled}). Accepted updates wait in a bounded map
+ * per shard, keyed by normalized email, so a burst of writes to one user collapses into the last one. Each shard
+ * is flushed every {@code flush-interval} in batched transactions through {@link UserService#updateAllByEmail};
+ * a failed batch is retried one update at a time so a single stale or missing user does not block the rest.
+ * With {@code journal-dir} set, an update is appended to the shard's journal before it is acknowledged and
+ * replayed on the next start if the process dies before the flush. The shard lock only covers the append; the
+ * submitter waits for the {@code fsync} after releasing it, and one {@code fsync} acknowledges every update
+ * appended meanwhile.
+ * <p>
+ * A synchronous update or delete of a user supersedes what is queued for it. Every update carries the id and
+ * version the user had when it was accepted (one read from the primary per submit) and is only written while the
+ * user still has them, so a change committed meanwhile, while a flush is writing or by another instance, is never
+ * overwritten. Changes of this instance also drop the updates accepted before them from the queue once they commit,
+ * which saves the write.
+ */
+@Slf4j
+@Component
+public class UserWriteBehindQueue {
+    /** Set while a flush writes, so the events of its own updates do not supersede updates queued meanwhile. */
+    private static final ThreadLocal<Boolean> FLUSHING = ThreadLocal.withInitial(() -> false);
+
+    private final UserService userService;
+    private final UserWriteBehindProperties properties;
+    private final Shard[] shards;
+    private final ScheduledExecutorService flusher;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Counter accepted;
+    private final Counter coalesced;
+    private final Counter rejected;
+    private final Counter superseded;
+    private final Counter failed;
+    private final Timer flushTimer;
+
+    public UserWriteBehindQueue(UserService userService, UserWriteBehindProperties properties, ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry) throws IOException {
+        this.userService = userService;
+        this.properties = properties;
+        this.accepted = meterRegistry.counter("users.write_behind.accepted");
+        this.coalesced = meterRegistry.counter("users.write_behind.coalesced");
+        this.rejected = meterRegistry.counter("users.write_behind.rejected");
+        this.superseded = meterRegistry.counter("users.write_behind.superseded");
+        this.failed = meterRegistry.counter("users.write_behind.failed");
+        this.flushTimer = Timer.builder("users.write_behind.flush")
+                .description("Запись одной порции отложенных обновлений")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("users.write_behind.pending", pending, AtomicInteger::get)
+                .description("Принятые, но ещё не записанные обновления пользователей")
+                .register(meterRegistry);
+
+        if (!properties.isEnabled()) {
+            this.shards = new Shard[0];
+            this.flusher = null;
+            return;
+        }
+        int shardCapacity = (properties.getCapacity() + properties.getShards() - 1) / properties.getShards();
+        this.shards = new Shard[properties.getShards()];
+        for (int i = 0; i < shards.length; i++) {
+            UserWriteJournal journal = properties.getJournalDir() == null ? null
+                    : new UserWriteJournal(properties.getJournalDir(), i, properties.isJournalFsync(), objectMapper);
+            shards[i] = new Shard(shardCapacity, journal);
+            shards[i].recover();
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("user-write-behind-");
+        threadFactory.setDaemon(true);
+        this.flusher = Executors.newScheduledThreadPool(properties.getFlushThreads(), threadFactory);
+        long interval = properties.getFlushInterval().toNanos();
+        for (Shard shard : shards) {
+            flusher.scheduleWithFixedDelay(() -> flush(shard), interval, interval, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Queues a name/age update of the user with this email.
+     *
+     * @return {@code false} if the shard is full and the update was not accepted
+     */
+    public boolean submit(String email, String name, Integer age) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Отложенная запись выключена");
+        }
+        String key = EmailNormalizer.normalize(email);
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("Email не может быть пустым");
+        }
+        PendingUserUpdate update = userService.getTagByEmail(key)
+                .map(tag -> new PendingUserUpdate(key, name, age, tag.getId(), tag.getVersion()))
+                .orElseGet(() -> new PendingUserUpdate(key, name, age));
+        boolean queued = shardOf(key).put(update, true, true, 0);
+        (queued ? accepted : rejected).increment();
+        return queued;
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    /** Drops what is queued for the changed user once the change commits; see the class comment. */
+    @EventListener
+    public void onUserChange(UserEventDto event) {
+        if (!isEnabled() || event.getType() == UserEventType.CREATED || FLUSHING.get() || pending.get() == 0) {
+            return;
+        }
+        List<String> emails = Stream.of(event.getEmail(), event.getPreviousEmail())
+                .filter(email -> email != null).map(EmailNormalizer::normalize).distinct().toList();
+        long acceptedBefore = sequence.get();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            supersede(emails, acceptedBefore);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                supersede(emails, acceptedBefore);
+            }
+        });
+    }
+
+    /** Writes everything accepted so far; waits for a flush of the same shard that is already running. */
+    public void flushAll() {
+        for (Shard shard : shards) {
+            flush(shard);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flushAll();
+        for (Shard shard : shards) {
+            shard.close();
+        }
+    }
+
+    private Shard shardOf(String email) {
+        return shards[Math.floorMod(email.hashCode(), shards.length)];
+    }
+
+    private void supersede(List<String> emails, long acceptedBefore) {
+        for (String email : emails) {
+            if (shardOf(email).discard(email, acceptedBefore)) {
+                superseded.increment();
+            }
+        }
+    }
+
+    private void flush(Shard shard) {
+        shard.flushLock.lock();
+        FLUSHING.set(true);
+        try {
+            Drained drained = shard.drain();
+            if (drained.updates().isEmpty()) {
+                return;
+            }
+            Timer.Sample sample = Timer.start();
+            List<Queued> updates = new ArrayList<>(drained.updates().values());
+            for (int from = 0; from < updates.size(); from += properties.getBatchSize()) {
+                write(shard, updates.subList(from, Math.min(from + properties.getBatchSize(), updates.size())));
+            }
+            sample.stop(flushTimer);
+            shard.release(drained.segment());
+        } catch (RuntimeException | IOException e) {
+            log.error("Ошибка при записи отложенных обновлений пользователей", e);
+        } finally {
+            FLUSHING.remove();
+            shard.flushLock.unlock();
+        }
+    }
+
+    private void write(Shard shard, List<Queued> batch) {
+        Map<String, UserEntity> data = new LinkedHashMap<>();
+        for (Queued queued : batch) {
+            data.put(queued.update().email(), queued.update().toEntity());
+        }
+        try {
+            Set<String> applied = userService.updateAllByEmail(data);
+            for (Queued queued : batch) {
+                if (!applied.contains(queued.update().email())) {
+                    notWritten(queued.update());
+                }
+            }
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Пакет из {} отложенных обновлений не записан, повтор по одному", batch.size(), e);
+        }
+        for (Queued queued : batch) {
+            PendingUserUpdate update = queued.update();
+            UserEntity newData = data.get(update.email());
+            try {
+                Optional<UserEntity> written = update.isConditional()
+                        ? userService.updateUserByEmail(update.email(), newData, UserETag.of(newData))
+                        : userService.updateUserByEmail(update.email(), newData);
+                if (written.isEmpty()) {
+                    notWritten(update);
+                }
+            } catch (UserVersionConflictException e) {
+                superseded.increment();
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    // keeps its sequence and version, so a change committed since still supersedes it; a newer
+                    // write for the same user, if any, was queued meanwhile and wins
+                    shard.put(update, false, false, queued.sequence());
+                } else {
+                    failed.increment();
+                    log.warn("Отложенное обновление пользователя {} отброшено", update.email(), e);
+                }
+            }
+        }
+    }
+
+    /** A user changed or deleted since a conditional update was accepted superseded it; otherwise there was none. */
+    private void notWritten(PendingUserUpdate update) {
+        (update.isConditional() ? superseded : failed).increment();
+    }
+
+    private boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException || cause instanceof RecoverableDataAccessException
+                    || cause instanceof CannotCreateTransactionException || cause instanceof SQLTransientException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Queued(PendingUserUpdate update, long sequence) {
+    }
+
+    private record Drained(Map<String, Queued> updates, Path segment) {
+    }
+
+    private final class Shard {
+        private final int capacity;
+        private final UserWriteJournal journal;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ReentrantLock flushLock = new ReentrantLock();
+        private LinkedHashMap<String, Queued> updates = new LinkedHashMap<>();
+
+        private Shard(int capacity, UserWriteJournal journal) {
+            this.capacity = capacity;
+            this.journal = journal;
+        }
+
+        /** Queues the update as accepted at {@code acceptedAs}, or as accepted now if it is {@code 0}. */
+        private boolean put(PendingUserUpdate update, boolean replace, boolean bounded, long acceptedAs) {
+            long ticket;
+            lock.lock();
+            try {
+                boolean present = updates.containsKey(update.email());
+                if (present && !replace) {
+                    return true;
+                }
+                if (!present && bounded && updates.size() >= capacity) {
+                    return false;
+                }
+                ticket = journal == null ? 0 : append(update);
+                updates.put(update.email(), new Queued(update, acceptedAs == 0 ? sequence.incrementAndGet() : acceptedAs));
+                if (present) {
+                    coalesced.increment();
+                } else {
+                    pending.incrementAndGet();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (journal != null) {
+                try {
+                    journal.sync(ticket);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Не удалось записать обновление в журнал", e);
+                }
+            }
+            return true;
+        }
+
+        /** Removes the update queued for the email if it was accepted no later than {@code acceptedBefore}. */
+        private boolean discard(String email, long acceptedBefore) {
+            lock.lock();
+            try {
+                Queued queued = updates.get(email);
+                if (queued == null || queued.sequence() > acceptedBefore) {
+                    return false;
+                }
+                if (journal != null) {
+                    append(PendingUserUpdate.supersede(email));
+                }
+                updates.remove(email);
+                pending.decrementAndGet();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long append(PendingUserUpdate update) {
+            try {
+                return journal.append(update);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось записать обновление в журнал", e);
+            }
+        }
+
+        private Drained drain() throws IOException {
+            lock.lock();
+            try {
+                LinkedHashMap<String, Queued> drained = updates;
+                if (drained.isEmpty()) {
+                    return new Drained(drained, null);
+                }
+                updates = new LinkedHashMap<>();
+                pending.addAndGet(-drained.size());
+                return new Drained(drained, journal == null ? null : journal.rotate());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void release(Path segment) throws IOException {
+            if (segment != null) {
+                journal.delete(List.of(segment));
+            }
+        }
+
+        private void recover() throws IOException {
+            if (journal == null) {
+                return;
+            }
+            List<PendingUserUpdate> recovered = new ArrayList<>();
+            List<Path> segments = journal.recover(recovered);
+            Map<String, PendingUserUpdate> latest = new LinkedHashMap<>();
+            for (PendingUserUpdate update : recovered) {
+                latest.remove(update.email());
+                if (!update.superseded()) {
+                    latest.put(update.email(), update);
+                }
+            }
+            for (PendingUserUpdate update : latest.values()) {
+                put(update, true, false, 0);
+            }
+            journal.delete(segments);
+            if (!latest.isEmpty()) {
+                log.info("Из журнала восстановлено {} отложенных обновлений пользователей", latest.size());
+            }
+        }
+
+        private void close() {
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    log.warn("Не удалось закрыть журнал отложенных обновлений", e);
+                }
+            }
+        }
+    }
+}
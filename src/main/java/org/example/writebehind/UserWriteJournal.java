@@ -0,0 +1,145 @@
+package org.example.writebehind;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Append-only NDJSON journal of one queue shard, split into numbered segments. A flush rotates to a new segment
+ * and deletes the old one once everything in it is written to the database, so the journal only ever holds
+ * updates that are still pending. Appends and rotations are serialized by the owning shard; {@link #sync} is not,
+ * so one {@code fsync} covers every line appended by the time it starts (group commit) while the shard keeps
+ * accepting updates.
+ */
+final class UserWriteJournal implements Closeable {
+    private final Path directory;
+    private final String prefix;
+    private final boolean fsync;
+    private final ObjectMapper objectMapper;
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private long sequence;
+    private Path segment;
+    private FileChannel channel;
+    private volatile long appended;
+    private long synced;
+
+    UserWriteJournal(Path directory, int shard, boolean fsync, ObjectMapper objectMapper) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.prefix = "shard-" + shard + "-";
+        this.fsync = fsync;
+        this.objectMapper = objectMapper;
+    }
+
+    /** Reads the segments left by a previous process, oldest first, and opens a fresh segment after them. */
+    List<Path> recover(List<PendingUserUpdate> into) throws IOException {
+        List<Path> segments = segments();
+        for (Path path : segments) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        into.add(objectMapper.readValue(line, PendingUserUpdate.class));
+                    } catch (JsonProcessingException e) {
+                        // a line torn by a crash mid-append was never acknowledged to the client
+                    }
+                }
+            }
+            sequence = Math.max(sequence, sequenceOf(path));
+        }
+        open();
+        return segments;
+    }
+
+    /** Writes the line without waiting for the disk; returns the ticket to pass to {@link #sync}. */
+    long append(PendingUserUpdate update) throws IOException {
+        byte[] line = (objectMapper.writeValueAsString(update) + "\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return ++appended;
+    }
+
+    /** Returns once the line with this ticket is on disk, forcing it there unless another caller already has. */
+    void sync(long ticket) throws IOException {
+        if (!fsync) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (synced < ticket) {
+                long upTo = appended;
+                channel.force(false);
+                synced = upTo;
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /** Starts a new segment and returns the previous one, to be deleted after its updates are written. */
+    Path rotate() throws IOException {
+        syncLock.lock();
+        try {
+            if (fsync) {
+                channel.force(false);
+            }
+            synced = appended;
+            Path previous = segment;
+            channel.close();
+            open();
+            return previous;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    void delete(List<Path> segments) throws IOException {
+        for (Path path : segments) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        syncLock.lock();
+        try {
+            channel.close();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void open() throws IOException {
+        segment = directory.resolve(prefix + (++sequence) + ".ndjson");
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> path.getFileName().toString().startsWith(prefix)).forEach(segments::add);
+        }
+        segments.sort(Comparator.comparingLong(this::sequenceOf));
+        return segments;
+    }
+
+    private long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - ".ndjson".length()));
+    }
+}
@@ -0,0 +1,66 @@
+-- Indexes for GET /api/v1/users/search. Runs after Hibernate has created the tables
+-- (spring.jpa.defer-datasource-initialization); every statement must stay idempotent.
+-- INCLUDE columns cover the UserDto projection, so the planner can use index-only scans once the table is vacuumed.
+
+-- created_at range and sort=CREATED_AT
+CREATE INDEX IF NOT EXISTS idx_users_created_at_id ON users (created_at, id) INCLUDE (name, email, age);
+
+-- age range, optionally combined with a created_at range
+CREATE INDEX IF NOT EXISTS idx_users_age_created_at_id ON users (age, created_at, id) INCLUDE (name, email);
+
+-- name prefix: LIKE 'abc%' can only use a btree with text_pattern_ops under a non-C collation
+CREATE INDEX IF NOT EXISTS idx_users_name_pattern ON users (name text_pattern_ops, id) INCLUDE (email, age, created_at);
+
+-- Emails stored before EmailNormalizer are brought to the trimmed lower-case form every lookup uses; otherwise
+-- such a user can neither be found nor registered again. A row whose normalized email is shared with another
+-- row stays as it is and keeps startup from failing on uk_users_email: such pairs have to be merged by hand
+-- (see "Миграция существующей базы" in the README), after which the next start normalizes the survivor.
+UPDATE users u
+SET email = lower(trim(u.email))
+WHERE u.email <> lower(trim(u.email))
+  AND NOT EXISTS (SELECT 1 FROM users o WHERE o.id <> u.id AND lower(trim(o.email)) = lower(trim(u.email)));
+
+-- Hibernate creates the event_type check only together with the table, so an existing outbox keeps the values
+-- of its first version; replaced here to admit every UserEventType.
+ALTER TABLE user_outbox DROP CONSTRAINT IF EXISTS user_outbox_event_type_check;
+ALTER TABLE user_outbox ADD CONSTRAINT user_outbox_event_type_check
+    CHECK (event_type IN ('CREATED', 'UPDATED', 'DELETED', 'ARCHIVED'));
+
+-- Collection ETag marker (UserChangeMarker): incremented by every transaction that writes user_outbox. Starts above
+-- the old marker, the highest outbox id, so ETags issued before it existed never match again.
+CREATE TABLE IF NOT EXISTS users_change_marker (
+    id     INTEGER PRIMARY KEY,
+    marker BIGINT  NOT NULL
+);
+INSERT INTO users_change_marker (id, marker)
+SELECT 1, COALESCE(MAX(id), 0) + 1 FROM user_outbox
+ON CONFLICT (id) DO NOTHING;
+
+-- replaced by idx_user_outbox_unpublished (published_at, commit_seq, id), which follows the relay's commit order
+DROP INDEX IF EXISTS idx_user_outbox_published_at;
+
+-- Users older than users.archive.retention, moved here by UserArchiveService. Range-partitioned by month of
+-- created_at; the monthly partitions (users_archive_yYYYYmMM) are created by the service before rows are moved into
+-- them, so a query with a created_at window only reads the partitions of that window. No unique email:
+-- an archived email can be registered again.
+CREATE TABLE IF NOT EXISTS users_archive (
+    id          INTEGER      NOT NULL,
+    name        VARCHAR(255),
+    email       VARCHAR(255),
+    age         INTEGER,
+    created_at  TIMESTAMP(6) NOT NULL,
+    version     BIGINT,
+    archived_at TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (created_at, id)
+) PARTITION BY RANGE (created_at);
+
+CREATE INDEX IF NOT EXISTS idx_users_archive_email ON users_archive (email);
+
+-- Shard layout shared by every instance with users.sharding.enabled=true (UserShardRouter): the comma-separated
+-- shards owning emails and, while a shard is being added, the ring after the rebalance. Seeded by the first router.
+CREATE TABLE IF NOT EXISTS users_shard_layout (
+    id      INTEGER       PRIMARY KEY,
+    version BIGINT        NOT NULL,
+    ring    VARCHAR(1000) NOT NULL,
+    target  VARCHAR(1000)
+);
@@ -0,0 +1,19 @@
+-- Schema of one shard in sharded mode (users.sharding.enabled=true), applied by UserShardRouter at startup.
+-- Must run unchanged on PostgreSQL and on H2 in MODE=PostgreSQL, and stay idempotent.
+-- Emails are unique per shard; the hash ring keeps every email on exactly one shard.
+
+CREATE SEQUENCE IF NOT EXISTS users_shard_id_seq;
+
+CREATE TABLE IF NOT EXISTS users (
+    id         INTEGER      NOT NULL PRIMARY KEY,
+    name       VARCHAR(255),
+    email      VARCHAR(255) NOT NULL,
+    age        INTEGER,
+    created_at TIMESTAMP(6) NOT NULL,
+    version    BIGINT       NOT NULL DEFAULT 0,
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE INDEX IF NOT EXISTS idx_users_created_at_id ON users (created_at, id);
+
+CREATE INDEX IF NOT EXISTS idx_users_age_created_at_id ON users (age, created_at, id);
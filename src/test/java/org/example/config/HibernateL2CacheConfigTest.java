@@ -0,0 +1,145 @@
+package org.example.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.example.entities.UserEntity;
+import org.example.exceptions.UserVersionConflictException;
+import org.example.repositories.UserOutboxRepository;
+import org.example.repositories.UserRepository;
+import org.example.services.UserService;
+import org.example.utils.UserETag;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "users.l2cache.enabled=true")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+class HibernateL2CacheConfigTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserOutboxRepository outboxRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+        outboxRepository.deleteAll();
+        cacheManager.getCache(UserService.USERS_BY_EMAIL_CACHE).clear();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void testLoadByEmail_SecondLoadIsServedWithoutSql() {
+        userService.save(new UserEntity("Name1", "Name1@mail.ru", 18));
+        load("name1@mail.ru");
+        statistics.clear();
+
+        assertEquals("Name1", load("name1@mail.ru").get().getName());
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getDomainDataRegionStatistics(UserEntity.CACHE_REGION).getHitCount() > 0);
+    }
+
+    @Test
+    void testUpdate_CachedUserIsNotServedStale() {
+        userService.save(new UserEntity("Name1", "Name1@mail.ru", 18));
+        load("name1@mail.ru");
+
+        userService.updateUserByEmail("Name1@mail.ru", new UserEntity("Name2", "Name2@mail.ru", 19));
+
+        assertTrue(load("name1@mail.ru").isEmpty());
+        UserEntity updated = load("name2@mail.ru").get();
+        assertEquals("Name2", updated.getName());
+        assertEquals(1L, updated.getVersion());
+        assertEquals("Name2", userService.getByEmail("Name2@mail.ru").get().getName());
+    }
+
+    @Test
+    void testUpdateAndDelete_KeepOtherUsersCached() {
+        userService.save(new UserEntity("Name1", "Name1@mail.ru", 18));
+        userService.save(new UserEntity("Name2", "Name2@mail.ru", 19));
+        userService.save(new UserEntity("Name3", "Name3@mail.ru", 20));
+        load("name3@mail.ru");
+
+        userService.updateUserByEmail("Name1@mail.ru", new UserEntity("Renamed", "Name1@mail.ru", 21));
+        assertTrue(userService.deleteByEmail("Name2@mail.ru"));
+        statistics.clear();
+
+        assertEquals("Name3", load("name3@mail.ru").get().getName());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testUpdate_WithStaleVersionConflicts() {
+        UserEntity saved = new UserEntity("Name1", "Name1@mail.ru", 18);
+        userService.save(saved);
+        userService.updateUserByEmail("Name1@mail.ru", new UserEntity("Name2", "Name1@mail.ru", 19));
+
+        assertThrows(UserVersionConflictException.class, () -> userService.updateUserByEmail("Name1@mail.ru",
+                new UserEntity("Name3", "Name1@mail.ru", 20), UserETag.of(saved)));
+        assertEquals("Name2", load("name1@mail.ru").get().getName());
+    }
+
+    @Test
+    void testDelete_CachedUserIsGone() {
+        userService.save(new UserEntity("Name1", "Name1@mail.ru", 18));
+        load("name1@mail.ru");
+
+        assertTrue(userService.deleteByEmail("Name1@mail.ru"));
+
+        assertTrue(load("name1@mail.ru").isEmpty());
+        assertTrue(userService.getByEmail("Name1@mail.ru").isEmpty());
+    }
+
+    @Test
+    void testRegionMetricsAreExposed() {
+        userService.save(new UserEntity("Name1", "Name1@mail.ru", 18));
+        load("name1@mail.ru");
+        load("name1@mail.ru");
+
+        assertTrue(meterRegistry.get("users.l2cache.hit.ratio").tag("region", UserEntity.CACHE_REGION).gauge().value() > 0);
+        assertNotNull(meterRegistry.get("cache.gets").tag("cache", UserEntity.NATURAL_ID_CACHE_REGION).meters());
+        assertNotNull(meterRegistry.get("cache.evictions").tag("cache", UserEntity.CACHE_REGION).meter());
+    }
+
+    private Optional<UserEntity> load(String email) {
+        return transactionTemplate.execute(status -> userRepository.loadByEmail(email));
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.entities.UserEntity;
+import org.example.services.UserService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Transactional
+class HibernateL2CacheDisabledTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void testByDefault_NoSecondLevelCacheRegionIsCreated() {
+        userService.save(new UserEntity("Name1", "Name1@mail.ru", 18));
+        userService.getByEmail("name1@mail.ru");
+
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        assertFalse(sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled());
+        assertTrue(sessionFactory.getCache().getCacheRegionNames().isEmpty());
+        assertFalse(sessionFactory.getCache().containsEntity(UserEntity.class, 1));
+    }
+}
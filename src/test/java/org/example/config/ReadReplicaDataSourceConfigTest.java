@@ -0,0 +1,73 @@
+package org.example.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.example.dto.UserDto;
+import org.example.entities.UserEntity;
+import org.example.services.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "users.datasource.replica.jdbc-url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+        "users.datasource.replica.username=sa",
+        "users.outbox.relay-enabled=false",
+        "users.email-filter.enabled=false",
+        "spring.sql.init.platform=h2"
+})
+class ReadReplicaDataSourceConfigTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private HikariDataSource replicaDataSource;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCache(UserService.USERS_BY_EMAIL_CACHE).clear();
+        JdbcTemplate replica = new JdbcTemplate(replicaDataSource);
+        replica.execute("create table if not exists users (id integer primary key, name varchar(255), "
+                + "email varchar(255), age integer, created_at timestamp, version bigint default 0)");
+        replica.update("merge into users key (id) values (1, 'Replica', 'replica@mail.ru', 30, current_timestamp, 0)");
+    }
+
+    @Test
+    void testReadOnlyTransactionsUseReplica() {
+        assertEquals(List.of("Replica"), userService.getPage(null, 10).stream().map(UserDto::getName).toList());
+    }
+
+    @Test
+    void testCachedLookupsUsePrimary() {
+        userService.save(new UserEntity("Primary", "replica@mail.ru", 20));
+
+        assertEquals("Primary", userService.getByEmail("replica@mail.ru").get().getName());
+        assertEquals("Primary", userService.lookupByEmails(List.of("replica@mail.ru")).getFound().get(0).getName());
+        userService.deleteByEmail("replica@mail.ru");
+    }
+
+    @Test
+    void testWritesUsePrimary() {
+        userService.save(new UserEntity("Primary", "primary@mail.ru", 20));
+
+        assertTrue(userService.updateUserByEmail("replica@mail.ru", new UserEntity("Name", "replica@mail.ru", 30)).isEmpty());
+        assertTrue(userService.getPage(null, 10).stream().noneMatch(user -> user.getEmail().equals("primary@mail.ru")));
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.config;
+
+import org.example.controller.UserController;
+import org.example.emailfilter.UserEmailFilter;
+import org.example.entities.UserEntity;
+import org.example.services.UserArchiveService;
+import org.example.services.UserOutboxRelay;
+import org.example.services.UserOutboxTail;
+import org.example.services.UserService;
+import org.example.writebehind.UserWriteBehindQueue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the startup profile expects the schema of a regular deployment: Hibernate's tables and the schema-*.sql scripts
+@SpringBootTest(properties = {"spring.jpa.hibernate.ddl-auto=create-drop", "spring.sql.init.mode=always"})
+@ActiveProfiles({"test", "startup"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+class StartupProfileTest {
+
+    @Autowired
+    private ConfigurableListableBeanFactory beanFactory;
+
+    @Test
+    void testBackgroundWorkersStartEagerlyAndTheRestOnFirstUse() {
+        assertTrue(beanFactory.containsSingleton(beanName(UserOutboxRelay.class)));
+        assertTrue(beanFactory.containsSingleton(beanName(UserWriteBehindQueue.class)));
+        assertTrue(beanFactory.containsSingleton(beanName(UserEmailFilter.class)));
+        assertTrue(beanFactory.containsSingleton(beanName(UserOutboxTail.class)));
+        assertTrue(beanFactory.containsSingleton(beanName(UserArchiveService.class)));
+        assertFalse(beanFactory.containsSingleton(beanName(UserController.class)));
+
+        UserService userService = beanFactory.getBean(UserService.class);
+        userService.save(new UserEntity("Name", "startup@mail.ru", 18));
+        assertTrue(userService.getByEmail("startup@mail.ru").isPresent());
+        assertTrue(beanFactory.getBeanDefinition(beanName(UserController.class)).isLazyInit());
+    }
+
+    private String beanName(Class<?> type) {
+        return beanFactory.getBeanNamesForType(type, true, false)[0];
+    }
+}
@@ -0,0 +1,34 @@
+package org.example.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadPinningMonitorTest {
+
+    @Test
+    void testStartAndStop() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(meterRegistry, Duration.ofMillis(20));
+
+        monitor.start();
+        assertTrue(monitor.isRunning());
+
+        monitor.stop();
+        assertFalse(monitor.isRunning());
+        assertEquals(0, meterRegistry.get("users.virtual-threads.pinned").counter().count());
+    }
+
+    @Test
+    void testLocation_SkipsJdkFrames() {
+        assertEquals("org.postgresql.core.QueryExecutorImpl.execute", VirtualThreadPinningMonitor.location(List.of(
+                "java.lang.Object.wait0", "jdk.internal.misc.Unsafe.park", "org.postgresql.core.QueryExecutorImpl.execute",
+                "org.example.services.UserService.save")));
+        assertEquals("java.lang.Object.wait0", VirtualThreadPinningMonitor.location(List.of("java.lang.Object.wait0")));
+        assertEquals("unknown", VirtualThreadPinningMonitor.location(List.of()));
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.controller;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.example.dto.UserDto;
+import org.example.dto.UserSearchSort;
+import org.example.metrics.UserErrorMetrics;
+import org.example.services.UserArchiveService;
+import org.example.utils.UserSearchCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+class UserArchiveControllerTest {
+    private static final LocalDateTime FROM = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2025, 2, 1, 0, 0);
+
+    @Mock
+    private UserArchiveService userArchiveService;
+
+    @Mock
+    private UserErrorMetrics errorMetrics;
+
+    @InjectMocks
+    private UserArchiveController userArchiveController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(userArchiveController).build();
+    }
+
+    @Test
+    void searchArchive_whenPageIsFull_thenReturnsCursorOfLastUser() throws Exception {
+        UserDto last = new UserDto(7, "Name", "name7@mail.ru", 30, LocalDateTime.of(2025, 1, 15, 10, 0));
+        when(userArchiveService.searchArchive(FROM, TO, null, 1)).thenReturn(List.of(last));
+
+        mockMvc.perform(get("/api/v1/users/archive").param("createdFrom", FROM.toString())
+                        .param("createdTo", TO.toString()).param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].email").value("name7@mail.ru"))
+                .andExpect(header().string(UserController.NEXT_CURSOR_HEADER,
+                        UserSearchCursor.after(UserSearchSort.CREATED_AT, false, last).encode()));
+    }
+
+    @Test
+    void searchArchive_whenWindowIsEmptyOrCursorIsForeign_thenReturns400() throws Exception {
+        mockMvc.perform(get("/api/v1/users/archive").param("createdFrom", TO.toString()).param("createdTo", FROM.toString()))
+                .andExpect(status().isBadRequest());
+        String idCursor = UserSearchCursor.after(UserSearchSort.ID, false, new UserDto(1, "Name", "a@mail.ru", 30, FROM)).encode();
+        mockMvc.perform(get("/api/v1/users/archive").param("createdFrom", FROM.toString())
+                        .param("createdTo", TO.toString()).param("cursor", idCursor))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(userArchiveService);
+    }
+}
@@ -1,63 +1,103 @@
 package org.example.controller;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import org.example.config.UserLookupProperties;
+import org.example.config.WireFormatConfig;
 import org.example.dto.UserDto;
+import org.example.dto.UserImportResultDto;
+import org.example.dto.UserLookupResultDto;
+import org.example.dto.UserSearchCriteria;
+import org.example.dto.UserSearchSort;
 import org.example.entities.UserEntity;
+import org.example.exceptions.UserAlreadyExistsException;
+import org.example.exceptions.UserVersionConflictException;
+import org.example.feed.UserChangeFeed;
+import org.example.metrics.UserErrorMetrics;
+import org.example.services.UserImportService;
 import org.example.services.UserService;
 import org.example.utils.MappingUtils;
+import org.example.utils.UserETag;
+import org.example.utils.UserSearchCursor;
+import org.example.writebehind.UserWriteBehindQueue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @ExtendWith(MockitoExtension.class)
 class UserControllerTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private UserImportService userImportService;
+
     @Mock
     private MappingUtils mappingUtils;
 
+    @Mock
+    private UserErrorMetrics errorMetrics;
+
+    @Mock
+    private UserWriteBehindQueue writeBehindQueue;
+
+    @Mock
+    private UserChangeFeed changeFeed;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private UserLookupProperties lookupProperties = new UserLookupProperties();
+
+    @Spy
+    private MappingJackson2CborHttpMessageConverter cborConverter = new MappingJackson2CborHttpMessageConverter();
+
     @InjectMocks
     private UserController userController;
 
     private MockMvc mockMvc;
 
-    private ObjectMapper objectMapper;
-
     @BeforeEach
     void setUp(){
         mockMvc = MockMvcBuilders.standaloneSetup(userController).build();
-        objectMapper = new ObjectMapper();
     }
 
     @Test
     void getAllUsers_whenUsersExist_thenReturnsOk() throws Exception {
-        List<UserEntity> userEntities = List.of(
-                new UserEntity("Name1", "Name1@email.ru", 18),
-                new UserEntity("Name2", "Name2@email.ru", 20)
+        List<UserDto> users = List.of(
+                new UserDto("Name1", "Name1@email.ru", 18),
+                new UserDto("Name2", "Name2@email.ru", 20)
         );
 
-        when(userService.getAll()).thenReturn(userEntities);
-
-        when(mappingUtils.mapToUserDto(userEntities.get(0)))
-                .thenReturn(new UserDto("Name1", "Name1@email.ru", 18));
-
-        when(mappingUtils.mapToUserDto(userEntities.get(1)))
-                .thenReturn(new UserDto("Name2", "Name2@email.ru", 20));
+        when(userService.getPage(null, UserService.DEFAULT_PAGE_LIMIT)).thenReturn(users);
 
         mockMvc.perform(get("/api/v1/users"))
                 .andExpect(status().isOk())
@@ -67,16 +107,39 @@ class UserControllerTest {
                 .andExpect(jsonPath("$[0].age").value(18))
                 .andExpect(jsonPath("$[1].name").value("Name2"))
                 .andExpect(jsonPath("$[1].email").value("Name2@email.ru"))
-                .andExpect(jsonPath("$[1].age").value(20));
+                .andExpect(jsonPath("$[1].age").value(20))
+                .andExpect(header().doesNotExist(UserController.NEXT_CURSOR_HEADER));
+
+        verify(userService, times(1)).getPage(null, UserService.DEFAULT_PAGE_LIMIT);
+        verifyNoInteractions(mappingUtils);
+    }
+
+    @Test
+    void getAllUsers_whenPageIsFull_thenReturnsNextCursor() throws Exception {
+        UserDto secondDto = new UserDto("Name2", "Name2@email.ru", 20);
+        secondDto.setId(12);
+
+        when(userService.getPage(10, 2)).thenReturn(List.of(new UserDto("Name1", "Name1@email.ru", 18), secondDto));
+
+        mockMvc.perform(get("/api/v1/users").param("after", "10").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(header().string(UserController.NEXT_CURSOR_HEADER, "12"));
+
+        verify(userService, times(1)).getPage(10, 2);
+    }
+
+    @Test
+    void getAllUsers_whenLimitOutOfRange_thenReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/users").param("limit", String.valueOf(UserService.MAX_PAGE_LIMIT + 1)))
+                .andExpect(status().isBadRequest());
 
-        verify(userService, times(1)).getAll();
-        verify(mappingUtils, times(1)).mapToUserDto(userEntities.get(0));
-        verify(mappingUtils, times(1)).mapToUserDto(userEntities.get(1));
+        verifyNoInteractions(userService);
     }
 
     @Test
     void getAllUsers_whenServiceThrowsException_thenReturns500() throws Exception {
-        when(userService.getAll()).thenThrow(new RuntimeException());
+        when(userService.getPage(null, UserService.DEFAULT_PAGE_LIMIT)).thenThrow(new RuntimeException());
 
         mockMvc.perform(get("/api/v1/users"))
                 .andExpect(status().is(500))
@@ -84,7 +147,75 @@ class UserControllerTest {
                     assert result.getResponse().getContentAsString().isEmpty();
                 });
 
-        verify(userService, times(1)).getAll();
+        verify(userService, times(1)).getPage(null, UserService.DEFAULT_PAGE_LIMIT);
+    }
+
+    @Test
+    void streamAllUsers_whenNdjsonRequested_thenWritesOneUserPerLine() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<UserDto> consumer = invocation.getArgument(0);
+            consumer.accept(new UserDto("Name1", "Name1@email.ru", 18));
+            consumer.accept(new UserDto("Name2", "Name2@email.ru", 20));
+            return null;
+        }).when(userService).streamAll(any());
+
+        MvcResult result = mockMvc.perform(get("/api/v1/users").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"id\":null,\"name\":\"Name1\",\"email\":\"Name1@email.ru\",\"age\":18,\"createdAt\":null}\n"
+                                + "{\"id\":null,\"name\":\"Name2\",\"email\":\"Name2@email.ru\",\"age\":20,\"createdAt\":null}\n"));
+
+        verify(userService, never()).getPage(any(), anyInt());
+    }
+
+    @Test
+    void getAllUsers_whenCborRequested_thenReturnsCborList() throws Exception {
+        UserDto user = new UserDto("Name1", "Name1@email.ru", 18);
+        user.setCreatedAt(LocalDateTime.of(2024, 5, 1, 12, 30));
+
+        when(userService.getPage(null, UserService.DEFAULT_PAGE_LIMIT)).thenReturn(List.of(user));
+
+        byte[] body = mockMvc.perform(get("/api/v1/users").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        List<UserDto> users = cborConverter.getObjectMapper().readValue(body, new TypeReference<>() {
+        });
+        assertEquals(1, users.size());
+        assertEquals("Name1@email.ru", users.get(0).getEmail());
+        assertEquals(user.getCreatedAt(), users.get(0).getCreatedAt());
+    }
+
+    @Test
+    void streamAllUsers_whenCborSequenceRequested_thenWritesOneItemPerUser() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<UserDto> consumer = invocation.getArgument(0);
+            consumer.accept(new UserDto("Name1", "Name1@email.ru", 18));
+            consumer.accept(new UserDto("Name2", "Name2@email.ru", 20));
+            return null;
+        }).when(userService).streamAll(any());
+
+        MvcResult result = mockMvc.perform(get("/api/v1/users").accept(WireFormatConfig.APPLICATION_CBOR_SEQ))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        byte[] body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(WireFormatConfig.APPLICATION_CBOR_SEQ))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        List<UserDto> users = new ArrayList<>();
+        try (MappingIterator<UserDto> items = cborConverter.getObjectMapper().readerFor(UserDto.class).readValues(body)) {
+            items.forEachRemaining(users::add);
+        }
+        assertEquals(List.of("Name1@email.ru", "Name2@email.ru"), users.stream().map(UserDto::getEmail).toList());
+        verify(userService, never()).getPage(any(), anyInt());
     }
 
     @Test
@@ -117,6 +248,7 @@ class UserControllerTest {
                 .andExpect(status().isInternalServerError());
 
         verify(userService, times(1)).getByEmail(email);
+        verify(errorMetrics, times(1)).record(eq("getByEmail"), any(RuntimeException.class));
     }
 
     @Test
@@ -136,6 +268,24 @@ class UserControllerTest {
         verify(userService, times(1)).save(userEntity);
     }
 
+    @Test
+    void createUser_whenEmailAlreadyExists_thenReturnsConflict() throws Exception {
+        UserDto userDto = new UserDto("Name", "Name@mail.ru", 24);
+        UserEntity userEntity = new UserEntity("Name", "Name@mail.ru", 24);
+
+        when(mappingUtils.mapToUSerEntity(any(UserDto.class))).thenReturn(userEntity);
+        doThrow(new UserAlreadyExistsException("name@mail.ru", null))
+                .when(userService)
+                .save(userEntity);
+
+        mockMvc.perform(post("/api/v1/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userDto)))
+                .andExpect(status().isConflict());
+
+        verify(userService, times(1)).save(userEntity);
+    }
+
     @Test
     void createUser_whenExceptionThrown_thenReturns500() throws Exception {
         UserDto userDto = new UserDto("Name", "Name@mail.ru", 24);
@@ -161,11 +311,62 @@ class UserControllerTest {
         verify(userService, times(1)).save(userEntity);
     }
 
+    @Test
+    void importUsers_whenJsonArray_thenPassesEveryUserToImport() throws Exception {
+        List<String> imported = collectImportedEmails();
+
+        mockMvc.perform(post("/api/v1/users/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(
+                                new UserDto("Name1", "Name1@mail.ru", 18),
+                                new UserDto("Name2", "Name2@mail.ru", 20)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(2));
+
+        assertEquals(List.of("Name1@mail.ru", "Name2@mail.ru"), imported);
+    }
+
+    @Test
+    void importUsers_whenNdjson_thenPassesEveryUserToImport() throws Exception {
+        List<String> imported = collectImportedEmails();
+
+        mockMvc.perform(post("/api/v1/users/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(objectMapper.writeValueAsString(new UserDto("Name1", "Name1@mail.ru", 18)) + "\n"
+                                + objectMapper.writeValueAsString(new UserDto("Name2", "Name2@mail.ru", 20)) + "\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(2));
+
+        assertEquals(List.of("Name1@mail.ru", "Name2@mail.ru"), imported);
+    }
+
+    @Test
+    void importUsers_whenBodyIsMalformed_thenReturnsBadRequest() throws Exception {
+        collectImportedEmails();
+
+        mockMvc.perform(post("/api/v1/users/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"name\":"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private List<String> collectImportedEmails() {
+        List<String> imported = new ArrayList<>();
+        when(userImportService.importUsers(any())).thenAnswer(invocation -> {
+            Iterator<UserDto> users = invocation.getArgument(0);
+            users.forEachRemaining(user -> imported.add(user.getEmail()));
+            UserImportResultDto result = new UserImportResultDto();
+            result.setTotal(imported.size());
+            return result;
+        });
+        return imported;
+    }
+
     @Test
     void deleteUser_whenUserExists_thenReturnsNoContent() throws Exception {
         String email = "Name@mail.ru";
 
-        doNothing().when(userService).deleteByEmail(email);
+        when(userService.deleteByEmail(email)).thenReturn(true);
 
         mockMvc.perform(delete("/api/v1/users/{email}", email))
                 .andExpect(status().is(204));
@@ -173,6 +374,18 @@ class UserControllerTest {
         verify(userService, times(1)).deleteByEmail(email);
     }
 
+    @Test
+    void deleteUser_whenUserNotFound_thenReturns404() throws Exception {
+        String email = "Name@mail.ru";
+
+        when(userService.deleteByEmail(email)).thenReturn(false);
+
+        mockMvc.perform(delete("/api/v1/users/{email}", email))
+                .andExpect(status().isNotFound());
+
+        verify(userService, times(1)).deleteByEmail(email);
+    }
+
     @Test
     void deleteUser_whenServiceThrowsException_thenReturns500() throws Exception {
         String email = "Name@mail.ru";
@@ -219,6 +432,20 @@ class UserControllerTest {
     }
 
 
+    @Test
+    void updateUser_whenNewEmailMissing_thenReturnsBadRequest() throws Exception {
+        mockMvc.perform(post("/api/v1/users/{email}", "name@mail.ru")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Name\", \"age\": 25}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/v1/users/{email}", "name@mail.ru")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Name\", \"email\": \" \", \"age\": 25}"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(userService);
+    }
+
     @Test
     void updateUser_whenUserNotFound_thenReturns404() throws Exception {
         String email = "Name@mail.ru";
@@ -242,6 +469,23 @@ class UserControllerTest {
     }
 
 
+    @Test
+    void updateUser_whenNewEmailAlreadyExists_thenReturnsConflict() throws Exception {
+        String email = "Name@mail.ru";
+        UserDto userDto = new UserDto("Name", "Other@mail.ru", 25);
+
+        when(mappingUtils.mapToUSerEntity(any(UserDto.class))).thenReturn(new UserEntity("Name", "Other@mail.ru", 25));
+        when(userService.updateUserByEmail(eq(email), any(UserEntity.class)))
+                .thenThrow(new UserAlreadyExistsException("other@mail.ru", null));
+
+        mockMvc.perform(post("/api/v1/users/{email}", email)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userDto)))
+                .andExpect(status().isConflict());
+
+        verify(userService, times(1)).updateUserByEmail(eq(email), any(UserEntity.class));
+    }
+
     @Test
     void updateUser_whenServiceThrowsException_thenReturns500() throws Exception {
         String email = "Name@mail.ru";
@@ -268,4 +512,271 @@ class UserControllerTest {
 
         verify(userService, times(1)).updateUserByEmail(eq(email), any(UserEntity.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    void lookupUsers_whenEmailsGiven_thenReturnsFoundAndMissing() throws Exception {
+        UserLookupResultDto result = new UserLookupResultDto();
+        result.getFound().add(new UserDto("Name1", "name1@mail.ru", 18));
+        result.getMissing().add("name2@mail.ru");
+        List<String> emails = List.of("Name1@mail.ru", "Name2@mail.ru");
+        when(userService.lookupByEmails(emails)).thenReturn(result);
+
+        mockMvc.perform(post("/api/v1/users/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(emails)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.found.length()").value(1))
+                .andExpect(jsonPath("$.found[0].email").value("name1@mail.ru"))
+                .andExpect(jsonPath("$.missing[0]").value("name2@mail.ru"));
+    }
+
+    @Test
+    void lookupUsers_whenTooManyEmails_thenReturnsBadRequest() throws Exception {
+        lookupProperties.setMaxEmails(1);
+
+        mockMvc.perform(post("/api/v1/users/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of("Name1@mail.ru", "Name2@mail.ru"))))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void lookupUsers_whenServiceThrowsException_thenReturns500() throws Exception {
+        when(userService.lookupByEmails(anyList())).thenThrow(new RuntimeException());
+
+        mockMvc.perform(post("/api/v1/users/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"Name1@mail.ru\"]"))
+                .andExpect(status().isInternalServerError());
+    }
+
+    @Test
+    void searchUsers_whenPageIsFull_thenReturnsOpaqueNextCursor() throws Exception {
+        UserDto user = new UserDto(7, "Anna", "anna@mail.ru", 20, LocalDateTime.of(2024, 5, 1, 10, 0));
+        when(userService.search(any(UserSearchCriteria.class), isNull(), eq(1))).thenReturn(List.of(user));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/users/search")
+                        .param("namePrefix", "An")
+                        .param("minAge", "18")
+                        .param("maxAge", "25")
+                        .param("createdFrom", "2024-04-24T00:00:00")
+                        .param("sort", "CREATED_AT")
+                        .param("desc", "true")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Anna"))
+                .andReturn();
+
+        String cursor = result.getResponse().getHeader(UserController.NEXT_CURSOR_HEADER);
+        assertEquals(7, UserSearchCursor.decode(cursor, UserSearchSort.CREATED_AT, true).getId());
+        verify(userService).search(argThat(criteria -> "An".equals(criteria.getNamePrefix())
+                && criteria.getMinAge() == 18 && criteria.getMaxAge() == 25
+                && LocalDateTime.of(2024, 4, 24, 0, 0).equals(criteria.getCreatedFrom())
+                && criteria.getSort() == UserSearchSort.CREATED_AT && criteria.isDescending()), isNull(), eq(1));
+    }
+
+    @Test
+    void searchUsers_whenCursorIsInvalid_thenReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/users/search").param("cursor", "garbage"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void searchUsers_whenCursorWasIssuedForOtherDirection_thenReturnsBadRequest() throws Exception {
+        String ascending = UserSearchCursor.after(UserSearchSort.ID, false, new UserDto(7, "Anna", "anna@mail.ru", 20, null)).encode();
+
+        mockMvc.perform(get("/api/v1/users/search").param("desc", "true").param("cursor", ascending))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void searchUsers_whenServiceThrowsException_thenReturns500() throws Exception {
+        when(userService.search(any(UserSearchCriteria.class), isNull(), anyInt())).thenThrow(new RuntimeException());
+
+        mockMvc.perform(get("/api/v1/users/search"))
+                .andExpect(status().isInternalServerError());
+    }
+
+    @Test
+    void getAllUsers_whenETagMatches_thenReturnsNotModifiedWithoutLoadingPage() throws Exception {
+        when(userService.getChangeMarker()).thenReturn(42L);
+
+        mockMvc.perform(get("/api/v1/users").header("If-None-Match", UserETag.collection(42)))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", UserETag.collection(42)))
+                .andExpect(header().string("Vary", "Accept"))
+                .andExpect(content().string(""));
+
+        verify(userService, never()).getPage(any(), anyInt());
+    }
+
+    @Test
+    void getAllUsers_whenTableChanged_thenReturnsPageWithNewETag() throws Exception {
+        when(userService.getChangeMarker()).thenReturn(43L);
+        when(userService.getPage(null, UserService.DEFAULT_PAGE_LIMIT)).thenReturn(List.of());
+
+        mockMvc.perform(get("/api/v1/users").header("If-None-Match", UserETag.collection(42)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", UserETag.collection(43)))
+                .andExpect(header().string("Vary", "Accept"));
+    }
+
+    @Test
+    void getAllUsers_tagIsWeakAndSharedByEveryFormat() throws Exception {
+        when(userService.getChangeMarker()).thenReturn(42L);
+
+        mockMvc.perform(get("/api/v1/users").accept(MediaType.APPLICATION_NDJSON)
+                        .header("If-None-Match", UserETag.collection(42)))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "W/\"users-42\""))
+                .andExpect(header().string("Vary", "Accept"));
+    }
+
+    @Test
+    void getByEmail_whenETagMatches_thenReturnsNotModified() throws Exception {
+        UserEntity userEntity = new UserEntity("Name", "name@mail.ru", 25);
+        userEntity.setId(5);
+        userEntity.setVersion(3L);
+        when(userService.getByEmail("name@mail.ru")).thenReturn(Optional.of(userEntity));
+        when(mappingUtils.mapToUserDto(userEntity)).thenReturn(new UserDto("Name", "name@mail.ru", 25));
+
+        mockMvc.perform(get("/api/v1/users/name@mail.ru").header("If-None-Match", "\"5-3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void getByEmail_whenCborRequested_thenTagsTheCborRepresentation() throws Exception {
+        UserEntity userEntity = new UserEntity("Name", "name@mail.ru", 25);
+        userEntity.setId(5);
+        userEntity.setVersion(3L);
+        when(userService.getByEmail("name@mail.ru")).thenReturn(Optional.of(userEntity));
+        when(mappingUtils.mapToUserDto(userEntity)).thenReturn(new UserDto("Name", "name@mail.ru", 25));
+
+        mockMvc.perform(get("/api/v1/users/name@mail.ru").accept(MediaType.APPLICATION_CBOR).header("If-None-Match", "\"5-3\""))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string("ETag", "\"5-3-cbor\""))
+                .andExpect(header().string("Vary", "Accept"));
+        mockMvc.perform(get("/api/v1/users/name@mail.ru").accept(MediaType.APPLICATION_CBOR).header("If-None-Match", "\"5-3-cbor\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void updateUser_whenIfMatchGiven_thenUpdatesConditionally() throws Exception {
+        UserEntity updated = new UserEntity("Name2", "name@mail.ru", 26);
+        updated.setId(5);
+        updated.setVersion(4L);
+        when(mappingUtils.mapToUSerEntity(any(UserDto.class))).thenReturn(new UserEntity("Name2", "name@mail.ru", 26));
+        when(userService.updateUserByEmail(eq("name@mail.ru"), any(UserEntity.class), any(UserETag.class)))
+                .thenReturn(Optional.of(updated));
+        when(mappingUtils.mapToUserDto(updated)).thenReturn(new UserDto("Name2", "name@mail.ru", 26));
+
+        mockMvc.perform(post("/api/v1/users/name@mail.ru")
+                        .header("If-Match", "\"5-3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserDto("Name2", "name@mail.ru", 26))))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"5-4\""));
+
+        verify(userService).updateUserByEmail(eq("name@mail.ru"), any(UserEntity.class),
+                argThat(tag -> tag.getId() == 5 && tag.getVersion() == 3L));
+    }
+
+    @Test
+    void updateUser_whenVersionIsStale_thenReturnsPreconditionFailed() throws Exception {
+        when(mappingUtils.mapToUSerEntity(any(UserDto.class))).thenReturn(new UserEntity("Name2", "name@mail.ru", 26));
+        when(userService.updateUserByEmail(eq("name@mail.ru"), any(UserEntity.class), any(UserETag.class)))
+                .thenThrow(new UserVersionConflictException("name@mail.ru"));
+
+        mockMvc.perform(post("/api/v1/users/name@mail.ru")
+                        .header("If-Match", "\"5-3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserDto("Name2", "name@mail.ru", 26))))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void updateUser_whenIfMatchIsWeak_thenReturnsPreconditionFailed() throws Exception {
+        mockMvc.perform(post("/api/v1/users/name@mail.ru")
+                        .header("If-Match", "W/\"5-3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserDto("Name2", "name@mail.ru", 26))))
+                .andExpect(status().isPreconditionFailed());
+
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void updateUser_whenRespondAsyncPreferred_thenQueuesAndReturnsAccepted() throws Exception {
+        when(writeBehindQueue.isEnabled()).thenReturn(true);
+        when(writeBehindQueue.submit("name@mail.ru", "Name2", 26)).thenReturn(true);
+
+        mockMvc.perform(post("/api/v1/users/name@mail.ru")
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserDto("Name2", "Name@mail.ru", 26))))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Preference-Applied", "respond-async"));
+
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void updateUser_whenWriteBehindQueueIsFull_thenReturnsServiceUnavailable() throws Exception {
+        when(writeBehindQueue.isEnabled()).thenReturn(true);
+        when(writeBehindQueue.submit("name@mail.ru", "Name2", 26)).thenReturn(false);
+
+        mockMvc.perform(post("/api/v1/users/name@mail.ru")
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserDto("Name2", "name@mail.ru", 26))))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void updateUser_whenRespondAsyncPreferredButEmailChanges_thenUpdatesSynchronously() throws Exception {
+        UserEntity updated = new UserEntity("Name2", "new@mail.ru", 26);
+        when(writeBehindQueue.isEnabled()).thenReturn(true);
+        when(mappingUtils.mapToUSerEntity(any(UserDto.class))).thenReturn(updated);
+        when(userService.updateUserByEmail(eq("name@mail.ru"), any(UserEntity.class))).thenReturn(Optional.of(updated));
+        when(mappingUtils.mapToUserDto(updated)).thenReturn(new UserDto("Name2", "new@mail.ru", 26));
+
+        mockMvc.perform(post("/api/v1/users/name@mail.ru")
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserDto("Name2", "new@mail.ru", 26))))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Preference-Applied"));
+
+        verify(writeBehindQueue, never()).submit(any(), any(), any());
+    }
+
+    @Test
+    void streamChanges_whenLastEventIdGiven_thenResumesAfterIt() throws Exception {
+        when(changeFeed.subscribe(42L)).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/v1/users/changes").header("Last-Event-ID", "42").param("after", "7"))
+                .andExpect(request().asyncStarted());
+
+        verify(changeFeed).subscribe(42L);
+    }
+
+    @Test
+    void streamChanges_whenTooManySubscribers_thenReturnsServiceUnavailable() throws Exception {
+        when(changeFeed.subscribe(null)).thenReturn(null);
+
+        mockMvc.perform(get("/api/v1/users/changes"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"));
+    }
+}
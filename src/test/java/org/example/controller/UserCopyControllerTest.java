@@ -0,0 +1,91 @@
+package org.example.controller;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.example.copy.UserCopyFormat;
+import org.example.copy.UserCopyService;
+import org.example.dto.UserImportResultDto;
+import org.example.metrics.UserErrorMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+@ExtendWith(MockitoExtension.class)
+class UserCopyControllerTest {
+    @Mock
+    private UserCopyService userCopyService;
+
+    @Mock
+    private UserErrorMetrics errorMetrics;
+
+    @InjectMocks
+    private UserCopyController userCopyController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(userCopyController).build();
+    }
+
+    @Test
+    void exportUsers_whenResumed_thenStreamsFromAfterUpToFixedUpperId() throws Exception {
+        when(userCopyService.getExportUpperId()).thenReturn(40);
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(3);
+            out.write("{\"id\":31}\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        }).when(userCopyService).export(eq(UserCopyFormat.NDJSON), eq(30), eq(40), any());
+
+        MvcResult result = mockMvc.perform(get("/api/v1/users/export").param("format", "NDJSON").param("after", "30"))
+                .andExpect(header().string(UserCopyController.EXPORT_UPPER_ID_HEADER, "40"))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"id\":31}\n"));
+    }
+
+    @Test
+    void importUsers_whenCsv_thenPassesFormatAndSkip() throws Exception {
+        UserImportResultDto imported = new UserImportResultDto();
+        imported.setSaved(2);
+        when(userCopyService.importUsers(eq(UserCopyFormat.CSV), any(), eq(20000))).thenReturn(imported);
+
+        mockMvc.perform(post("/api/v1/users/import").param("skip", "20000")
+                        .contentType(UserCopyFormat.CSV_VALUE)
+                        .content("email\nname1@mail.ru\nname2@mail.ru\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.saved").value(2));
+    }
+
+    @Test
+    void importUsers_whenCsvHasNoEmailColumn_thenReturnsBadRequest() throws Exception {
+        when(userCopyService.importUsers(eq(UserCopyFormat.CSV), any(), eq(0)))
+                .thenThrow(new RuntimeException("Ошибка при загрузке пользователей",
+                        new IllegalArgumentException("В заголовке CSV нет колонки email")));
+
+        mockMvc.perform(post("/api/v1/users/import").contentType(UserCopyFormat.CSV_VALUE).content("name\nName1\n"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,46 @@
+package org.example.copy;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvRowReaderTest {
+
+    @Test
+    void testNext_ReadsQuotedFieldsAndNulls() throws IOException {
+        CsvRowReader reader = new CsvRowReader(new StringReader(
+                "name,email,age\r\n\"Doe, \"\"J\"\"\",j@mail.ru,\n\"multi\nline\",\"\",42\n\n"));
+
+        assertEquals(List.of("name", "email", "age"), reader.next());
+        assertEquals(Arrays.asList("Doe, \"J\"", "j@mail.ru", null), reader.next());
+        assertEquals(List.of("multi\nline", "", "42"), reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void testNext_RejectsUnterminatedQuote() throws IOException {
+        CsvRowReader reader = new CsvRowReader(new StringReader("\"open,1\n"));
+
+        assertThrows(IllegalArgumentException.class, reader::next);
+    }
+
+    @Test
+    void testWriteRow_RoundTripsThroughReader() throws IOException {
+        StringWriter out = new StringWriter();
+        CsvRowWriter writer = new CsvRowWriter(out);
+        writer.writeRow(1, "Doe, \"J\"", "", null);
+        writer.writeRow(2, "line\nbreak", "j@mail.ru", 30);
+
+        CsvRowReader reader = new CsvRowReader(new StringReader(out.toString()));
+
+        assertEquals(Arrays.asList("1", "Doe, \"J\"", "", null), reader.next());
+        assertEquals(List.of("2", "line\nbreak", "j@mail.ru", "30"), reader.next());
+        assertNull(reader.next());
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.copy;
+
+import org.example.dto.UserImportResultDto;
+import org.example.entities.UserEntity;
+import org.example.repositories.UserOutboxRepository;
+import org.example.repositories.UserRepository;
+import org.example.services.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round-trips users through the COPY protocol against a real Postgres: the H2 fallback covers the service logic,
+ * this covers the COPY statements, the ON CONFLICT upsert and the outbox payloads built in SQL.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "users.outbox.relay-enabled=false",
+        "users.copy.import-chunk-size=1000",
+        "users.copy.export-chunk-ids=700"
+})
+@Testcontainers(disabledWithoutDocker = true)
+class UserCopyPostgresTest {
+    private static final int ROWS = 2500;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private UserCopyService userCopyService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserOutboxRepository outboxRepository;
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    void testImportThenExport_RoundTripsThroughCopy() throws IOException {
+        userService.save(new UserEntity("Old", "user7@mail.ru", 70));
+        String csv = "name,email,age\n" + IntStream.range(0, ROWS)
+                .mapToObj(i -> "\"Name, " + i + "\",User" + i + "@mail.ru," + (18 + i % 50))
+                .collect(Collectors.joining("\n"));
+
+        UserImportResultDto result = userCopyService.importUsers(UserCopyFormat.CSV,
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), 0);
+
+        assertEquals(ROWS, result.getSaved());
+        assertEquals(3, result.getChunks().size());
+        assertEquals(ROWS, userRepository.count());
+        assertEquals("Name, 7", userService.getByEmail("user7@mail.ru").orElseThrow().getName());
+        assertEquals(ROWS + 1, outboxRepository.count());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long exported = userCopyService.export(UserCopyFormat.NDJSON, 0, userCopyService.getExportUpperId(), out);
+
+        assertEquals(ROWS, exported);
+        String first = out.toString(StandardCharsets.UTF_8).lines().findFirst().orElseThrow();
+        assertTrue(first.startsWith("{\"id\" : "), first);
+        assertTrue(first.contains("\"createdAt\" : \""), first);
+    }
+}
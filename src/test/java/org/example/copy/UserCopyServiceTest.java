@@ -0,0 +1,181 @@
+package org.example.copy;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.dto.UserDto;
+import org.example.dto.UserImportResultDto;
+import org.example.entities.UserEntity;
+import org.example.entities.UserEventType;
+import org.example.entities.UserOutboxEntity;
+import org.example.repositories.UserOutboxRepository;
+import org.example.repositories.UserRepository;
+import org.example.services.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"users.copy.import-chunk-size=2", "users.copy.export-chunk-ids=2"})
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+class UserCopyServiceTest {
+
+    @Autowired
+    private UserCopyService userCopyService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserOutboxRepository outboxRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    void testImportUsers_UpsertsByEmailAndWritesOutboxEvents() {
+        userService.save(new UserEntity("Old", "name2@mail.ru", 30));
+        outboxRepository.deleteAll();
+
+        UserImportResultDto result = userCopyService.importUsers(UserCopyFormat.CSV, csv("""
+                email,name,age
+                Name1@mail.ru,Name1,18
+                NAME2@mail.ru,"Doe, J",
+                name3@mail.ru,Name3,22
+                """), 0);
+
+        assertEquals(3, result.getTotal());
+        assertEquals(3, result.getSaved());
+        assertEquals(2, result.getChunks().size());
+        assertTrue(result.getChunks().stream().allMatch(chunk -> chunk.isCommitted()));
+
+        UserEntity updated = userService.getByEmail("name2@mail.ru").orElseThrow();
+        assertEquals("Doe, J", updated.getName());
+        assertNull(updated.getAge());
+        assertEquals(1L, updated.getVersion());
+        assertEquals(3, userRepository.count());
+
+        Map<UserEventType, Long> events = outboxRepository.findAll().stream()
+                .collect(Collectors.groupingBy(UserOutboxEntity::getEventType, Collectors.counting()));
+        assertEquals(Map.of(UserEventType.CREATED, 2L, UserEventType.UPDATED, 1L), events);
+        // two chunks, two transactions
+        assertEquals(2, outboxRepository.findAll().stream().map(UserOutboxEntity::getCommitSeq).distinct()
+                .filter(Objects::nonNull).count());
+    }
+
+    @Test
+    void testImportUsers_ReportsBadRowsAndResumesFromSkip() {
+        UserImportResultDto result = userCopyService.importUsers(UserCopyFormat.CSV, csv("""
+                name,email,age
+                Name1,name1@mail.ru,18
+                NoEmail,,20
+                Name3,name3@mail.ru,old
+                Name4,name4@mail.ru,24
+                """), 1);
+
+        assertEquals(3, result.getTotal());
+        assertEquals(1, result.getSaved());
+        assertEquals(2, result.getRejected());
+        assertEquals(1, result.getChunks().get(0).getFirstRow());
+        assertTrue(result.getChunks().get(0).getErrors().get(0).contains("Строка 1: email не может быть пустым"));
+        assertTrue(result.getChunks().get(0).getErrors().get(1).contains("не является числом"));
+        assertTrue(userService.getByEmail("name1@mail.ru").isEmpty());
+        assertTrue(userService.getByEmail("name4@mail.ru").isPresent());
+    }
+
+    @Test
+    void testImportUsers_AcceptsNdjson() {
+        UserImportResultDto result = userCopyService.importUsers(UserCopyFormat.NDJSON, csv("""
+                {"name":"Name1","email":"name1@mail.ru","age":18}
+                {"name":"Name2","email":"name2@mail.ru","age":20}
+                """), 0);
+
+        assertEquals(2, result.getSaved());
+        assertEquals(2, userRepository.count());
+    }
+
+    @Test
+    void testImportUsers_ReportsMalformedNdjsonLinesAndImportsTheRest() {
+        UserImportResultDto result = userCopyService.importUsers(UserCopyFormat.NDJSON, csv("""
+                {"name":"Name1","email":"name1@mail.ru","age":18}
+                {"name":"Name2","email":"name2@mail.ru",
+                {"name":"Name3","email":"name3@mail.ru","age":"old"}
+
+                {"name":"Name4","email":"name4@mail.ru","age":24}
+                """), 0);
+
+        assertEquals(4, result.getTotal());
+        assertEquals(2, result.getSaved());
+        assertEquals(2, result.getRejected());
+        assertTrue(result.getChunks().get(0).getErrors().get(0).startsWith("Строка 1: некорректный JSON"));
+        assertTrue(result.getChunks().get(1).getErrors().get(0).startsWith("Строка 2: некорректный JSON"));
+        assertTrue(userService.getByEmail("name1@mail.ru").isPresent());
+        assertTrue(userService.getByEmail("name4@mail.ru").isPresent());
+    }
+
+    @Test
+    void testImportUsers_IdsDoNotCollideWithEntityInserts() {
+        userCopyService.importUsers(UserCopyFormat.CSV, csv("email\nname1@mail.ru\nname2@mail.ru\n"), 0);
+
+        UserEntity saved = new UserEntity("Name3", "name3@mail.ru", 22);
+        userService.save(saved);
+        userCopyService.importUsers(UserCopyFormat.CSV, csv("email\nname4@mail.ru\n"), 0);
+        userService.save(new UserEntity("Name5", "name5@mail.ru", 22));
+
+        assertNotNull(saved.getId());
+        assertEquals(5, userRepository.count());
+        assertEquals(5, outboxRepository.count());
+    }
+
+    @Test
+    void testExport_WritesCsvAndNdjsonInIdOrderAfterResumePoint() throws IOException {
+        List<UserEntity> users = List.of(
+                new UserEntity("Name1", "name1@mail.ru", 18),
+                new UserEntity("Doe, J", "name2@mail.ru", 20),
+                new UserEntity("Name3", "name3@mail.ru", 22));
+        users.forEach(userService::save);
+        int upperId = userCopyService.getExportUpperId();
+        assertEquals(users.get(2).getId(), upperId);
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        assertEquals(3, userCopyService.export(UserCopyFormat.CSV, 0, upperId, csv));
+        String[] lines = csv.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(UserCopyService.CSV_HEADER, lines[0]);
+        assertTrue(lines[2].startsWith(users.get(1).getId() + ",\"Doe, J\",name2@mail.ru,20,"));
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        assertEquals(2, userCopyService.export(UserCopyFormat.NDJSON, users.get(0).getId(), upperId, ndjson));
+        try (MappingIterator<UserDto> exported = objectMapper.readerFor(UserDto.class).readValues(ndjson.toByteArray())) {
+            List<UserDto> rows = exported.readAll();
+            assertEquals(List.of("name2@mail.ru", "name3@mail.ru"), rows.stream().map(UserDto::getEmail).toList());
+            assertNotNull(rows.get(0).getCreatedAt());
+        }
+    }
+
+    private InputStream csv(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.emailfilter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void testMightContain_NoFalseNegativesAndFalsePositivesNearTheConfiguredRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("user" + i + "@mail.ru");
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("user" + i + "@mail.ru"));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("absent" + i + "@mail.ru")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 100_000 * 0.015, "false positives " + falsePositives);
+        assertEquals(0.01, filter.expectedFpp(), 0.002);
+    }
+
+    @Test
+    void testNew_SizesBitsAndProbesForCapacityAndRate() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+
+        assertEquals(9600, filter.getBits());
+        assertEquals(7, filter.getProbes());
+        assertEquals(0, filter.getEntries());
+        assertFalse(filter.mightContain("user@mail.ru"));
+    }
+
+    @Test
+    void testNew_RejectsRateOutsideZeroAndOne() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(1000, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(1000, 1));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+    }
+}
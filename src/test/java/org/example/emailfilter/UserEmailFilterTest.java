@@ -0,0 +1,187 @@
+package org.example.emailfilter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.dto.UserEventDto;
+import org.example.config.UserEmailFilterProperties;
+import org.example.dto.UserLookupResultDto;
+import org.example.entities.UserEntity;
+import org.example.entities.UserEventType;
+import org.example.entities.UserOutboxEntity;
+import org.example.metrics.SqlStatementCounter;
+import org.example.repositories.UserOutboxRepository;
+import org.example.services.UserOutboxTail;
+import org.example.services.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "users.outbox.tail-interval=PT1H")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+class UserEmailFilterTest {
+
+    @Autowired
+    private UserEmailFilter emailFilter;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserOutboxTail outboxTail;
+
+    @Autowired
+    private UserOutboxRepository outboxRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserEmailFilterProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCache(UserService.USERS_BY_EMAIL_CACHE).clear();
+        outboxTail.poll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from user_outbox");
+        jdbcTemplate.update("delete from users");
+    }
+
+    @Test
+    void testGetByEmail_DefiniteMissIsAnsweredWithoutQuery() {
+        userService.save(new UserEntity("Name", "Known@Mail.ru", 20));
+        emailFilter.rebuild();
+        double skipped = meterRegistry.counter("users.email_filter.skipped_lookups").count();
+
+        SqlStatementCounter.reset();
+        assertTrue(userService.getByEmail("unknown@mail.ru").isEmpty());
+        assertFalse(userService.deleteByEmail("unknown@mail.ru"));
+        assertTrue(userService.updateUserByEmail("unknown@mail.ru", new UserEntity("New", "new@mail.ru", 21)).isEmpty());
+        assertEquals(0, SqlStatementCounter.current());
+
+        assertTrue(emailFilter.isReady());
+        assertEquals(skipped + 3, meterRegistry.counter("users.email_filter.skipped_lookups").count());
+        assertTrue(userService.getByEmail(" KNOWN@mail.ru").isPresent());
+    }
+
+    @Test
+    void testLookupByEmails_ReportsDefiniteMissesMissing() {
+        userService.save(new UserEntity("Name", "known@mail.ru", 20));
+        emailFilter.rebuild();
+
+        UserLookupResultDto result = userService.lookupByEmails(List.of("unknown@mail.ru", "known@mail.ru"));
+
+        assertEquals(List.of("known@mail.ru"), result.getFound().stream().map(user -> user.getEmail()).toList());
+        assertEquals(List.of("unknown@mail.ru"), result.getMissing());
+    }
+
+    @Test
+    void testSaveAndUpdate_AddEmailsToTheBuiltFilter() {
+        emailFilter.rebuild();
+
+        userService.save(new UserEntity("Name", "created@mail.ru", 20));
+        userService.updateUserByEmail("created@mail.ru", new UserEntity("New", "renamed@mail.ru", 21));
+
+        assertTrue(emailFilter.mightExist("created@mail.ru"));
+        assertEquals("New", userService.getByEmail("renamed@mail.ru").orElseThrow().getName());
+    }
+
+    @Test
+    void testRebuild_DropsDeletedEmails() {
+        userService.save(new UserEntity("Name", "deleted@mail.ru", 20));
+        emailFilter.rebuild();
+
+        assertTrue(userService.deleteByEmail("deleted@mail.ru"));
+        assertTrue(emailFilter.mightExist("deleted@mail.ru"));
+        emailFilter.rebuild();
+
+        assertFalse(emailFilter.mightExist("deleted@mail.ru"));
+    }
+
+    @Test
+    void testTail_AddsEmailsCreatedByOtherWriters() throws Exception {
+        emailFilter.rebuild();
+        createByOtherWriter(LocalDateTime.now());
+        assertFalse(emailFilter.mightExist("other@mail.ru"));
+
+        outboxTail.poll();
+
+        assertEquals("Other", userService.getByEmail("other@mail.ru").orElseThrow().getName());
+    }
+
+    @Test
+    void testGetByEmail_DefiniteMissIsNotCached() throws Exception {
+        emailFilter.rebuild();
+        assertTrue(userService.getByEmail("other@mail.ru").isEmpty());
+        createByOtherWriter(LocalDateTime.now());
+
+        outboxTail.poll();
+
+        assertNull(cacheManager.getCache(UserService.USERS_BY_EMAIL_CACHE).get("other@mail.ru"));
+        assertEquals("Other", userService.getByEmail("other@mail.ru").orElseThrow().getName());
+    }
+
+    @Test
+    void testMightExist_FilterThatHasNotCaughtUpRulesNothingOut() {
+        emailFilter.rebuild();
+        assertFalse(emailFilter.mightExist("unknown@mail.ru"));
+        Duration maxLag = properties.getMaxLag();
+        properties.setMaxLag(Duration.ZERO);
+        try {
+            assertTrue(emailFilter.mightExist("unknown@mail.ru"));
+            assertFalse(emailFilter.isRuledOut("unknown@mail.ru"));
+        } finally {
+            properties.setMaxLag(maxLag);
+        }
+    }
+
+    @Test
+    void testTail_AddsEmailsWhateverTheirEventTime() throws Exception {
+        emailFilter.rebuild();
+        // a transaction that committed long after its insert, or a writer whose clock is behind
+        createByOtherWriter(LocalDateTime.now().minusHours(1));
+
+        outboxTail.poll();
+
+        assertTrue(emailFilter.mightExist("other@mail.ru"));
+        assertEquals("Other", userService.getByEmail("other@mail.ru").orElseThrow().getName());
+    }
+
+    /** Writes the user and its event the way another instance would, without this instance's filter. */
+    private void createByOtherWriter(LocalDateTime eventTime) throws Exception {
+        int id = 1_000_000;
+        jdbcTemplate.update("insert into users (id, name, email, age, created_at, version) values (?, 'Other', 'other@mail.ru', 30, ?, 0)",
+                id, LocalDateTime.now());
+        jdbcTemplate.update("update users_change_marker set marker = marker + 1 where id = 1");
+        UserOutboxEntity event = new UserOutboxEntity(id, UserEventType.CREATED,
+                objectMapper.writeValueAsString(new UserEventDto(UserEventType.CREATED, id, "other@mail.ru")));
+        event.setCommitSeq(jdbcTemplate.queryForObject("select marker from users_change_marker where id = 1", Long.class));
+        outboxRepository.save(event);
+        jdbcTemplate.update("update user_outbox set created_at = ? where id = ?", eventTime, event.getId());
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.feed;
+
+import org.example.entities.UserEntity;
+import org.example.repositories.UserOutboxRepository;
+import org.example.repositories.UserRepository;
+import org.example.services.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@AutoConfigureMockMvc
+class UserChangeFeedEventsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserOutboxRepository outboxRepository;
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    void testChangesEndpoint_StreamsCommittedChangesOnly() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v1/users/changes"))
+                .andExpect(request().asyncStarted())
+                .andExpect(header().string("Cache-Control", "no-store"))
+                .andReturn();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            userService.save(new UserEntity("Rolled back", "rollback@mail.ru", 20));
+            status.setRollbackOnly();
+        });
+        userService.save(new UserEntity("Name", "feed@mail.ru", 20));
+        userService.deleteByEmail("feed@mail.ru");
+
+        await().until(() -> result.getResponse().getContentAsString().contains("event:DELETED"));
+        String body = result.getResponse().getContentAsString();
+        assertTrue(body.indexOf("event:CREATED") < body.indexOf("event:DELETED"));
+        assertTrue(body.contains("\"email\":\"feed@mail.ru\""));
+        assertFalse(body.contains("rollback@mail.ru"));
+    }
+}
@@ -0,0 +1,221 @@
+package org.example.feed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.config.UserFeedProperties;
+import org.example.dto.UserEventDto;
+import org.example.entities.UserEventType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+class UserChangeFeedTest {
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService closer = Executors.newCachedThreadPool();
+    private ThreadPoolExecutor sender;
+    private UserFeedProperties properties;
+    private UserChangeFeed feed;
+    private MockMvc mockMvc;
+
+    @RestController
+    static class FeedEndpoint {
+        private final UserChangeFeed feed;
+
+        FeedEndpoint(UserChangeFeed feed) {
+            this.feed = feed;
+        }
+
+        @GetMapping("/changes")
+        SseEmitter changes(@RequestParam(required = false) Long after) {
+            return feed.subscribe(after);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        properties = new UserFeedProperties();
+        properties.setHistory(4);
+        properties.setSubscriberBuffer(3);
+        properties.setHeartbeat(Duration.ofHours(1));
+        properties.setSenderThreads(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sender.shutdownNow();
+        timer.shutdownNow();
+        closer.shutdownNow();
+    }
+
+    @Test
+    void testSubscribe_StartsWithResetAndThenStreamsCommittedChanges() throws Exception {
+        start();
+
+        MvcResult result = subscribe(null);
+        await().until(() -> content(result).contains("event:reset"));
+        feed.onUserEvent(event(UserEventType.CREATED, 1, "name1@mail.ru"));
+
+        await().until(() -> content(result).contains("event:CREATED"));
+        String body = content(result);
+        long resetId = id(body, 0);
+        assertEquals(resetId + 1, id(body, 1));
+        assertTrue(body.contains("\"email\":\"name1@mail.ru\""));
+        assertEquals(1, feed.getSubscribers());
+    }
+
+    @Test
+    void testSubscribe_ResumesAfterLastSeenChange() throws Exception {
+        start();
+        MvcResult first = subscribe(null);
+        feed.onUserEvent(event(UserEventType.CREATED, 1, "name1@mail.ru"));
+        feed.onUserEvent(event(UserEventType.UPDATED, 1, "name1@mail.ru"));
+        feed.onUserEvent(event(UserEventType.DELETED, 1, "name1@mail.ru"));
+        await().until(() -> content(first).contains("event:DELETED"));
+        long created = id(content(first), 1);
+
+        MvcResult resumed = subscribe(created);
+
+        await().until(() -> content(resumed).contains("event:DELETED"));
+        String body = content(resumed);
+        assertFalse(body.contains("event:reset"));
+        assertFalse(body.contains("event:CREATED"));
+        assertEquals(created + 1, id(body, 0));
+        assertEquals(created + 2, id(body, 1));
+    }
+
+    @Test
+    void testSubscribe_ResetsWhenLastSeenChangeIsNoLongerKept() throws Exception {
+        properties.setSubscriberBuffer(10);
+        start();
+        MvcResult first = subscribe(null);
+        for (int i = 0; i < 6; i++) {
+            feed.onUserEvent(event(UserEventType.CREATED, i, "name" + i + "@mail.ru"));
+        }
+        await().until(() -> content(first).contains("name5@mail.ru"));
+
+        MvcResult resumed = subscribe(id(content(first), 1));
+
+        await().until(() -> content(resumed).contains("event:reset"));
+        assertFalse(content(resumed).contains("event:CREATED"));
+    }
+
+    @Test
+    void testPublish_DisconnectsSubscriberThatFallsBehind() throws Exception {
+        start();
+        CountDownLatch blocked = new CountDownLatch(1);
+        sender.execute(() -> awaitQuietly(blocked));
+        sender.execute(() -> awaitQuietly(blocked));
+        MvcResult slow = subscribe(null);
+
+        // the reset and two changes fill the buffer of 3, the third change does not fit
+        for (int i = 0; i < 3; i++) {
+            feed.onUserEvent(event(UserEventType.CREATED, i, "name" + i + "@mail.ru"));
+        }
+        blocked.countDown();
+
+        assertEquals(0, feed.getSubscribers());
+        assertEquals(1.0, meterRegistry.get("users.feed.slow_consumers").counter().count());
+        // completes the response without writing what was still queued
+        slow.getAsyncResult(5000);
+        assertFalse(content(slow).contains("event:CREATED"));
+    }
+
+    @Test
+    void testSend_DisconnectsSubscriberWhoseWriteTimesOutWithoutStallingOthers() throws Exception {
+        properties.setSenderThreads(1);
+        properties.setWriteTimeout(Duration.ofMillis(200));
+        CountDownLatch stalled = new CountDownLatch(1);
+        AtomicInteger emitters = new AtomicInteger();
+        sender = UserChangeFeed.newSender(properties);
+        feed = new UserChangeFeed(properties, new ObjectMapper().findAndRegisterModules(), meterRegistry, sender, timer, closer) {
+            @Override
+            SseEmitter newEmitter(long timeout) {
+                if (emitters.incrementAndGet() > 1) {
+                    return super.newEmitter(timeout);
+                }
+                // a client that stopped reading: its first write never returns on its own
+                return new SseEmitter(timeout) {
+                    @Override
+                    public void send(Set<DataWithMediaType> frame) throws IOException {
+                        awaitQuietly(stalled);
+                        throw new IOException("Broken pipe");
+                    }
+                };
+            }
+        };
+        mockMvc = MockMvcBuilders.standaloneSetup(new FeedEndpoint(feed)).build();
+        MvcResult stalledClient = subscribe(null);
+        MvcResult client = subscribe(null);
+
+        feed.onUserEvent(event(UserEventType.CREATED, 1, "name1@mail.ru"));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> content(client).contains("event:CREATED"));
+        assertEquals(1, feed.getSubscribers());
+        assertEquals(1.0, meterRegistry.get("users.feed.write_timeouts").counter().count());
+        assertEquals(2, sender.getCorePoolSize());
+        stalled.countDown();
+        await().atMost(Duration.ofSeconds(5)).until(() -> sender.getCorePoolSize() == 1);
+        assertFalse(content(stalledClient).contains("event:CREATED"));
+    }
+
+    private void start() {
+        sender = UserChangeFeed.newSender(properties);
+        feed = new UserChangeFeed(properties, new ObjectMapper().findAndRegisterModules(), meterRegistry, sender, timer, closer);
+        mockMvc = MockMvcBuilders.standaloneSetup(new FeedEndpoint(feed)).build();
+    }
+
+    private MvcResult subscribe(Long after) throws Exception {
+        return mockMvc.perform(after == null ? get("/changes") : get("/changes").param("after", after.toString()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    private static String content(MvcResult result) throws Exception {
+        return result.getResponse().getContentAsString();
+    }
+
+    /** The SSE id of the {@code index}-th event in the body. */
+    private static long id(String body, int index) {
+        return body.lines().filter(line -> line.startsWith("id:"))
+                .skip(index).findFirst().map(line -> Long.parseLong(line.substring(3))).orElseThrow();
+    }
+
+    private static UserEventDto event(UserEventType type, int id, String email) {
+        UserEventDto event = new UserEventDto(type, id, email);
+        event.setName("Name");
+        event.setAge(20);
+        return event;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.example.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserErrorMetricsTest {
+
+    @Test
+    void testRecord_TagsOperationExceptionAndRootCause() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UserErrorMetrics errorMetrics = new UserErrorMetrics(meterRegistry);
+
+        errorMetrics.record("getByEmail", new RuntimeException("wrapped", new IllegalStateException(new SQLException())));
+
+        assertEquals(1, meterRegistry.get("users.errors")
+                .tag("operation", "getByEmail")
+                .tag("exception", "RuntimeException")
+                .tag("cause", "SQLException")
+                .counter().count());
+    }
+}
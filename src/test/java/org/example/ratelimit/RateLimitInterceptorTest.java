@@ -0,0 +1,159 @@
+package org.example.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.config.RateLimitProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+class RateLimitInterceptorTest {
+
+    @RestController
+    static class TestController {
+        @GetMapping("/api/v1/users")
+        String list() {
+            return "[]";
+        }
+
+        @GetMapping("/api/v1/users/{email}")
+        String get(@PathVariable String email) {
+            return email;
+        }
+    }
+
+    private final AtomicLong clock = new AtomicLong();
+    private RateLimitProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimiter rateLimiter;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RateLimitProperties();
+        properties.getTrustedProxies().add("127.0.0.1");
+        RateLimitProperties.Rule list = new RateLimitProperties.Rule();
+        list.setPattern("/api/v1/users");
+        list.setMethod("GET");
+        list.setClientRate(1);
+        list.setClientBurst(2);
+        list.setMaxConcurrent(1);
+        properties.getRules().put("list", list);
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimiter = new RateLimiter(properties, meterRegistry, clock::get);
+        mockMvc = MockMvcBuilders.standaloneSetup(new TestController())
+                .addMappedInterceptors(new String[]{"/api/**"}, new RateLimitInterceptor(rateLimiter))
+                .build();
+    }
+
+    @Test
+    void testClientOverLimit_GetsTooManyRequestsWithRetryAfter() throws Exception {
+        mockMvc.perform(get("/api/v1/users").header("X-Client-Id", "a")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/v1/users").header("X-Client-Id", "a")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/v1/users").header("X-Client-Id", "a"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"));
+
+        mockMvc.perform(get("/api/v1/users").header("X-Client-Id", "b")).andExpect(status().isOk());
+        assertEquals(1, meterRegistry.get("users.ratelimit.rejected")
+                .tags("rule", "list", "reason", RateLimiter.REASON_CLIENT).counter().count());
+
+        clock.addAndGet(1_000_000_000L);
+        mockMvc.perform(get("/api/v1/users").header("X-Client-Id", "a")).andExpect(status().isOk());
+    }
+
+    @Test
+    void testClientHeaderFromUntrustedAddress_IsIgnored() throws Exception {
+        for (String client : List.of("a", "b")) {
+            mockMvc.perform(get("/api/v1/users").header("X-Client-Id", client).with(remoteAddr("10.0.0.7")))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/api/v1/users").header("X-Client-Id", "c").with(remoteAddr("10.0.0.7")))
+                .andExpect(status().isTooManyRequests());
+
+        mockMvc.perform(get("/api/v1/users").with(remoteAddr("10.0.0.8"))).andExpect(status().isOk());
+    }
+
+    @Test
+    void testEndpointWithoutRule_IsNotLimited() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(get("/api/v1/users/name@mail.ru").header("X-Client-Id", "a")).andExpect(status().isOk());
+        }
+    }
+
+    @Test
+    void testEndpointLimit_IsSharedByAllClients() throws Exception {
+        properties.getRules().get("list").setEndpointRate(1);
+        properties.getRules().get("list").setEndpointBurst(1);
+        rateLimiter.reload();
+
+        mockMvc.perform(get("/api/v1/users").header("X-Client-Id", "a")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/v1/users").header("X-Client-Id", "b")).andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void testConcurrencyCap_RejectsWhileFullAndReleasesOnCompletion() throws Exception {
+        RateLimitDecision inFlight = rateLimiter.acquire("GET", "/api/v1/users", "a");
+        assertTrue(inFlight.isAllowed());
+
+        mockMvc.perform(get("/api/v1/users").header("X-Client-Id", "b")).andExpect(status().isTooManyRequests());
+
+        inFlight.release();
+        mockMvc.perform(get("/api/v1/users").header("X-Client-Id", "b")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/v1/users").header("X-Client-Id", "b")).andExpect(status().isOk());
+    }
+
+    @Test
+    void testEndpointUpdate_ChangesLimitsAtRuntime() throws Exception {
+        new RateLimitEndpoint(rateLimiter).update("list", null, null, null, 5, null, null, null);
+
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(get("/api/v1/users").header("X-Client-Id", "a")).andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/api/v1/users").header("X-Client-Id", "a")).andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void testEndpointUpdate_ReplacesTheRuleWithoutChangingEarlierReads() {
+        RateLimitEndpoint endpoint = new RateLimitEndpoint(rateLimiter);
+        Map<String, RateLimitProperties.Rule> before = endpoint.rules();
+
+        RateLimitProperties.Rule updated = endpoint.update("list", null, null, 3.0, null, null, null, null);
+        endpoint.update("item", "/api/v1/users/{email}", null, null, null, 1.0, null, null);
+
+        assertEquals(1, before.get("list").getClientRate());
+        assertEquals(1, before.size());
+        assertEquals(3, updated.getClientRate());
+        assertEquals(2, updated.getClientBurst());
+        assertEquals(List.of("list", "item"), List.copyOf(endpoint.rules().keySet()));
+    }
+
+    @Test
+    void testDisabled_LetsEverythingThrough() throws Exception {
+        properties.setEnabled(false);
+
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(get("/api/v1/users").header("X-Client-Id", "a")).andExpect(status().isOk());
+        }
+    }
+
+    private static RequestPostProcessor remoteAddr(String address) {
+        return request -> {
+            request.setRemoteAddr(address);
+            return request;
+        };
+    }
+}
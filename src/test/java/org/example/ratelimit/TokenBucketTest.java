@@ -0,0 +1,71 @@
+package org.example.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TokenBucketTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void testTryAcquire_BurstThenWait() {
+        TokenBucket bucket = new TokenBucket(2, 3, 0);
+
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(SECOND / 2, bucket.tryAcquire(0));
+    }
+
+    @Test
+    void testTryAcquire_RefillsAtRate() {
+        TokenBucket bucket = new TokenBucket(2, 1, 0);
+
+        assertEquals(0, bucket.tryAcquire(0));
+        assertTrue(bucket.tryAcquire(SECOND / 4) > 0);
+        assertEquals(0, bucket.tryAcquire(SECOND / 2));
+        assertEquals(0, bucket.tryAcquire(10 * SECOND));
+        assertTrue(bucket.tryAcquire(10 * SECOND) > 0);
+    }
+
+    @Test
+    void testTryAcquire_ConcurrentCallersNeverExceedBurst() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1, 100, 0);
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < 1000; j++) {
+                    if (bucket.tryAcquire(0) == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(100, granted.get());
+    }
+
+    @Test
+    void testConstructor_RejectsNonPositiveLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0, 0));
+    }
+}
@@ -0,0 +1,17 @@
+package org.example.repositories;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+public class RecordingStatementInspector implements StatementInspector {
+    private static volatile String last;
+
+    @Override
+    public String inspect(String sql) {
+        last = sql;
+        return sql;
+    }
+
+    public static String last() {
+        return last;
+    }
+}
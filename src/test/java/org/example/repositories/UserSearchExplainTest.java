@@ -0,0 +1,112 @@
+package org.example.repositories;
+
+import org.example.dto.UserDto;
+import org.example.dto.UserSearchCriteria;
+import org.example.dto.UserSearchSort;
+import org.example.utils.UserSearchCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs every search shape against Postgres with the indexes from schema-postgresql.sql and fails when the plan
+ * of the generated SQL contains a sequential scan. Criteria values are inlined so the planner sees real constants.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.criteria.value_handling_mode=inline",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=org.example.repositories.RecordingStatementInspector",
+        "users.outbox.relay-enabled=false"
+})
+@Testcontainers(disabledWithoutDocker = true)
+class UserSearchExplainTest {
+    private static final int ROWS = 50000;
+    private static final int LIMIT = 100;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        if (userRepository.count() > 0) {
+            return;
+        }
+        jdbcTemplate.update("insert into users (id, name, email, age, created_at) "
+                + "select g, 'Name' || g, 'user' || g || '@mail.ru', 18 + g % 50, "
+                + "localtimestamp - g * interval '1 minute' from generate_series(1, ?) g", ROWS);
+        jdbcTemplate.execute("vacuum analyze users");
+    }
+
+    @Test
+    void testAgeAndCreatedRange_SortedByCreatedAtDesc() {
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        criteria.setMinAge(18);
+        criteria.setMaxAge(25);
+        criteria.setCreatedFrom(LocalDateTime.now().minusWeeks(1));
+        criteria.setSort(UserSearchSort.CREATED_AT);
+        criteria.setDescending(true);
+
+        assertNoSeqScan(criteria, null);
+    }
+
+    @Test
+    void testNamePrefix() {
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        criteria.setNamePrefix("Name12");
+
+        assertNoSeqScan(criteria, null);
+    }
+
+    @Test
+    void testCreatedRange_NextPage() {
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        criteria.setCreatedFrom(LocalDateTime.now().minusDays(3));
+        criteria.setCreatedTo(LocalDateTime.now().minusDays(1));
+        criteria.setSort(UserSearchSort.CREATED_AT);
+        List<UserDto> first = userRepository.search(criteria, null, LIMIT);
+
+        assertNoSeqScan(criteria, UserSearchCursor.after(UserSearchSort.CREATED_AT, false, first.get(first.size() - 1)));
+    }
+
+    @Test
+    void testIdOrder_NextPage() {
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        criteria.setDescending(true);
+
+        assertNoSeqScan(criteria, UserSearchCursor.after(UserSearchSort.ID, true, new UserDto(25000, null, null, null, null)));
+    }
+
+    private void assertNoSeqScan(UserSearchCriteria criteria, UserSearchCursor after) {
+        assertFalse(userRepository.search(criteria, after, LIMIT).isEmpty());
+        String sql = RecordingStatementInspector.last().replace("?", String.valueOf(LIMIT));
+
+        String plan = String.join("\n", jdbcTemplate.queryForList("explain (format json) " + sql, String.class));
+
+        assertFalse(plan.contains("\"Seq Scan\""), () -> "Sequential scan in plan of " + sql + "\n" + plan);
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.services;
+
+import org.example.entities.UserEntity;
+import org.example.repositories.UserOutboxRepository;
+import org.example.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Archives into the partitioned users_archive of schema-postgresql.sql: one partition per month is created on
+ * demand, and a query with a created_at window only scans the partitions of that window.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "users.outbox.relay-enabled=false",
+        "users.archive.batch-size=50"
+})
+@Testcontainers(disabledWithoutDocker = true)
+class UserArchivePostgresTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 1, 12, 0);
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private UserArchiveService userArchiveService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserOutboxRepository outboxRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+        outboxRepository.deleteAll();
+        jdbcTemplate.update("delete from users_archive");
+    }
+
+    @Test
+    void testArchive_CreatesMonthlyPartitionsAndPrunesByCreatedAt() {
+        for (int i = 0; i < 120; i++) {
+            UserEntity user = new UserEntity("Name" + i, "user" + i + "@mail.ru", 30);
+            userService.save(user);
+            jdbcTemplate.update("update users set created_at = ? where id = ?", NOW.minusMonths(16).plusDays(i), user.getId());
+        }
+
+        assertEquals(120, userArchiveService.archive(NOW.minusMonths(12)));
+
+        List<String> partitions = jdbcTemplate.queryForList("select inhrelid::regclass::text from pg_inherits "
+                + "where inhparent = 'users_archive'::regclass order by 1", String.class);
+        assertEquals(List.of("users_archive_y2025m06", "users_archive_y2025m07", "users_archive_y2025m08",
+                "users_archive_y2025m09", "users_archive_y2025m10"), partitions);
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from users", Integer.class));
+
+        String plan = String.join("\n", jdbcTemplate.queryForList("explain select id, name, email, age, created_at "
+                + "from users_archive where created_at >= '2025-07-01' and created_at < '2025-08-01' "
+                + "order by created_at, id limit 100", String.class));
+        assertTrue(plan.contains("users_archive_y2025m07"), plan);
+        assertFalse(plan.contains("users_archive_y2025m06") || plan.contains("users_archive_y2025m08"), plan);
+        assertEquals(31, userArchiveService.searchArchive(LocalDateTime.of(2025, 7, 1, 0, 0),
+                LocalDateTime.of(2025, 8, 1, 0, 0), null, 100).size());
+    }
+}
@@ -0,0 +1,121 @@
+package org.example.services;
+
+import org.example.dto.UserDto;
+import org.example.dto.UserSearchSort;
+import org.example.entities.UserEntity;
+import org.example.entities.UserEventType;
+import org.example.entities.UserOutboxEntity;
+import org.example.repositories.UserOutboxRepository;
+import org.example.repositories.UserRepository;
+import org.example.utils.UserSearchCursor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "users.archive.batch-size=3")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+class UserArchiveServiceTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 1, 12, 0);
+
+    @Autowired
+    private UserArchiveService userArchiveService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserOutboxRepository outboxRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+        outboxRepository.deleteAll();
+        jdbcTemplate.update("delete from users_archive");
+        cacheManager.getCache(UserService.USERS_BY_EMAIL_CACHE).clear();
+    }
+
+    @Test
+    void testArchive_MovesUsersOlderThanCutoffInBatches() {
+        for (int i = 0; i < 7; i++) {
+            createdAt(save("old" + i + "@mail.ru"), NOW.minusMonths(14).plusDays(i * 10));
+        }
+        createdAt(save("new@mail.ru"), NOW.minusMonths(1));
+        assertTrue(userService.getByEmail("old0@mail.ru").isPresent());
+        outboxRepository.deleteAll();
+
+        long archived = userArchiveService.archive(NOW.minusMonths(12));
+
+        assertEquals(7, archived);
+        assertEquals(List.of("new@mail.ru"), userRepository.findAll().stream().map(UserEntity::getEmail).toList());
+        assertEquals(7, jdbcTemplate.queryForObject("select count(*) from users_archive", Integer.class));
+        assertTrue(userService.getByEmail("old0@mail.ru").isEmpty());
+        List<UserOutboxEntity> events = outboxRepository.findAll();
+        assertEquals(7, events.size());
+        assertTrue(events.stream().allMatch(event -> event.getEventType() == UserEventType.ARCHIVED));
+        assertEquals(0, userArchiveService.archive(NOW.minusMonths(12)));
+    }
+
+    @Test
+    void testArchive_ArchivedEmailCanBeRegisteredAgain() {
+        createdAt(save("again@mail.ru"), NOW.minusYears(2));
+        userArchiveService.archive(NOW.minusYears(1));
+
+        save("again@mail.ru");
+
+        assertTrue(userService.getByEmail("again@mail.ru").isPresent());
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from users_archive where email = 'again@mail.ru'", Integer.class));
+    }
+
+    @Test
+    void testSearchArchive_ReturnsWindowInCreatedAtOrderPageByPage() {
+        for (int i = 0; i < 10; i++) {
+            createdAt(save("window" + i + "@mail.ru"), NOW.minusMonths(20 - i));
+        }
+        userArchiveService.archive(NOW.minusMonths(12));
+        LocalDateTime from = NOW.minusMonths(18);
+        LocalDateTime to = NOW.minusMonths(13);
+
+        List<String> emails = new ArrayList<>();
+        UserSearchCursor cursor = null;
+        List<UserDto> page;
+        do {
+            page = userArchiveService.searchArchive(from, to, cursor, 2);
+            page.forEach(user -> emails.add(user.getEmail()));
+            cursor = page.isEmpty() ? cursor : UserSearchCursor.after(UserSearchSort.CREATED_AT, false, page.get(page.size() - 1));
+        } while (page.size() == 2);
+
+        assertEquals(List.of("window2@mail.ru", "window3@mail.ru", "window4@mail.ru", "window5@mail.ru", "window6@mail.ru"), emails);
+        assertThrows(RuntimeException.class, () -> userArchiveService.searchArchive(to, from, null, 2));
+    }
+
+    private UserEntity save(String email) {
+        UserEntity user = new UserEntity("Name", email, 30);
+        userService.save(user);
+        return user;
+    }
+
+    private void createdAt(UserEntity user, LocalDateTime createdAt) {
+        jdbcTemplate.update("update users set created_at = ? where id = ?", createdAt, user.getId());
+    }
+}
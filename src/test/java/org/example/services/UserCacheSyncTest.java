@@ -0,0 +1,96 @@
+package org.example.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.dto.UserEventDto;
+import org.example.entities.UserEntity;
+import org.example.entities.UserEventType;
+import org.example.entities.UserOutboxEntity;
+import org.example.repositories.UserOutboxRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"users.outbox.tail-interval=PT1H", "users.email-filter.enabled=false"})
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+class UserCacheSyncTest {
+
+    @Autowired
+    private UserOutboxTail outboxTail;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserOutboxRepository outboxRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCache(UserService.USERS_BY_EMAIL_CACHE).clear();
+        outboxTail.poll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from user_outbox");
+        jdbcTemplate.update("delete from users");
+    }
+
+    @Test
+    void testPoll_EvictsCachedMissOfUserCreatedByAnotherWriter() throws Exception {
+        assertTrue(userService.getByEmail("other@mail.ru").isEmpty());
+        int id = 1_000_000;
+        jdbcTemplate.update("insert into users (id, name, email, age, created_at, version) values (?, 'Other', 'other@mail.ru', 30, ?, 0)",
+                id, LocalDateTime.now());
+        recordEvent(new UserEventDto(UserEventType.CREATED, id, "other@mail.ru"));
+        assertTrue(userService.getByEmail("other@mail.ru").isEmpty());
+
+        outboxTail.poll();
+
+        assertEquals("Other", userService.getByEmail("other@mail.ru").orElseThrow().getName());
+    }
+
+    @Test
+    void testPoll_EvictsBothEmailsOfUserRenamedByAnotherWriter() throws Exception {
+        UserEntity user = new UserEntity("Name", "before@mail.ru", 20);
+        userService.save(user);
+        outboxTail.poll();
+        assertTrue(userService.getByEmail("before@mail.ru").isPresent());
+        assertTrue(userService.getByEmail("after@mail.ru").isEmpty());
+        jdbcTemplate.update("update users set email = 'after@mail.ru', version = version + 1 where id = ?", user.getId());
+        UserEventDto renamed = new UserEventDto(UserEventType.UPDATED, user.getId(), "after@mail.ru");
+        renamed.setPreviousEmail("before@mail.ru");
+        recordEvent(renamed);
+
+        outboxTail.poll();
+
+        assertTrue(userService.getByEmail("before@mail.ru").isEmpty());
+        assertEquals(user.getId(), userService.getByEmail("after@mail.ru").orElseThrow().getId());
+    }
+
+    private void recordEvent(UserEventDto event) throws Exception {
+        jdbcTemplate.update("update users_change_marker set marker = marker + 1 where id = 1");
+        UserOutboxEntity outbox = new UserOutboxEntity(event.getId(), event.getType(), objectMapper.writeValueAsString(event));
+        outbox.setCommitSeq(jdbcTemplate.queryForObject("select marker from users_change_marker where id = 1", Long.class));
+        outboxRepository.save(outbox);
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+class UserChangeMarkerTest {
+
+    @Autowired
+    private UserChangeMarker changeMarker;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void testIncrement_OncePerTransaction() {
+        long before = changeMarker.current();
+
+        Long marker = transactionTemplate.execute(status -> {
+            long first = changeMarker.increment();
+            assertEquals(first, changeMarker.increment());
+            return first;
+        });
+
+        assertEquals(before + 1, marker);
+        assertEquals(before + 1, changeMarker.current());
+    }
+
+    @Test
+    void testIncrement_WaitsForTheHolderToCommit() throws Exception {
+        CountDownLatch incremented = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        CompletableFuture<Long> holder = CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status -> {
+            long marker = changeMarker.increment();
+            incremented.countDown();
+            await(commit);
+            return marker;
+        }));
+        assertTrue(incremented.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture<Long> next = CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status -> changeMarker.increment()));
+        Thread.sleep(300);
+        assertFalse(next.isDone());
+        commit.countDown();
+
+        assertEquals(holder.get(10, TimeUnit.SECONDS) + 1, next.get(10, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.services;
+
+import org.example.dto.UserDto;
+import org.example.dto.UserImportChunkDto;
+import org.example.dto.UserImportResultDto;
+import org.example.entities.UserEntity;
+import org.example.repositories.UserOutboxRepository;
+import org.example.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "users.import.chunk-size=2")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+class UserImportServiceTest {
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserOutboxRepository outboxRepository;
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    void testImportUsers_SavesInChunks() {
+        UserImportResultDto result = userImportService.importUsers(List.of(
+                new UserDto("Name1", "Name1@mail.ru", 18),
+                new UserDto("Name2", "Name2@mail.ru", 20),
+                new UserDto("Name3", "Name3@mail.ru", 22)).iterator());
+
+        assertEquals(3, result.getTotal());
+        assertEquals(3, result.getSaved());
+        assertEquals(0, result.getRejected());
+        assertEquals(2, result.getChunks().size());
+        assertEquals(2, result.getChunks().get(1).getFirstRow());
+        assertEquals(3, userRepository.count());
+        assertEquals(3, outboxRepository.count());
+        assertTrue(userService.getByEmail("name3@mail.ru").isPresent());
+    }
+
+    @Test
+    void testImportUsers_RejectsInvalidRowsAndKeepsValidOnes() {
+        UserImportResultDto result = userImportService.importUsers(List.of(
+                new UserDto("Name1", "Name1@mail.ru", 18),
+                new UserDto("Name1Again", "NAME1@mail.ru", 22),
+                new UserDto("NoEmail", null, 20)).iterator());
+
+        assertEquals(1, result.getSaved());
+        assertEquals(2, result.getRejected());
+        assertTrue(result.getChunks().get(0).getErrors().get(0).contains("повторяется"));
+        assertTrue(result.getChunks().get(1).getErrors().get(0).contains("email не может быть пустым"));
+        assertEquals(1, userRepository.count());
+    }
+
+    @Test
+    void testImportUsers_RollsBackChunkWithExistingEmail() {
+        userService.save(new UserEntity("Existing", "Name2@mail.ru", 30));
+
+        UserImportResultDto result = userImportService.importUsers(List.of(
+                new UserDto("Name1", "Name1@mail.ru", 18),
+                new UserDto("Name2", "Name2@mail.ru", 20),
+                new UserDto("Name3", "Name3@mail.ru", 22)).iterator());
+
+        UserImportChunkDto failed = result.getChunks().get(0);
+        assertFalse(failed.isCommitted());
+        assertEquals(2, failed.getRejected());
+        assertTrue(result.getChunks().get(1).isCommitted());
+        assertEquals(2, userRepository.count());
+        assertTrue(userService.getByEmail("Name1@mail.ru").isEmpty());
+    }
+
+    @Test
+    void testImportUsers_NullUsers_ThrowsException() {
+        Exception exception = assertThrows(RuntimeException.class, () -> userImportService.importUsers(null));
+        assertTrue(exception.getMessage().contains("Ошибка при импорте пользователей"));
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.services;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.example.entities.UserEntity;
+import org.example.entities.UserEventType;
+import org.example.entities.UserOutboxEntity;
+import org.example.repositories.UserOutboxRepository;
+import org.example.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"users.outbox.batch-size=2", "users.outbox.send-timeout=1s"})
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+class UserOutboxRelayTest {
+
+    @TestConfiguration
+    static class BrokerStandIn {
+        @Bean
+        MockProducer<String, String> mockProducer() {
+            return new MockProducer<>(true, new StringSerializer(), new StringSerializer()) {
+                @Override
+                public void close(Duration timeout) {
+                    // KafkaTemplate closes the producer after every send; the stand-in must keep its history
+                }
+            };
+        }
+
+        @Bean
+        KafkaTemplate<String, String> kafkaTemplate(MockProducer<String, String> mockProducer) {
+            return new KafkaTemplate<>(() -> mockProducer);
+        }
+    }
+
+    @Autowired
+    private UserOutboxRelay relay;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserOutboxRepository outboxRepository;
+
+    @Autowired
+    private MockProducer<String, String> mockProducer;
+
+    @BeforeEach
+    void setUp() {
+        mockProducer.clear();
+        mockProducer.sendException = null;
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    void testPublishBatch_SendsInOrderKeyedByUserAndMarksPublished() {
+        UserEntity user = new UserEntity("Name", "relay@mail.ru", 20);
+        userService.save(user);
+        userService.updateUserByEmail("relay@mail.ru", new UserEntity("Name2", "relay2@mail.ru", 21));
+        userService.deleteByEmail("relay2@mail.ru");
+
+        assertEquals(2, relay.publishBatch());
+        assertEquals(1, relay.publishBatch());
+        assertEquals(0, relay.publishBatch());
+
+        List<ProducerRecord<String, String>> sent = mockProducer.history();
+        assertEquals(List.of("CREATED", "UPDATED", "DELETED"), sent.stream()
+                .map(record -> new String(record.headers().lastHeader(UserOutboxRelay.EVENT_TYPE_HEADER).value(),
+                        StandardCharsets.UTF_8))
+                .toList());
+        assertTrue(sent.stream().allMatch(record -> record.key().equals(String.valueOf(user.getId()))));
+        assertEquals(0, outboxRepository.countUnpublished());
+    }
+
+    @Test
+    void testPublishBatch_FollowsCommitOrderNotIdOrder() {
+        // an id from another instance's lower block, committed after the event holding the higher id
+        UserOutboxEntity committedLater = new UserOutboxEntity(1, UserEventType.UPDATED, "{}");
+        committedLater.setCommitSeq(20L);
+        outboxRepository.save(committedLater);
+        UserOutboxEntity committedFirst = new UserOutboxEntity(1, UserEventType.CREATED, "{}");
+        committedFirst.setCommitSeq(10L);
+        outboxRepository.save(committedFirst);
+        assertTrue(committedLater.getId() < committedFirst.getId());
+
+        assertEquals(2, relay.publishBatch());
+
+        assertEquals(List.of("CREATED", "UPDATED"), mockProducer.history().stream()
+                .map(record -> new String(record.headers().lastHeader(UserOutboxRelay.EVENT_TYPE_HEADER).value(),
+                        StandardCharsets.UTF_8))
+                .toList());
+    }
+
+    @Test
+    void testPublishBatch_FailedSendStaysPending() {
+        userService.save(new UserEntity("Name", "relay@mail.ru", 20));
+        mockProducer.sendException = new KafkaException("broker down");
+
+        assertEquals(0, relay.publishBatch());
+        assertEquals(1, outboxRepository.countUnpublished());
+
+        mockProducer.sendException = null;
+        assertEquals(1, relay.publishBatch());
+        assertEquals(0, outboxRepository.countUnpublished());
+    }
+}
@@ -1,16 +1,39 @@
 package org.example.services;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.example.dto.UserDto;
+import org.example.dto.UserLookupResultDto;
+import org.example.dto.UserSearchCriteria;
+import org.example.dto.UserSearchSort;
 import org.example.entities.UserEntity;
+import org.example.entities.UserEventType;
+import org.example.entities.UserOutboxEntity;
+import org.example.exceptions.UserAlreadyExistsException;
+import org.example.exceptions.UserVersionConflictException;
+import org.example.repositories.UserOutboxRepository;
 import org.example.repositories.UserRepository;
+import org.example.utils.UserETag;
+import org.example.utils.UserSearchCursor;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -26,6 +49,26 @@ class UserServiceTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserOutboxRepository outboxRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache usersByEmail;
+
+    @BeforeEach
+    void setUp() {
+        usersByEmail = cacheManager.getCache(UserService.USERS_BY_EMAIL_CACHE);
+        usersByEmail.clear();
+    }
+
     @Test
     void testSave_NullUser_ThrowsException() {
         Exception exception = assertThrows(RuntimeException.class, () -> userService.save(null));
@@ -57,6 +100,18 @@ class UserServiceTest {
         assertTrue(exception.getMessage().contains("Ошибка при обновлении пользователя с email"));
     }
 
+    @Test
+    void testUpdateUserByEmail_MissingNewEmail_ThrowsAndKeepsTheRow() {
+        userService.save(new UserEntity("Name1", "name1@mail.ru", 18));
+
+        assertThrows(RuntimeException.class, () -> userService.updateUserByEmail("name1@mail.ru", new UserEntity("Name2", null, 19)));
+        assertThrows(RuntimeException.class, () -> userService.updateUserByEmail("name1@mail.ru", new UserEntity("Name2", "  ", 19)));
+
+        UserEntity user = userRepository.findByEmail("name1@mail.ru").orElseThrow();
+        assertEquals("Name1", user.getName());
+        assertEquals(18, user.getAge());
+    }
+
     @Test
     void testUpdateUserByEmail_NullNewData_ThrowsException() {
         UserEntity user = new UserEntity("Name1","Name1@mail.ru",20);
@@ -83,6 +138,32 @@ class UserServiceTest {
         assertEquals("Name2", found2.get().getName());
     }
 
+    @Test
+    void testSave_NormalizesEmail() {
+        UserEntity user = new UserEntity("Name1"," Name1@Mail.RU ",18);
+        userService.save(user);
+
+        assertEquals("name1@mail.ru", user.getEmail());
+        assertTrue(userService.getByEmail("NAME1@mail.ru").isPresent());
+    }
+
+    @Test
+    void testSave_DuplicateEmail_ThrowsAlreadyExists() {
+        userService.save(new UserEntity("Name1","Name1@mail.ru",18));
+
+        assertThrows(UserAlreadyExistsException.class,
+                () -> userService.save(new UserEntity("Other","NAME1@mail.ru",20)));
+    }
+
+    @Test
+    void testUpdateUserByEmail_ToExistingEmail_ThrowsAlreadyExists() {
+        userService.save(new UserEntity("Name1","Name1@mail.ru",18));
+        userService.save(new UserEntity("Name2","Name2@mail.ru",20));
+
+        assertThrows(UserAlreadyExistsException.class,
+                () -> userService.updateUserByEmail("Name1@mail.ru", new UserEntity("Name1","Name2@mail.ru",18)));
+    }
+
     @Test
     void testGetByEmail_NotFound() {
         Optional<UserEntity> found = userService.getByEmail("Name3@mail.ru");
@@ -99,17 +180,57 @@ class UserServiceTest {
         assertEquals(3, users.size());
     }
 
+    @Test
+    void testGetPage_ReturnsUsersAfterCursorOrderedById() {
+        UserEntity user1 = new UserEntity("Name1","Name1@mail.ru",20);
+        UserEntity user2 = new UserEntity("Name2","Name2@mail.ru",25);
+        UserEntity user3 = new UserEntity("Name3","Name3@mail.ru",30);
+        userService.save(user1);
+        userService.save(user2);
+        userService.save(user3);
+
+        List<UserDto> firstPage = userService.getPage(null, 2);
+        assertEquals(List.of(user1.getId(), user2.getId()), firstPage.stream().map(UserDto::getId).toList());
+        assertEquals("Name1", firstPage.get(0).getName());
+        assertNotNull(firstPage.get(0).getCreatedAt());
+
+        List<UserDto> secondPage = userService.getPage(firstPage.get(1).getId(), 2);
+        assertEquals(List.of(user3.getId()), secondPage.stream().map(UserDto::getId).toList());
+    }
+
+    @Test
+    void testGetPage_InvalidLimit_ThrowsException() {
+        Exception exception = assertThrows(RuntimeException.class, () -> userService.getPage(null, 0));
+        assertTrue(exception.getMessage().contains("Ошибка при получении страницы пользователей"));
+    }
+
+    @Test
+    void testStreamAll() {
+        userService.save(new UserEntity("Name1","Name1@mail.ru",20));
+        userService.save(new UserEntity("Name2","Name2@mail.ru",25));
+
+        List<String> emails = new ArrayList<>();
+        userService.streamAll(user -> emails.add(user.getEmail()));
+
+        assertEquals(List.of("name1@mail.ru", "name2@mail.ru"), emails);
+    }
+
     @Test
     void testDeleteByEmail() {
         UserEntity user = new UserEntity("Name1","Name1@mail.ru",30);
         userService.save(user);
 
-        userService.deleteByEmail("Name1@mail.ru");
+        assertTrue(userService.deleteByEmail("Name1@mail.ru"));
 
         Optional<UserEntity> deleted = userService.getByEmail("Name1@mail.ru");
         assertTrue(deleted.isEmpty());
     }
 
+    @Test
+    void testDeleteByEmail_NotFound() {
+        assertFalse(userService.deleteByEmail("Name3@mail.ru"));
+    }
+
     @Test
     void testUpdateUserByEmail_UserExists() {
         UserEntity user = new UserEntity("Name1","Name1@mail.ru",18);
@@ -121,8 +242,10 @@ class UserServiceTest {
         assertTrue(updatedOpt.isPresent());
         UserEntity updated = updatedOpt.get();
         assertEquals("Name2", updated.getName());
-        assertEquals("Name2@mail.ru", updated.getEmail());
+        assertEquals("name2@mail.ru", updated.getEmail());
         assertEquals(21, updated.getAge());
+        assertEquals(user.getId(), updated.getId());
+        assertTrue(userService.getByEmail("Name1@mail.ru").isEmpty());
     }
 
     @Test
@@ -132,4 +255,294 @@ class UserServiceTest {
         Optional<UserEntity> result = userService.updateUserByEmail("Name3@mail.ru", newData);
         assertTrue(result.isEmpty());
     }
+
+    @Test
+    void testGetByEmail_CachesFoundUser() {
+        userService.save(new UserEntity("Name1","Name1@mail.ru",18));
+
+        Optional<UserEntity> found = userService.getByEmail("Name1@mail.ru");
+
+        Cache.ValueWrapper cached = usersByEmail.get("name1@mail.ru");
+        assertNotNull(cached);
+        assertSame(found.get(), cached.get());
+        assertSame(found.get(), userService.getByEmail("Name1@mail.ru").get());
+    }
+
+    @Test
+    void testGetByEmail_CachesMiss() {
+        assertTrue(userService.getByEmail("Name3@mail.ru").isEmpty());
+
+        Cache.ValueWrapper cached = usersByEmail.get("name3@mail.ru");
+        assertNotNull(cached);
+        assertNull(cached.get());
+    }
+
+    @Test
+    void testSave_EvictsCachedMiss() {
+        assertTrue(userService.getByEmail("Name1@mail.ru").isEmpty());
+
+        userService.save(new UserEntity("Name1","Name1@mail.ru",18));
+
+        assertNull(usersByEmail.get("name1@mail.ru"));
+        assertTrue(userService.getByEmail("Name1@mail.ru").isPresent());
+    }
+
+    @Test
+    void testUpdateUserByEmail_EvictsOldAndNewEmail() {
+        userService.save(new UserEntity("Name1","Name1@mail.ru",18));
+        userService.getByEmail("Name1@mail.ru");
+        userService.getByEmail("Name2@mail.ru");
+
+        userService.updateUserByEmail("Name1@mail.ru", new UserEntity("Name2","Name2@mail.ru",21));
+
+        assertNull(usersByEmail.get("name1@mail.ru"));
+        assertNull(usersByEmail.get("name2@mail.ru"));
+        assertEquals("Name2", userService.getByEmail("Name2@mail.ru").get().getName());
+    }
+
+    @Test
+    void testDeleteByEmail_EvictsCachedUser() {
+        userService.save(new UserEntity("Name1","Name1@mail.ru",18));
+        userService.getByEmail("Name1@mail.ru");
+
+        userService.deleteByEmail("Name1@mail.ru");
+
+        assertNull(usersByEmail.get("name1@mail.ru"));
+    }
+
+    @Test
+    void testServiceMethodsAreTimed() {
+        userService.getByEmail("Name1@mail.ru");
+
+        assertTrue(meterRegistry.get("users.service").tag("method", "getByEmail").timer().count() >= 1);
+    }
+
+    @Test
+    void testChangesWriteOutboxEventsInOrder() {
+        UserEntity user = new UserEntity("Name", "outbox@mail.ru", 20);
+        userService.save(user);
+        userService.updateUserByEmail("outbox@mail.ru", new UserEntity("Name2", "outbox2@mail.ru", 21));
+        userService.deleteByEmail("outbox2@mail.ru");
+        userService.deleteByEmail("outbox2@mail.ru");
+
+        List<UserOutboxEntity> events = outboxRepository.findAll(Sort.by("id"));
+        assertEquals(List.of(UserEventType.CREATED, UserEventType.UPDATED, UserEventType.DELETED),
+                events.stream().map(UserOutboxEntity::getEventType).toList());
+        assertTrue(events.stream().allMatch(event -> user.getId().equals(event.getAggregateId())));
+        assertTrue(events.get(1).getPayload().contains("\"previousEmail\":\"outbox@mail.ru\""));
+        assertNull(events.get(2).getPublishedAt());
+    }
+
+    @Test
+    void testFailedSave_WritesNoOutboxEvent() {
+        userService.save(new UserEntity("Name", "outbox@mail.ru", 20));
+        long before = outboxRepository.count();
+
+        assertThrows(UserAlreadyExistsException.class,
+                () -> userService.save(new UserEntity("Name", "outbox@mail.ru", 20)));
+        assertEquals(before, outboxRepository.count());
+    }
+
+    @Test
+    void testLookupByEmails_ReturnsFoundAndMissingInRequestOrder() {
+        userService.save(new UserEntity("Name1", "Name1@mail.ru", 18));
+        userService.save(new UserEntity("Name2", "Name2@mail.ru", 20));
+
+        UserLookupResultDto result = userService.lookupByEmails(
+                List.of("NAME2@mail.ru", "missing@mail.ru", "Name1@mail.ru", "name2@mail.ru"));
+
+        assertEquals(List.of("name2@mail.ru", "name1@mail.ru"),
+                result.getFound().stream().map(UserDto::getEmail).toList());
+        assertEquals(List.of("missing@mail.ru"), result.getMissing());
+    }
+
+    @Test
+    void testLookupByEmails_UsesAndFillsEmailCache() {
+        userService.save(new UserEntity("Name1", "Name1@mail.ru", 18));
+        usersByEmail.put("cached@mail.ru", new UserEntity("Cached", "cached@mail.ru", 30));
+
+        UserLookupResultDto result = userService.lookupByEmails(List.of("cached@mail.ru", "name1@mail.ru", "missing@mail.ru"));
+
+        assertEquals(List.of("Cached", "Name1"), result.getFound().stream().map(UserDto::getName).toList());
+        assertNotNull(usersByEmail.get("name1@mail.ru").get());
+        // ruled out by the email filter without a query, or queried and cached as a miss before it is built
+        Cache.ValueWrapper missing = usersByEmail.get("missing@mail.ru");
+        assertTrue(missing == null || missing.get() == null);
+        assertTrue(userService.getByEmail("missing@mail.ru").isEmpty());
+    }
+
+    @Test
+    void testLookupByEmails_QueriesInChunks() {
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            emails.add("user" + i + "@mail.ru");
+            if (i % 2 == 0) {
+                userService.save(new UserEntity("Name" + i, "user" + i + "@mail.ru", 18));
+            }
+        }
+
+        UserLookupResultDto result = userService.lookupByEmails(emails.subList(0, 1000));
+
+        assertEquals(500, result.getFound().size());
+        assertEquals(500, result.getMissing().size());
+        assertThrows(RuntimeException.class, () -> userService.lookupByEmails(emails));
+    }
+
+    @Test
+    void testSearch_FiltersByNamePrefixAgeAndCreatedAt() {
+        userService.save(new UserEntity("Anna", "anna@mail.ru", 19));
+        userService.save(new UserEntity("Andrey", "andrey@mail.ru", 30));
+        userService.save(new UserEntity("Boris", "boris@mail.ru", 20));
+        userService.save(new UserEntity("An_na", "an_na@mail.ru", 21));
+        setCreatedAt("anna@mail.ru", LocalDateTime.now().minusDays(3));
+        setCreatedAt("boris@mail.ru", LocalDateTime.now().minusDays(30));
+
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        criteria.setNamePrefix("An");
+        criteria.setMinAge(18);
+        criteria.setMaxAge(25);
+        assertEquals(List.of("Anna", "An_na"), names(userService.search(criteria, null, 10)));
+
+        criteria.setNamePrefix("An_");
+        assertEquals(List.of("An_na"), names(userService.search(criteria, null, 10)));
+
+        criteria.setNamePrefix(null);
+        criteria.setCreatedFrom(LocalDateTime.now().minusWeeks(1));
+        criteria.setCreatedTo(LocalDateTime.now().minusDays(1));
+        assertEquals(List.of("Anna"), names(userService.search(criteria, null, 10)));
+    }
+
+    @Test
+    void testSearch_KeysetPagesByCreatedAtDescending() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 5; i++) {
+            userService.save(new UserEntity("Name" + i, "name" + i + "@mail.ru", 20));
+        }
+        setCreatedAt("name0@mail.ru", now.minusDays(1));
+        setCreatedAt("name1@mail.ru", now.minusDays(3));
+        setCreatedAt("name2@mail.ru", now.minusDays(2));
+        setCreatedAt("name3@mail.ru", now.minusDays(2));
+        setCreatedAt("name4@mail.ru", now.minusDays(5));
+
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        criteria.setSort(UserSearchSort.CREATED_AT);
+        criteria.setDescending(true);
+        List<String> seen = new ArrayList<>();
+        UserSearchCursor after = null;
+        List<UserDto> page;
+        do {
+            page = userService.search(criteria, after, 2);
+            seen.addAll(names(page));
+            after = page.isEmpty() ? null : UserSearchCursor.after(UserSearchSort.CREATED_AT, true, page.get(page.size() - 1));
+        } while (page.size() == 2);
+
+        assertEquals(List.of("Name0", "Name3", "Name2", "Name1", "Name4"), seen);
+    }
+
+    @Test
+    void testSearch_InvalidLimit_ThrowsException() {
+        Exception exception = assertThrows(RuntimeException.class,
+                () -> userService.search(new UserSearchCriteria(), null, UserService.MAX_PAGE_LIMIT + 1));
+        assertTrue(exception.getMessage().contains("Ошибка при поиске пользователей"));
+    }
+
+    private void setCreatedAt(String email, LocalDateTime createdAt) {
+        entityManager.createQuery("update UserEntity u set u.createdAt = :createdAt where u.email = :email")
+                .setParameter("createdAt", createdAt)
+                .setParameter("email", email)
+                .executeUpdate();
+    }
+
+    private List<String> names(List<UserDto> users) {
+        return users.stream().map(UserDto::getName).toList();
+    }
+
+    @Test
+    void testUpdateUserByEmail_IncrementsVersion() {
+        UserEntity user = new UserEntity("Name1", "Name1@mail.ru", 18);
+        userService.save(user);
+        assertEquals(0L, user.getVersion());
+
+        UserEntity updated = userService.updateUserByEmail("Name1@mail.ru", new UserEntity("Name2", "Name1@mail.ru", 19)).get();
+
+        assertEquals(1L, updated.getVersion());
+    }
+
+    @Test
+    void testUpdateUserByEmail_IfMatch() {
+        UserEntity user = new UserEntity("Name1", "Name1@mail.ru", 18);
+        userService.save(user);
+        UserETag current = UserETag.of(user);
+
+        UserEntity updated = userService.updateUserByEmail("Name1@mail.ru",
+                new UserEntity("Name2", "Name1@mail.ru", 19), current).get();
+        assertEquals("Name2", updated.getName());
+
+        assertThrows(UserVersionConflictException.class, () -> userService.updateUserByEmail("Name1@mail.ru",
+                new UserEntity("Name3", "Name1@mail.ru", 20), current));
+        assertEquals("Name2", userRepository.findByEmail("name1@mail.ru").get().getName());
+        assertTrue(userService.updateUserByEmail("missing@mail.ru",
+                new UserEntity("Name3", "missing@mail.ru", 20), current).isEmpty());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testGetChangeMarker_GrowsWithEveryCommittedChange() {
+        try {
+            long before = userService.getChangeMarker();
+            userService.save(new UserEntity("Name1", "Name1@mail.ru", 18));
+            long afterSave = userService.getChangeMarker();
+            assertTrue(userService.updateUserByEmail("missing@mail.ru", new UserEntity("Name2", "missing@mail.ru", 20)).isEmpty());
+            long afterMiss = userService.getChangeMarker();
+            userService.deleteByEmail("Name1@mail.ru");
+
+            assertEquals(before + 1, afterSave);
+            assertEquals(afterSave, afterMiss);
+            assertEquals(afterSave + 1, userService.getChangeMarker());
+        } finally {
+            userRepository.deleteAll();
+            outboxRepository.deleteAll();
+        }
+    }
+
+    @Test
+    void testUpdateAllByEmail_UpdatesFoundUsersInOneBatch() {
+        userService.save(new UserEntity("Name1", "name1@mail.ru", 18));
+        userService.save(new UserEntity("Name2", "name2@mail.ru", 20));
+        long events = outboxRepository.count();
+
+        Map<String, UserEntity> updates = new LinkedHashMap<>();
+        updates.put("name1@mail.ru", new UserEntity("Renamed", "name1@mail.ru", 19));
+        updates.put("name2@mail.ru", new UserEntity("Name2", "name2@mail.ru", 20));
+        updates.put("missing@mail.ru", new UserEntity("Missing", "missing@mail.ru", 30));
+
+        Set<String> found = userService.updateAllByEmail(updates);
+
+        assertEquals(Set.of("name1@mail.ru", "name2@mail.ru"), found);
+        entityManager.flush();
+        entityManager.clear();
+        UserEntity renamed = userRepository.findByEmail("name1@mail.ru").get();
+        assertEquals("Renamed", renamed.getName());
+        assertEquals(19, renamed.getAge());
+        assertEquals(1L, renamed.getVersion());
+        assertEquals(0L, userRepository.findByEmail("name2@mail.ru").get().getVersion());
+        assertEquals(events + 1, outboxRepository.count());
+    }
+
+    @Test
+    void testUpdateAllByEmail_SkipsUsersChangedSinceTheirTag() {
+        userService.save(new UserEntity("Name1", "name1@mail.ru", 18));
+        UserETag accepted = userService.getTagByEmail("Name1@Mail.ru").orElseThrow();
+        userService.updateUserByEmail("name1@mail.ru", new UserEntity("Synchronous", "name1@mail.ru", 40));
+
+        UserEntity queued = new UserEntity("Queued", "name1@mail.ru", 19);
+        queued.setId(accepted.getId());
+        queued.setVersion(accepted.getVersion());
+        Set<String> applied = userService.updateAllByEmail(Map.of("name1@mail.ru", queued));
+
+        assertEquals(Set.of(), applied);
+        entityManager.flush();
+        entityManager.clear();
+        assertEquals("Synchronous", userRepository.findByEmail("name1@mail.ru").get().getName());
+    }
 }
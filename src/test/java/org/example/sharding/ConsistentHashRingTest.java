@@ -0,0 +1,56 @@
+package org.example.sharding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+    private static final int KEYS = 30000;
+
+    @Test
+    void testNodeFor_SpreadsKeysEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("shard0", "shard1", "shard2"), 128);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.nodeFor("user" + i + "@mail.ru"), 1, Integer::sum);
+        }
+
+        assertEquals(3, counts.size());
+        counts.values().forEach(count -> assertTrue(Math.abs(count - KEYS / 3) < KEYS / 3 * 0.15, counts::toString));
+    }
+
+    @Test
+    void testWith_MovesOnlyAShareOfKeysAndOnlyToTheNewNode() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("shard0", "shard1", "shard2"), 128);
+        ConsistentHashRing extended = ring.with("shard3");
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "user" + i + "@mail.ru";
+            String before = ring.nodeFor(key);
+            String after = extended.nodeFor(key);
+            if (!before.equals(after)) {
+                assertEquals("shard3", after);
+                moved++;
+            }
+        }
+
+        assertTrue(Math.abs(moved - KEYS / 4) < KEYS / 4 * 0.2, "moved " + moved);
+        assertEquals(List.of("shard0", "shard1", "shard2"), ring.getNodes());
+    }
+
+    @Test
+    void testNodeFor_DoesNotDependOnNodeOrder() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("shard0", "shard1"), 128);
+        ConsistentHashRing reversed = new ConsistentHashRing(List.of("shard1", "shard0"), 128);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ring.nodeFor("user" + i + "@mail.ru"), reversed.nodeFor("user" + i + "@mail.ru"));
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package org.example.sharding;
+
+import org.example.dto.UserDto;
+import org.example.dto.UserSearchCriteria;
+import org.example.dto.UserSearchSort;
+import org.example.config.UserShardingProperties;
+import org.example.entities.UserEntity;
+import org.example.exceptions.UserAlreadyExistsException;
+import org.example.utils.UserETag;
+import org.example.utils.UserSearchCursor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "users.sharding.enabled=true",
+        "users.sharding.shards.shard0.number=0",
+        "users.sharding.shards.shard0.jdbc-url=jdbc:h2:mem:sharded_shard0;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "users.sharding.shards.shard1.number=1",
+        "users.sharding.shards.shard1.jdbc-url=jdbc:h2:mem:sharded_shard1;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "users.sharding.shards.shard2.number=2",
+        "users.sharding.shards.shard2.active=false",
+        "users.sharding.shards.shard2.jdbc-url=jdbc:h2:mem:sharded_shard2;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "users.sharding.rebalance-batch-size=7",
+        "users.sharding.layout-refresh=PT0.1S"
+})
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@AutoConfigureMockMvc
+class ShardedUserServiceTest {
+
+    @Autowired
+    private ShardedUserService userService;
+
+    @Autowired
+    private UserShardRouter router;
+
+    @Autowired
+    private UserShardRebalancer rebalancer;
+
+    @Autowired
+    private UserShardingProperties properties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @AfterEach
+    void tearDown() {
+        router.getShardNames().forEach(name -> router.get(name).getJdbc().getJdbcTemplate().update("delete from users"));
+    }
+
+    @Test
+    void testSave_StoresUserOnTheOwnerOfItsEmailOnly() {
+        for (int i = 0; i < 20; i++) {
+            userService.save(new UserEntity("Name" + i, "User" + i + "@Mail.ru", 20 + i));
+        }
+
+        for (int i = 0; i < 20; i++) {
+            String email = "user" + i + "@mail.ru";
+            String owner = router.getLayout().ring().nodeFor(email);
+            for (String shard : router.getShardNames()) {
+                assertEquals(shard.equals(owner) ? 1 : 0, count(shard, email), email + " on " + shard);
+            }
+            UserEntity user = userService.getByEmail(" USER" + i + "@mail.ru").orElseThrow();
+            assertEquals(router.get(owner).getNumber(), user.getId() % 16);
+        }
+        assertTrue(count("shard0") > 0 && count("shard1") > 0);
+        assertThrows(UserAlreadyExistsException.class, () -> userService.save(new UserEntity("Copy", "user0@mail.ru", 30)));
+    }
+
+    @Test
+    void testGetPage_MergesShardsInIdOrder() {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            UserEntity user = new UserEntity("Name" + i, "page" + i + "@mail.ru", 20);
+            userService.save(user);
+            ids.add(user.getId());
+        }
+        ids.sort(Comparator.naturalOrder());
+
+        List<Integer> paged = new ArrayList<>();
+        Integer after = null;
+        List<UserDto> page;
+        do {
+            page = userService.getPage(after, 10);
+            page.forEach(user -> paged.add(user.getId()));
+            after = page.isEmpty() ? after : page.get(page.size() - 1).getId();
+        } while (page.size() == 10);
+
+        assertEquals(ids, paged);
+    }
+
+    @Test
+    void testSearch_FiltersAndPagesByCreatedAtDescendingAcrossShards() {
+        for (int i = 0; i < 30; i++) {
+            userService.save(new UserEntity((i % 2 == 0 ? "Anna" : "Boris") + i, "search" + i + "@mail.ru", 20 + i % 10));
+        }
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        criteria.setNamePrefix("Anna");
+        criteria.setMinAge(22);
+        criteria.setSort(UserSearchSort.CREATED_AT);
+        criteria.setDescending(true);
+
+        List<UserDto> all = userService.search(criteria, null, 100);
+        List<UserDto> paged = new ArrayList<>();
+        UserSearchCursor cursor = null;
+        List<UserDto> page;
+        do {
+            page = userService.search(criteria, cursor, 4);
+            paged.addAll(page);
+            cursor = page.isEmpty() ? cursor : UserSearchCursor.after(UserSearchSort.CREATED_AT, true, page.get(page.size() - 1));
+        } while (page.size() == 4);
+
+        assertEquals(12, all.size());
+        assertTrue(all.stream().allMatch(user -> user.getName().startsWith("Anna") && user.getAge() >= 22));
+        for (int i = 1; i < all.size(); i++) {
+            UserDto previous = all.get(i - 1);
+            UserDto current = all.get(i);
+            assertTrue(previous.getCreatedAt().isAfter(current.getCreatedAt())
+                    || previous.getCreatedAt().equals(current.getCreatedAt()) && previous.getId() > current.getId());
+        }
+        assertEquals(all.stream().map(UserDto::getId).toList(), paged.stream().map(UserDto::getId).toList());
+    }
+
+    @Test
+    void testUpdate_MovesUserToTheOwnerOfTheNewEmailKeepingItsId() {
+        UserEntity user = new UserEntity("Name", "move0@mail.ru", 20);
+        userService.save(user);
+        String newEmail = emailOwnedByAnotherShard(router.getLayout().ring().nodeFor("move0@mail.ru"));
+
+        UserEntity updated = userService.updateUserByEmail("move0@mail.ru", new UserEntity("New", newEmail, 21),
+                UserETag.parse(UserETag.of(user).toString())).orElseThrow();
+
+        assertEquals(user.getId(), updated.getId());
+        assertEquals(1L, updated.getVersion());
+        assertTrue(userService.getByEmail("move0@mail.ru").isEmpty());
+        UserEntity found = userService.getByEmail(newEmail).orElseThrow();
+        assertEquals("New", found.getName());
+        assertEquals(user.getCreatedAt(), found.getCreatedAt());
+        assertEquals(1, count(router.getLayout().ring().nodeFor(newEmail), newEmail));
+        assertEquals(1, count("shard0") + count("shard1"));
+    }
+
+    @Test
+    @DirtiesContext
+    void testAddShard_MovesUsersToTheNewShardWhileTheyStayReadable() {
+        for (int i = 0; i < 60; i++) {
+            userService.save(new UserEntity("Name" + i, "rebalance" + i + "@mail.ru", 20));
+        }
+
+        rebalancer.addShard("shard2");
+        assertEquals(List.of("shard0", "shard1", "shard2"), router.getLayout().target().getNodes());
+        for (int i = 0; i < 60; i++) {
+            assertTrue(userService.getByEmail("rebalance" + i + "@mail.ru").isPresent());
+        }
+        await().atMost(Duration.ofSeconds(30)).until(() -> rebalancer.getStatus().state() != UserShardRebalancer.State.RUNNING);
+
+        assertEquals(UserShardRebalancer.State.DONE, rebalancer.getStatus().state());
+        assertEquals(List.of("shard0", "shard1", "shard2"), router.getLayout().ring().getNodes());
+        assertNull(router.getLayout().target());
+        assertEquals(count("shard2"), rebalancer.getStatus().moved());
+        assertTrue(count("shard2") > 0);
+        assertEquals(60, count("shard0") + count("shard1") + count("shard2"));
+        for (int i = 0; i < 60; i++) {
+            String email = "rebalance" + i + "@mail.ru";
+            assertEquals(1, count(router.getLayout().ring().nodeFor(email), email));
+        }
+        assertEquals(60, userService.getPage(null, 100).size());
+    }
+
+    @Test
+    @DirtiesContext
+    void testAddShard_IsPickedUpByEveryRouterThroughTheStoredLayout() {
+        UserShardRouter other = new UserShardRouter(properties, jdbcTemplate);
+        UserShardRouter restarted = null;
+        try {
+            assertEquals(List.of("shard0", "shard1"), other.getLayout().ring().getNodes());
+
+            rebalancer.addShard("shard2");
+            other.refresh();
+            assertEquals(List.of("shard0", "shard1", "shard2"), other.getLayout().target().getNodes());
+            await().atMost(Duration.ofSeconds(30)).until(() -> rebalancer.getStatus().state() != UserShardRebalancer.State.RUNNING);
+            other.refresh();
+
+            assertEquals(UserShardRebalancer.State.DONE, rebalancer.getStatus().state());
+            assertEquals(List.of("shard0", "shard1", "shard2"), other.getLayout().ring().getNodes());
+            assertNull(other.getLayout().target());
+            // shard2 is still configured with active=false: the stored layout wins
+            restarted = new UserShardRouter(properties, jdbcTemplate);
+            assertEquals(List.of("shard0", "shard1", "shard2"), restarted.getLayout().ring().getNodes());
+        } finally {
+            other.close();
+            if (restarted != null) {
+                restarted.close();
+            }
+        }
+    }
+
+    @Test
+    void testAddShard_IsNotExposedOverHttpByDefault() throws Exception {
+        mockMvc.perform(post("/actuator/sharding/shard2"))
+                .andExpect(status().is4xxClientError());
+        mockMvc.perform(get("/actuator/sharding"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.active[1]").value("shard1"));
+
+        assertEquals(UserShardRebalancer.State.IDLE, rebalancer.getStatus().state());
+        assertNull(router.getLayout().target());
+    }
+
+    @Test
+    void testController_ServesUsersFromShards() throws Exception {
+        mockMvc.perform(post("/api/v1/users").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Name\",\"email\":\"http@mail.ru\",\"age\":20}"))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/api/v1/users/http@mail.ru"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Name"));
+        mockMvc.perform(get("/api/v1/users").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].email").value("http@mail.ru"));
+    }
+
+    private String emailOwnedByAnotherShard(String shard) {
+        for (int i = 1; ; i++) {
+            String email = "move" + i + "@mail.ru";
+            if (!router.getLayout().ring().nodeFor(email).equals(shard)) {
+                return email;
+            }
+        }
+    }
+
+    private int count(String shard) {
+        return router.get(shard).getJdbc().getJdbcTemplate().queryForObject("select count(*) from users", Integer.class);
+    }
+
+    private int count(String shard, String email) {
+        return router.get(shard).getJdbc().getJdbcTemplate()
+                .queryForObject("select count(*) from users where email = ?", Integer.class, email);
+    }
+}
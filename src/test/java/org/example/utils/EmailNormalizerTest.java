@@ -0,0 +1,18 @@
+package org.example.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class EmailNormalizerTest {
+
+    @Test
+    void testNormalize_TrimsAndLowerCases() {
+        assertEquals("name1@mail.ru", EmailNormalizer.normalize("  Name1@Mail.RU "));
+    }
+
+    @Test
+    void testNormalize_Null() {
+        assertNull(EmailNormalizer.normalize(null));
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.example.entities.UserEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+class UserETagTest {
+
+    @Test
+    void testOfAndParse_RoundTrip() {
+        UserEntity user = new UserEntity("Name", "name@mail.ru", 20);
+        user.setId(12);
+        user.setVersion(7L);
+
+        UserETag tag = UserETag.parse(UserETag.of(user).toString());
+
+        assertEquals("\"12-7\"", UserETag.of(user).toString());
+        assertEquals(12, tag.getId());
+        assertEquals(7L, tag.getVersion());
+    }
+
+    @Test
+    void testOf_GivesEachRepresentationItsOwnTag() {
+        UserEntity user = new UserEntity("Name", "name@mail.ru", 20);
+        user.setId(12);
+        user.setVersion(7L);
+
+        assertEquals("\"12-7\"", UserETag.of(user).of(MediaType.APPLICATION_JSON));
+        assertEquals("\"12-7-cbor\"", UserETag.of(user).of(MediaType.APPLICATION_CBOR));
+        assertEquals("\"12-7-smile\"", UserETag.of(user).of(MediaType.parseMediaType("application/x-jackson-smile")));
+        assertEquals(7L, UserETag.parse("\"12-7-cbor\"").getVersion());
+    }
+
+    @Test
+    void testRepresentation_FollowsAcceptPreference() {
+        assertEquals(MediaType.APPLICATION_JSON, UserETag.representation(null));
+        assertEquals(MediaType.APPLICATION_JSON, UserETag.representation("*/*"));
+        assertEquals(MediaType.APPLICATION_CBOR, UserETag.representation("application/cbor"));
+        assertEquals(MediaType.APPLICATION_CBOR, UserETag.representation("application/json;q=0.5, application/cbor"));
+    }
+
+    @Test
+    void testParse_MissingOrAnyMeansUnconditional() {
+        assertNull(UserETag.parse(null));
+        assertNull(UserETag.parse("*"));
+    }
+
+    @Test
+    void testParse_RejectsWeakAndMalformedTags() {
+        assertThrows(IllegalArgumentException.class, () -> UserETag.parse("W/\"12-7\""));
+        assertThrows(IllegalArgumentException.class, () -> UserETag.parse("\"users-7\""));
+        assertThrows(IllegalArgumentException.class, () -> UserETag.parse("12-7"));
+        assertThrows(IllegalArgumentException.class, () -> UserETag.parse("\"12-7-xml\""));
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.example.dto.UserDto;
+import org.example.dto.UserSearchSort;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+class UserSearchCursorTest {
+
+    @Test
+    void testEncodeDecode_RoundTrip() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 10, 15, 30, 123000);
+        String token = UserSearchCursor.after(UserSearchSort.CREATED_AT, true,
+                new UserDto(42, "Name", "name@mail.ru", 20, createdAt)).encode();
+
+        UserSearchCursor cursor = UserSearchCursor.decode(token, UserSearchSort.CREATED_AT, true);
+
+        assertEquals(42, cursor.getId());
+        assertEquals(createdAt, cursor.getCreatedAt());
+    }
+
+    @Test
+    void testDecode_EmptyToken_ReturnsNull() {
+        assertNull(UserSearchCursor.decode(null, UserSearchSort.ID, false));
+        assertNull(UserSearchCursor.decode("", UserSearchSort.ID, false));
+    }
+
+    @Test
+    void testDecode_RejectsOtherSortDirectionAndGarbage() {
+        String token = UserSearchCursor.after(UserSearchSort.ID, false, new UserDto(42, "Name", "name@mail.ru", 20, null)).encode();
+
+        assertEquals(42, UserSearchCursor.decode(token, UserSearchSort.ID, false).getId());
+        assertThrows(IllegalArgumentException.class, () -> UserSearchCursor.decode(token, UserSearchSort.CREATED_AT, false));
+        assertThrows(IllegalArgumentException.class, () -> UserSearchCursor.decode(token, UserSearchSort.ID, true));
+        assertThrows(IllegalArgumentException.class, () -> UserSearchCursor.decode("not a cursor", UserSearchSort.ID, false));
+    }
+}
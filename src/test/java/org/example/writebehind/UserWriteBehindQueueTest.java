@@ -0,0 +1,263 @@
+package org.example.writebehind;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.config.UserWriteBehindProperties;
+import org.example.dto.UserEventDto;
+import org.example.entities.UserEntity;
+import org.example.entities.UserEventType;
+import org.example.exceptions.UserVersionConflictException;
+import org.example.services.UserService;
+import org.example.utils.UserETag;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class UserWriteBehindQueueTest {
+    @TempDir
+    Path journalDir;
+
+    private final UserService userService = mock(UserService.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private UserWriteBehindProperties properties;
+    private UserWriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        properties = new UserWriteBehindProperties();
+        properties.setEnabled(true);
+        properties.setShards(2);
+        properties.setCapacity(4);
+        // flushes are driven by the tests
+        properties.setFlushInterval(Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    void testFlush_CoalescesUpdatesToTheSameUser() throws IOException {
+        queue = newQueue();
+        when(userService.updateAllByEmail(anyMap())).thenAnswer(invocation -> ((Map<?, ?>) invocation.getArgument(0)).keySet());
+
+        assertTrue(queue.submit("Name1@mail.ru", "First", 18));
+        assertTrue(queue.submit("name1@mail.ru", "Second", 19));
+        assertTrue(queue.submit("name1@MAIL.ru", "Last", 20));
+        assertTrue(queue.submit("name2@mail.ru", "Other", 30));
+        assertEquals(2, queue.getPending());
+
+        queue.flushAll();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, UserEntity>> batches = ArgumentCaptor.forClass(Map.class);
+        verify(userService, atLeastOnce()).updateAllByEmail(batches.capture());
+        UserEntity written = batches.getAllValues().stream()
+                .filter(batch -> batch.containsKey("name1@mail.ru")).findFirst().orElseThrow().get("name1@mail.ru");
+        assertEquals("Last", written.getName());
+        assertEquals(20, written.getAge());
+        assertEquals(0, queue.getPending());
+        assertEquals(2.0, meterRegistry.get("users.write_behind.coalesced").counter().count());
+        assertTrue(meterRegistry.get("users.write_behind.flush").timer().count() >= 1);
+    }
+
+    @Test
+    void testSubmit_RejectsNewUsersWhenShardIsFull() throws IOException {
+        properties.setShards(1);
+        properties.setCapacity(2);
+        queue = newQueue();
+
+        assertTrue(queue.submit("name1@mail.ru", "Name1", 18));
+        assertTrue(queue.submit("name2@mail.ru", "Name2", 18));
+        assertFalse(queue.submit("name3@mail.ru", "Name3", 18));
+        // a user already queued is coalesced, not rejected
+        assertTrue(queue.submit("name1@mail.ru", "Name1b", 19));
+        assertEquals(1.0, meterRegistry.get("users.write_behind.rejected").counter().count());
+    }
+
+    @Test
+    void testFlush_RetriesFailedBatchOneByOneAndRequeuesTransientFailures() throws IOException {
+        properties.setShards(1);
+        queue = newQueue();
+        when(userService.updateAllByEmail(anyMap())).thenThrow(new RuntimeException("stale version"));
+        when(userService.updateUserByEmail(eq("name1@mail.ru"), any())).thenReturn(Optional.of(new UserEntity()));
+        when(userService.updateUserByEmail(eq("missing@mail.ru"), any())).thenReturn(Optional.empty());
+        when(userService.updateUserByEmail(eq("name2@mail.ru"), any()))
+                .thenThrow(new RuntimeException(new QueryTimeoutException("timeout")));
+
+        queue.submit("name1@mail.ru", "Name1", 18);
+        queue.submit("missing@mail.ru", "Missing", 18);
+        queue.submit("name2@mail.ru", "Name2", 18);
+        queue.flushAll();
+
+        assertEquals(1, queue.getPending());
+        assertEquals(1.0, meterRegistry.get("users.write_behind.failed").counter().count());
+    }
+
+    @Test
+    void testJournal_ReplaysAcceptedUpdatesAfterRestart() throws IOException, InterruptedException {
+        properties.setJournalDir(journalDir);
+        properties.setJournalFsync(false);
+        UserWriteBehindQueue crashed = newQueue();
+        crashed.submit("name1@mail.ru", "First", 18);
+        crashed.submit("name1@mail.ru", "Last", 19);
+        crashed.submit("name2@mail.ru", "Name2", 20);
+
+        queue = newQueue();
+        when(userService.updateAllByEmail(anyMap())).thenAnswer(invocation -> ((Map<?, ?>) invocation.getArgument(0)).keySet());
+
+        assertEquals(2, queue.getPending());
+        queue.flushAll();
+        assertEquals(0, queue.getPending());
+        verify(userService, atLeastOnce()).updateAllByEmail(argThat(batch ->
+                !batch.containsKey("name1@mail.ru") || "Last".equals(batch.get("name1@mail.ru").getName())));
+
+        queue.shutdown();
+        queue = newQueue();
+        assertEquals(0, queue.getPending());
+    }
+
+    @Test
+    void testSyncChange_SupersedesUpdatesAcceptedBeforeIt() throws IOException {
+        properties.setJournalDir(journalDir);
+        properties.setJournalFsync(false);
+        UserWriteBehindQueue crashed = newQueue();
+        crashed.submit("name1@mail.ru", "Queued", 18);
+        crashed.submit("name2@mail.ru", "Queued", 18);
+        crashed.submit("name3@mail.ru", "Queued", 18);
+
+        crashed.onUserChange(new UserEventDto(UserEventType.DELETED, 1, "name1@mail.ru"));
+        UserEventDto renamed = new UserEventDto(UserEventType.UPDATED, 2, "renamed@mail.ru");
+        renamed.setPreviousEmail("name2@mail.ru");
+        crashed.onUserChange(renamed);
+        crashed.submit("name1@mail.ru", "Later", 19);
+
+        assertEquals(2, crashed.getPending());
+        assertEquals(2.0, meterRegistry.get("users.write_behind.superseded").counter().count());
+        // the superseded updates are not replayed either
+        queue = newQueue();
+        when(userService.updateAllByEmail(anyMap())).thenAnswer(invocation -> ((Map<?, ?>) invocation.getArgument(0)).keySet());
+        queue.flushAll();
+        verify(userService, atLeastOnce()).updateAllByEmail(argThat(batch -> !batch.containsKey("name2@mail.ru")
+                && (!batch.containsKey("name1@mail.ru") || "Later".equals(batch.get("name1@mail.ru").getName()))));
+    }
+
+    @Test
+    void testFlush_OwnEventsDoNotSupersedeUpdatesQueuedMeanwhile() throws IOException {
+        properties.setShards(1);
+        queue = newQueue();
+        when(userService.updateAllByEmail(anyMap())).thenAnswer(invocation -> {
+            queue.submit("name1@mail.ru", "Newer", 19);
+            queue.onUserChange(new UserEventDto(UserEventType.UPDATED, 1, "name1@mail.ru"));
+            return ((Map<?, ?>) invocation.getArgument(0)).keySet();
+        });
+
+        queue.submit("name1@mail.ru", "Older", 18);
+        queue.flushAll();
+
+        assertEquals(1, queue.getPending());
+        assertEquals(0.0, meterRegistry.get("users.write_behind.superseded").counter().count());
+    }
+
+    @Test
+    void testJournal_FsyncAcknowledgesConcurrentSubmits() throws Exception {
+        properties.setJournalDir(journalDir);
+        properties.setCapacity(1000);
+        queue = newQueue();
+
+        ExecutorService submitters = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> submits = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                String email = "user" + i + "@mail.ru";
+                submits.add(submitters.submit(() -> queue.submit(email, "Name", 20)));
+            }
+            for (Future<Boolean> submit : submits) {
+                assertTrue(submit.get());
+            }
+        } finally {
+            submitters.shutdownNow();
+        }
+
+        assertEquals(400, queue.getPending());
+    }
+
+    @Test
+    void testSubmit_ThrowsWhenDisabled() throws IOException {
+        properties.setEnabled(false);
+        queue = newQueue();
+
+        assertFalse(queue.isEnabled());
+        assertThrows(IllegalStateException.class, () -> queue.submit("name1@mail.ru", "Name1", 18));
+        verifyNoInteractions(userService);
+        assertEquals(0.0, meterRegistry.get("users.write_behind.accepted").counter().count());
+    }
+
+    @Test
+    void testFlush_WritesOnlyWhileTheUserHasTheVersionAcceptedWith() throws IOException {
+        properties.setShards(1);
+        queue = newQueue();
+        when(userService.getTagByEmail("name1@mail.ru")).thenReturn(Optional.of(UserETag.parse("\"1-3\"")));
+        // the user changed after the update was accepted, e.g. while it was being flushed
+        when(userService.updateAllByEmail(anyMap())).thenReturn(Set.of());
+
+        queue.submit("name1@mail.ru", "Queued", 18);
+        queue.flushAll();
+
+        verify(userService).updateAllByEmail(argThat(batch -> batch.get("name1@mail.ru").getVersion() == 3L
+                && batch.get("name1@mail.ru").getId() == 1));
+        assertEquals(1.0, meterRegistry.get("users.write_behind.superseded").counter().count());
+        assertEquals(0.0, meterRegistry.get("users.write_behind.failed").counter().count());
+    }
+
+    @Test
+    void testFlush_RequeuedUpdateStaysConditional() throws IOException {
+        properties.setShards(1);
+        queue = newQueue();
+        when(userService.getTagByEmail("name1@mail.ru")).thenReturn(Optional.of(UserETag.parse("\"1-3\"")));
+        when(userService.updateAllByEmail(anyMap())).thenThrow(new RuntimeException("batch failed"));
+        when(userService.updateUserByEmail(eq("name1@mail.ru"), any(), any()))
+                .thenThrow(new RuntimeException(new QueryTimeoutException("timeout")))
+                .thenThrow(new UserVersionConflictException("name1@mail.ru"));
+
+        queue.submit("name1@mail.ru", "Queued", 18);
+        queue.flushAll();
+        assertEquals(1, queue.getPending());
+        queue.flushAll();
+
+        assertEquals(0, queue.getPending());
+        verify(userService, times(2)).updateUserByEmail(eq("name1@mail.ru"), any(),
+                argThat(tag -> tag.getId() == 1 && tag.getVersion() == 3L));
+        verify(userService, never()).updateUserByEmail(eq("name1@mail.ru"), any());
+        assertEquals(1.0, meterRegistry.get("users.write_behind.superseded").counter().count());
+    }
+
+    private UserWriteBehindQueue newQueue() throws IOException {
+        return new UserWriteBehindQueue(userService, properties, new ObjectMapper(), meterRegistry);
+    }
+}
@@ -0,0 +1,27 @@
+-- users_archive without partitioning, which H2 does not have; see schema-postgresql.sql
+CREATE TABLE IF NOT EXISTS users_archive (
+    id          INTEGER      NOT NULL,
+    name        VARCHAR(255),
+    email       VARCHAR(255),
+    age         INTEGER,
+    created_at  TIMESTAMP(6) NOT NULL,
+    version     BIGINT,
+    archived_at TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (created_at, id)
+);
+
+-- see schema-postgresql.sql
+CREATE TABLE IF NOT EXISTS users_change_marker (
+    id     INTEGER PRIMARY KEY,
+    marker BIGINT  NOT NULL
+);
+INSERT INTO users_change_marker (id, marker)
+SELECT 1, 0 WHERE NOT EXISTS (SELECT 1 FROM users_change_marker WHERE id = 1);
+
+-- see schema-postgresql.sql
+CREATE TABLE IF NOT EXISTS users_shard_layout (
+    id      INTEGER       PRIMARY KEY,
+    version BIGINT        NOT NULL,
+    ring    VARCHAR(1000) NOT NULL,
+    target  VARCHAR(1000)
+);